@@ -1,5 +1,6 @@
 package GameUtils;
 
+import akka.actor.ActorRef;
 import structures.basic.Card;
 import structures.basic.Unit;
 import utils.BasicObjectBuilders;
@@ -16,18 +17,19 @@ public class UnitFactory {
      * - Loads the unit based on the card's predefined unit configuration.
      * - Assigns attack and health values, ensuring they are at least 1.
      *
+     * @param out  The ActorRef used to send the stat updates to the front-end.
      * @param card The card containing unit configuration and stats.
      * @return The generated Unit instance.
      */
-    public static Unit createUnitFromCard(Card card) {
+    public static Unit createUnitFromCard(ActorRef out, Card card) {
         Unit newUnit = BasicObjectBuilders.loadUnit(card.getUnitConfig(), -1, Unit.class);
 
         // Ensure attack and health values are properly assigned (minimum value of 1)
         int attackValue = (card.getAttack() > 0) ? card.getAttack() : 1;
         int healthValue = (card.getHealth() > 0) ? card.getHealth() : 1;
 
-        newUnit.setAttack(attackValue);
-        newUnit.setHealth(healthValue);
+        newUnit.setAttack(out, attackValue);
+        newUnit.setHealth(out, healthValue);
 
         return newUnit;
     }
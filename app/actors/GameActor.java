@@ -1,19 +1,33 @@
 package actors;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Map;
-import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import akka.actor.AbstractActor;
 import akka.actor.ActorRef;
+import akka.actor.Cancellable;
+import akka.actor.Terminated;
+import akka.cluster.sharding.ShardRegion;
+import commands.BasicCommands;
+import commands.CommandChannel;
+import commands.CommandSink;
 import events.*;
+import journal.JournalReplayer;
+import journal.JournalRetention;
+import journal.JournalWriter;
 import play.libs.Json;
 import structures.GameState;
-import utils.ImageListForPreLoad;
+import utils.PreloadManifest;
 
 /**
  * The game actor is an Akka Actor that receives events from the user front-end
@@ -24,79 +38,278 @@ import utils.ImageListForPreLoad;
  * The Game actor
  * also includes an ActorRef object which can be used to issue commands to the
  * UI to change
- * what the user sees. The GameActor is created when the user browser creates a
- * websocket
- * connection to back-end services (on load of the game web page).
+ * what the user sees.
+ *
+ * A game outlives the websocket it was started from: it is named by its game id and
+ * started on the first message for it, by the GameRegistry on a single server or by
+ * Cluster Sharding across several (see GameSharding). Each websocket gets a GameSession
+ * that is attached to the game. When a front-end reconnects to the game (e.g. after a
+ * dropped connection or a page reload) its new session takes over, and if the game is
+ * already being played the front-end is sent the whole game in one fullState command.
+ *
+ * A recorded game is put away when nobody plays it: when no session has been attached
+ * for the reconnect grace period, or when the front-end's heartbeats have been the only
+ * events for the idle timeout. It asks its parent (ShardRegion.Passivate), which holds
+ * on to the messages for the game and sends it Stop; a shard moved to another server
+ * sends it Stop as well. The actor stops, and its GameState with it; the game's journal
+ * is all that is kept, and the next message for the game starts it again from there
+ * (JournalReplayer.resume), on whichever server now has it. A game that is not recorded
+ * can not be brought back, so it is only stopped once nobody has reconnected to it.
+ *
+ * A game played to the end (an avatar has died) is not put away while its page is open,
+ * as there is nothing left to bring back. Once it stops its journal is moved out of the
+ * way of new games (JournalRetention.finish), and a session still attached is detached,
+ * so its front-end reconnects to a new game.
  * 
  * @author Dr. Richard McCreadie
  *
  */
 public class GameActor extends AbstractActor {
 
-	private ObjectMapper mapper = new ObjectMapper(); // Jackson Java Object Serializer, is used to turn java objects to
-														// Strings
-	private ActorRef out; // The ActorRef can be used to send messages to the front-end UI
+	// the games of this server, see metrics()
+	private static final AtomicLong running = new AtomicLong();
+	private static final AtomicLong passivated = new AtomicLong();
+	private static final AtomicLong resumed = new AtomicLong();
+
+	private ActorRef out; // The ActorRef can be used to send messages to the front-end UI, null while no socket is attached
+	private ActorRef session; // The GameSession of that socket
 	private Map<String, EventProcessor> eventProcessors; // Classes used to process each type of event
 	private GameState gameState; // A class that can be used to hold game state information
+	private CommandChannel channel; // Paces the commands sent to the front-end without blocking this actor
+	private UUID gameId; // Names the game (and the actor), e.g. its journal and the front-end's reconnects
+	private Duration reconnectGrace; // How long the game waits for its front-end to come back
+	private Cancellable abandon; // Stops the game if nobody reconnects, while no socket is attached
+	private Duration idleTimeout; // How long the game is kept while only heartbeats arrive
+	private long lastActivity = System.currentTimeMillis(); // When the last event other than a heartbeat arrived
+	private boolean stopAsked; // The parent was asked to put the game away
+	private Path journalFile; // The game's journal, null if it is not recorded
 
 	/**
-	 * Constructor for the GameActor. This is called by the GameController when the
-	 * websocket
-	 * connection to the front-end is established.
+	 * Constructor for the GameActor. This is called by the GameRegistry (or a shard) when
+	 * a websocket connection asks for a new game, or for a game that was put away. The
+	 * game id is the name of the actor.
 	 * 
-	 * @param out
+	 * @param batching how commands are grouped into websocket frames
+	 * @param journalDirectory where the game's journal is written, or null to not record it
+	 * @param reconnectGrace how long the game is kept once its websocket has closed
+	 * @param idleTimeout how long the game is kept while only heartbeats arrive
 	 */
-	@SuppressWarnings("deprecation")
-	public GameActor(ActorRef out) {
+	public GameActor(CommandChannel.Batching batching, String journalDirectory, Duration reconnectGrace,
+			Duration idleTimeout) {
 
-		this.out = out; // save this, so we can send commands to the front-end later
+		this.gameId = UUID.fromString(getSelf().path().name());
+		this.reconnectGrace = reconnectGrace;
+		this.idleTimeout = idleTimeout;
+		this.channel = new CommandChannel(null, getContext().getSystem().scheduler(), getContext().getDispatcher(), batching);
 
 		// create class instances to respond to the various events that we might recieve
-		eventProcessors = new HashMap<String, EventProcessor>();
-		eventProcessors.put("initalize", new Initialize());
-		eventProcessors.put("heartbeat", new Heartbeat());
-		eventProcessors.put("unitMoving", new UnitMoving());
-		eventProcessors.put("unitstopped", new UnitStopped());
-		eventProcessors.put("unitAttacking", new UnitAttacking());
-		eventProcessors.put("tileclicked", new TileClicked());
-		eventProcessors.put("cardclicked", new CardClicked());
-		eventProcessors.put("endturnclicked", new EndTurnClicked());
-		eventProcessors.put("otherclicked", new OtherClicked());
-
-		// Initalize a new game state object
-		gameState = new GameState();
-
-		// Get the list of image files to pre-load the UI with
-		Set<String> images = ImageListForPreLoad.getImageListForPreLoad();
+		eventProcessors = EventProcessors.create();
 
-		try {
-			ObjectNode readyMessage = Json.newObject();
-			readyMessage.put("messagetype", "actorReady");
-			readyMessage.put("preloadImages", mapper.readTree(mapper.writeValueAsString(images)));
-			out.tell(readyMessage, out);
-		} catch (Exception e) {
-			e.printStackTrace();
+		Path journal = journalDirectory == null ? null : JournalWriter.fileOf(Paths.get(journalDirectory), gameId);
+		if (journal != null && Files.exists(journal)) {
+			// a game that was put away, rebuilt from its journal
+			try {
+				gameState = JournalReplayer.resume(journal);
+				resumed.incrementAndGet();
+			} catch (IOException | RuntimeException e) {
+				e.printStackTrace(); // start the game again
+			}
+		}
+
+		if (gameState == null) {
+			// Initalize a new game state object, seeded so that its journal can replay it
+			gameState = new GameState();
+			long seed = ThreadLocalRandom.current().nextLong();
+			gameState.setSeed(seed);
+			if (journalDirectory != null) {
+				try {
+					gameState.journal = JournalWriter.create(Paths.get(journalDirectory), gameId, seed);
+				} catch (IOException e) {
+					e.printStackTrace(); // play the game without recording it
+				}
+			}
 		}
+		if (isRecorded()) journalFile = journal;
+		running.incrementAndGet();
 	}
 
 	/**
-	 * This method simply farms out the processing of the json messages from the
-	 * front-end to the
-	 * processMessage method
+	 * @return how many games this server is running, and how many it has put away and
+	 * brought back
+	 */
+	public static ObjectNode metrics() {
+		ObjectNode metrics = Json.newObject();
+		metrics.put("running", running.get());
+		metrics.put("passivated", passivated.get());
+		metrics.put("resumed", resumed.get());
+		return metrics;
+	}
+
+	/**
+	 * Events are only taken from the session currently attached, so a socket that has
+	 * been taken over can not play on. A session sending events to a game that does not
+	 * know it (the game failed, and was started again) is told to close its socket, so
+	 * its front-end reconnects. The rest of the messages attach and detach the game's
+	 * sessions, and put the game away.
 	 * 
 	 * @return
 	 */
 	public Receive createReceive() {
 		return receiveBuilder()
 				.match(JsonNode.class, message -> {
+					if (!getSender().equals(session)) {
+						if (session == null) getSender().tell(new Detached(), getSelf());
+						return;
+					}
+					String messageType = message.get("messagetype").asText();
+					if (messageType.equals("heartbeat")) {
+						// not recorded, heartbeats change nothing in the game
+						if (System.currentTimeMillis() - lastActivity >= idleTimeout.toMillis() && isRecorded() && !isFinished()) askToStop();
+						return;
+					}
 					System.out.println(message);
-					processMessage(message.get("messagetype").asText(), message);
-				}).build();
+					lastActivity = System.currentTimeMillis();
+					processMessage(messageType, message);
+				})
+				.match(Attach.class, this::attach)
+				.match(Terminated.class, terminated -> {
+					if (terminated.getActor().equals(session)) detach();
+				})
+				.match(Abandon.class, abandoned -> {
+					if (session == null) askToStop();
+				})
+				.match(Stop.class, stop -> stop()).build();
+	}
+
+	/**
+	 * Drops any commands still waiting to be sent, and closes the game's journal, moving
+	 * it aside if the game is over.
+	 */
+	@Override
+	public void postStop() {
+		running.decrementAndGet();
+		if (abandon != null) abandon.cancel();
+		channel.close();
+		gameState.journal.close();
+		if (journalFile != null && isFinished()) JournalRetention.finish(journalFile);
+	}
+
+	/**
+	 * Sends the game to the socket of the session that asked for it. A session already
+	 * attached is told it has been taken over, and closes its socket.
+	 * @param attach
+	 */
+	private void attach(Attach attach) {
+		if (abandon != null) abandon.cancel();
+		abandon = null;
+		lastActivity = System.currentTimeMillis();
+		if (session != null) {
+			getContext().unwatch(session);
+			out.tell(takenOver(), out);
+			session.tell(new Detached(), getSelf());
+		}
+		session = getSender();
+		out = attach.out;
+		getContext().watch(session);
+		channel.attach(out);
+		session.tell(new Attached(getSelf()), getSelf());
+
+		if (attach.resumeProtocol > 0) {
+			// the game was put away under an open page, which still shows it
+			channel.setProtocolVersion(attach.resumeProtocol);
+			return;
+		}
+
+		try {
+			ObjectNode readyMessage = Json.newObject();
+			readyMessage.put("messagetype", "actorReady");
+			readyMessage.put("protocolVersion", BasicCommands.LATEST_PROTOCOL);
+			// the front-end fetches the list of images to pre-load from /preload
+			readyMessage.put("preloadVersion", PreloadManifest.get().getVersion());
+			// and reconnects to this game with it
+			readyMessage.put("gameId", gameId.toString());
+			out.tell(readyMessage, out);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+
+		if (gameState.gameInitalised) {
+			// one command instead of initialising the front-end's game all over again
+			CommandSink.bind(channel);
+			try {
+				BasicCommands.drawFullState(out, gameState);
+			} finally {
+				CommandSink.unbind();
+				channel.flush();
+			}
+		}
+	}
+
+	/**
+	 * The socket has closed: the game waits for its front-end to reconnect.
+	 */
+	private void detach() {
+		session = null;
+		out = null;
+		channel.detach();
+		abandon = getContext().getSystem().scheduler().scheduleOnce(reconnectGrace, getSelf(), new Abandon(),
+				getContext().getDispatcher(), getSelf());
+	}
+
+	/**
+	 * @return true if an avatar has died
+	 */
+	private boolean isFinished() {
+		return gameState.gameInitalised && (gameState.player1Avatar.isDead() || gameState.player2Avatar.isDead());
+	}
+
+	/**
+	 * @return true if the game can be brought back once it has been put away
+	 */
+	private boolean isRecorded() {
+		return gameState.journal instanceof JournalWriter;
+	}
+
+	// The parent holds on to the messages sent to the game from now on, and sends it Stop
+	private void askToStop() {
+		if (stopAsked) return;
+		stopAsked = true;
+		getContext().getParent().tell(new ShardRegion.Passivate(new Stop()), getSelf());
+	}
+
+	/**
+	 * Put away, or moved to another server: the game stops once its last commands have
+	 * gone out. The session attached (if any) keeps its socket open, and brings the game
+	 * back on the next event.
+	 */
+	private void stop() {
+		if (channel.isPlaying()) {
+			getContext().getSystem().scheduler().scheduleOnce(Duration.ofMillis(100), getSelf(), new Stop(),
+					getContext().getDispatcher(), getSelf());
+			return;
+		}
+		if (session != null) {
+			getContext().unwatch(session);
+			// a finished game is not brought back, the front-end starts a new one
+			session.tell(isFinished() ? new Detached() : new Passivated(channel.getProtocolVersion()), getSelf());
+		}
+		passivated.incrementAndGet();
+		getContext().stop(getSelf());
+	}
+
+	private static ObjectNode takenOver() {
+		ObjectNode message = Json.newObject();
+		message.put("messagetype", "gameTakenOver");
+		return message;
 	}
 
 	/**
 	 * This looks up an event processor for the specified message type.
 	 * Note that this processing is asynchronous.
+	 * While the event is processed, the game's CommandChannel is bound to this thread,
+	 * so delays requested by the game logic are scheduled rather than slept through.
+	 * The channel is flushed afterwards, sending the commands the event produced.
+	 * The event is recorded in the game's journal before it is processed.
 	 * 
 	 * @param messageType
 	 * @param message
@@ -111,7 +324,16 @@ public class GameActor extends AbstractActor {
 			// Unknown event type received
 			System.err.println("GameActor: Recieved unknown event type " + messageType);
 		} else {
-			processor.processEvent(out, gameState, message); // process the event
+			gameState.journal.event(messageType, message);
+			CommandSink.bind(channel);
+			try {
+				processor.processEvent(out, gameState, message); // process the event
+			} finally {
+				BasicCommands.flushTiles();
+				CommandSink.unbind();
+				channel.flush();
+				gameState.journal.flush();
+			}
 		}
 	}
 
@@ -121,4 +343,60 @@ public class GameActor extends AbstractActor {
 		returnMessage.put("error", errorText);
 		out.tell(returnMessage, out);
 	}
+
+	/**
+	 * Sent by a GameSession, to play the game through the session's socket.
+	 */
+	public static class Attach implements GameMessage {
+
+		public final ActorRef out;
+		public final int resumeProtocol; // the protocol version of a page that already shows the game, or 0
+
+		public Attach(ActorRef out, int resumeProtocol) {
+			this.out = out;
+			this.resumeProtocol = resumeProtocol;
+		}
+	}
+
+	/**
+	 * Tells a GameSession which game it is attached to.
+	 */
+	public static class Attached implements GameMessage {
+
+		public final ActorRef game;
+
+		public Attached(ActorRef game) {
+			this.game = game;
+		}
+	}
+
+	/**
+	 * Tells a GameSession that its game has been put away.
+	 */
+	public static class Passivated implements GameMessage {
+
+		public final int protocolVersion; // the front-end's, for when the game comes back
+
+		public Passivated(int protocolVersion) {
+			this.protocolVersion = protocolVersion;
+		}
+	}
+
+	/**
+	 * Tells a GameSession that another session has taken its game over, or that the game
+	 * does not know it.
+	 */
+	public static class Detached implements GameMessage {
+	}
+
+	/**
+	 * Tells a game to stop, once it has asked to be put away or when its shard moves to
+	 * another server.
+	 */
+	public static class Stop implements GameMessage {
+	}
+
+	// Sent to itself once the reconnect grace period is over
+	private static class Abandon {
+	}
 }
@@ -0,0 +1,19 @@
+package actors;
+
+import java.util.UUID;
+
+/**
+ * A message for a game, addressed by its id. Sessions send everything for their game in
+ * one, to the GameRegistry or to the game's shard region (see GameSharding), which
+ * start the game if it is not running and hold on to the message while it stops.
+ */
+public class GameEnvelope implements GameMessage {
+
+	public final UUID gameId;
+	public final Object message; // an event (JsonNode) or a GameMessage
+
+	public GameEnvelope(UUID gameId, Object message) {
+		this.gameId = gameId;
+		this.message = message;
+	}
+}
@@ -0,0 +1,8 @@
+package actors;
+
+/**
+ * The messages between a game and its sessions, which may be on different servers of
+ * a cluster. They are written by GameSerializer (see cluster.conf).
+ */
+public interface GameMessage {
+}
@@ -0,0 +1,91 @@
+package actors;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.actor.SupervisorStrategy;
+import akka.actor.Terminated;
+import akka.cluster.sharding.ShardRegion;
+
+/**
+ * Keeps the games being played on a single server, by game id, so that a front-end
+ * reconnecting to its game (GameSession) finds it again. It plays the part a shard
+ * region plays in a cluster (see GameSharding), with the same messages: games are
+ * started as children of the registry on the first GameEnvelope for them, as a new
+ * game or from the journal of a game that was put away. A game asking to be put away
+ * (ShardRegion.Passivate) is sent its stop message, and the messages for it that come
+ * in the meantime are held until it has stopped, then handed to the game started
+ * again. A game that fails is stopped, as it was when games belonged to their websocket.
+ */
+public class GameRegistry extends AbstractActor {
+
+	private final Props gameProps;
+	private final Map<UUID, ActorRef> games = new HashMap<UUID, ActorRef>();
+	private final Map<UUID, List<Held>> stopping = new HashMap<UUID, List<Held>>(); // games being put away
+
+	/**
+	 * @param gameProps the Props of a game (see GameScreenController.createGameActor)
+	 */
+	public GameRegistry(Props gameProps) {
+		this.gameProps = gameProps;
+	}
+
+	@Override
+	public SupervisorStrategy supervisorStrategy() {
+		return SupervisorStrategy.stoppingStrategy();
+	}
+
+	@Override
+	public Receive createReceive() {
+		return receiveBuilder()
+				.match(GameEnvelope.class, envelope -> deliver(envelope.gameId, envelope.message, getSender()))
+				.match(ShardRegion.Passivate.class, passivate -> {
+					UUID gameId = UUID.fromString(getSender().path().name());
+					if (!getSender().equals(games.get(gameId)) || stopping.containsKey(gameId)) return;
+					stopping.put(gameId, new ArrayList<Held>());
+					getSender().tell(passivate.stopMessage(), getSelf());
+				})
+				.match(Terminated.class, terminated -> {
+					UUID gameId = UUID.fromString(terminated.getActor().path().name());
+					games.remove(gameId, terminated.getActor());
+					List<Held> held = stopping.remove(gameId);
+					if (held != null) {
+						for (Held message : held) deliver(gameId, message.message, message.sender);
+					}
+				})
+				.build();
+	}
+
+	private void deliver(UUID gameId, Object message, ActorRef sender) {
+		List<Held> held = stopping.get(gameId);
+		if (held != null) {
+			held.add(new Held(message, sender));
+			return;
+		}
+		ActorRef game = games.get(gameId);
+		if (game == null) {
+			game = getContext().actorOf(gameProps, gameId.toString());
+			getContext().watch(game);
+			games.put(gameId, game);
+		}
+		game.tell(message, sender);
+	}
+
+	// A message for a game that is stopping
+	private static class Held {
+
+		final Object message;
+		final ActorRef sender;
+
+		Held(Object message, ActorRef sender) {
+			this.message = message;
+			this.sender = sender;
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package actors;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.util.UUID;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import akka.actor.ActorRef;
+import akka.actor.ExtendedActorSystem;
+import akka.serialization.Serialization;
+import akka.serialization.SerializerWithStringManifest;
+import play.libs.Json;
+
+/**
+ * Writes the messages that go between the servers of a cluster (see GameSharding): the
+ * events and commands of a game (JsonNode, as JSON text) and the GameMessages. Bound to
+ * them in cluster.conf.
+ */
+public class GameSerializer extends SerializerWithStringManifest {
+
+	private static final String JSON = "J";
+	private static final String ENVELOPE = "E";
+	private static final String ATTACH = "A";
+	private static final String ATTACHED = "T";
+	private static final String PASSIVATED = "P";
+	private static final String DETACHED = "D";
+	private static final String STOP = "S";
+
+	private final ExtendedActorSystem system;
+
+	public GameSerializer(ExtendedActorSystem system) {
+		this.system = system;
+	}
+
+	@Override
+	public int identifier() {
+		return 7351;
+	}
+
+	@Override
+	public String manifest(Object message) {
+		if (message instanceof JsonNode) return JSON;
+		if (message instanceof GameEnvelope) return ENVELOPE;
+		if (message instanceof GameActor.Attach) return ATTACH;
+		if (message instanceof GameActor.Attached) return ATTACHED;
+		if (message instanceof GameActor.Passivated) return PASSIVATED;
+		if (message instanceof GameActor.Detached) return DETACHED;
+		if (message instanceof GameActor.Stop) return STOP;
+		throw new IllegalArgumentException("Can not serialize " + message.getClass());
+	}
+
+	@Override
+	public byte[] toBinary(Object message) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			write(message, out);
+		} catch (IOException e) {
+			throw new IllegalArgumentException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	@Override
+	public Object fromBinary(byte[] bytes, String manifest) throws NotSerializableException {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			return read(manifest, in);
+		} catch (IOException e) {
+			throw new NotSerializableException(e.getMessage());
+		}
+	}
+
+	private void write(Object message, DataOutputStream out) throws IOException {
+		if (message instanceof JsonNode) {
+			out.write(Json.mapper().writeValueAsBytes(message));
+		} else if (message instanceof GameEnvelope) {
+			GameEnvelope envelope = (GameEnvelope) message;
+			out.writeLong(envelope.gameId.getMostSignificantBits());
+			out.writeLong(envelope.gameId.getLeastSignificantBits());
+			out.writeUTF(manifest(envelope.message));
+			write(envelope.message, out);
+		} else if (message instanceof GameActor.Attach) {
+			GameActor.Attach attach = (GameActor.Attach) message;
+			out.writeUTF(Serialization.serializedActorPath(attach.out));
+			out.writeInt(attach.resumeProtocol);
+		} else if (message instanceof GameActor.Attached) {
+			out.writeUTF(Serialization.serializedActorPath(((GameActor.Attached) message).game));
+		} else if (message instanceof GameActor.Passivated) {
+			out.writeInt(((GameActor.Passivated) message).protocolVersion);
+		} else {
+			manifest(message); // Detached and Stop have no fields
+		}
+	}
+
+	private Object read(String manifest, DataInputStream in) throws IOException {
+		switch (manifest) {
+		case JSON:
+			return Json.mapper().readTree(in);
+		case ENVELOPE:
+			UUID gameId = new UUID(in.readLong(), in.readLong());
+			return new GameEnvelope(gameId, read(in.readUTF(), in));
+		case ATTACH:
+			return new GameActor.Attach(actorRef(in.readUTF()), in.readInt());
+		case ATTACHED:
+			return new GameActor.Attached(actorRef(in.readUTF()));
+		case PASSIVATED:
+			return new GameActor.Passivated(in.readInt());
+		case DETACHED:
+			return new GameActor.Detached();
+		case STOP:
+			return new GameActor.Stop();
+		default:
+			throw new NotSerializableException("Unknown game message " + manifest);
+		}
+	}
+
+	private ActorRef actorRef(String path) {
+		return system.provider().resolveActorRef(path);
+	}
+}
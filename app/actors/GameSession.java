@@ -0,0 +1,94 @@
+package actors;
+
+import java.util.UUID;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Terminated;
+
+/**
+ * One websocket connection to a game. Created by the GameScreenController as the
+ * socket opens, it attaches itself to the game the front-end was playing (or a new
+ * one), then passes the front-end's events on to it. Everything goes through the
+ * GameRegistry, or through the shard region when the games are spread over a cluster,
+ * so the game is found (or started again) wherever it runs. The game sends its
+ * commands to the socket directly.
+ *
+ * A game put away while its page is open (GameActor.Passivated) is attached to again
+ * on the next event other than a heartbeat, and carries on with the page as it is.
+ *
+ * The session stops, closing its socket, when another socket takes its game over or
+ * when the game fails. When the socket closes the session stops, and the game waits
+ * for the front-end to reconnect.
+ */
+public class GameSession extends AbstractActor {
+
+	private final ActorRef out; // the websocket
+	private final ActorRef games; // the GameRegistry or the shard region
+	private final UUID gameId;
+
+	private ActorRef game; // the game once it has attached this session, null while it is put away
+	private int resumeProtocol; // the front-end's protocol version while its game is put away, otherwise 0
+
+	/**
+	 * @param out the websocket
+	 * @param games the GameRegistry or the shard region
+	 * @param gameId the game the front-end was playing, or null for a new one
+	 */
+	public GameSession(ActorRef out, ActorRef games, String gameId) {
+		this.out = out;
+		this.games = games;
+		this.gameId = parse(gameId);
+	}
+
+	@Override
+	public void preStart() {
+		send(new GameActor.Attach(out, 0));
+	}
+
+	@Override
+	public Receive createReceive() {
+		return receiveBuilder()
+				.match(JsonNode.class, message -> {
+					if (resumeProtocol > 0) {
+						// the game was put away, and is needed again
+						if ("heartbeat".equals(message.path("messagetype").asText())) return;
+						send(new GameActor.Attach(out, resumeProtocol));
+						resumeProtocol = 0;
+					}
+					send(message);
+				})
+				.match(GameActor.Attached.class, attached -> {
+					game = attached.game;
+					getContext().watch(game);
+				})
+				.match(GameActor.Passivated.class, passivated -> {
+					getContext().unwatch(game);
+					game = null;
+					resumeProtocol = passivated.protocolVersion;
+				})
+				.match(GameActor.Detached.class, detached -> getContext().stop(getSelf()))
+				.match(Terminated.class, terminated -> {
+					if (terminated.getActor().equals(game)) getContext().stop(getSelf());
+				})
+				.build();
+	}
+
+	private void send(Object message) {
+		games.tell(new GameEnvelope(gameId, message), getSelf());
+	}
+
+	// the game asked for, or a new one if there is none or it is not a game id
+	private static UUID parse(String gameId) {
+		if (gameId != null) {
+			try {
+				return UUID.fromString(gameId);
+			} catch (IllegalArgumentException e) {
+				// a new game
+			}
+		}
+		return UUID.randomUUID();
+	}
+}
@@ -0,0 +1,80 @@
+package actors;
+
+import java.util.Optional;
+
+import com.typesafe.config.Config;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.cluster.Cluster;
+import akka.cluster.sharding.ClusterSharding;
+import akka.cluster.sharding.ClusterShardingSettings;
+import akka.cluster.sharding.ShardRegion;
+
+/**
+ * Spreads the games over the servers of an Akka cluster (see cluster.conf), with
+ * Cluster Sharding: games are grouped by their id into game.cluster.shards shards, and
+ * each shard runs on one server at a time. A GameSession on any server sends its
+ * GameEnvelopes to the shard region, which passes them to the server running the game,
+ * starting the game there if need be. When servers join or leave, shards are moved:
+ * their games are sent GameActor.Stop, and are started again from their journal on
+ * the server that takes the shard over, so game.journal.dir must be shared by the
+ * servers (it is, for several servers on one machine).
+ *
+ * If game.cluster.role is set, only the servers with that role run games, and the
+ * others only pass the messages of their sessions on.
+ */
+public class GameSharding {
+
+	public static final String TYPE_NAME = "Game";
+
+	/**
+	 * @param config
+	 * @return true if the server is set up to be part of a cluster
+	 */
+	public static boolean isClustered(Config config) {
+		if (!config.hasPath("akka.actor.provider")) return false;
+		String provider = config.getString("akka.actor.provider");
+		return provider.equals("cluster") || provider.equals("akka.cluster.ClusterActorRefProvider");
+	}
+
+	/**
+	 * Starts the shard region of the games on this server.
+	 * @param system
+	 * @param gameProps the Props of a game (see GameScreenController.createGameActor)
+	 * @param config
+	 * @return the shard region, which takes GameEnvelopes
+	 */
+	public static ActorRef start(ActorSystem system, Props gameProps, Config config) {
+		int shards = config.hasPath("game.cluster.shards") ? config.getInt("game.cluster.shards") : 100;
+		String role = config.hasPath("game.cluster.role") ? config.getString("game.cluster.role") : null;
+		ClusterSharding sharding = ClusterSharding.get(system);
+		Extractor extractor = new Extractor(shards);
+		if (role != null && !Cluster.get(system).getSelfRoles().contains(role)) {
+			return sharding.startProxy(TYPE_NAME, Optional.of(role), extractor);
+		}
+		ClusterShardingSettings settings = ClusterShardingSettings.create(system);
+		if (role != null) settings = settings.withRole(role);
+		return sharding.start(TYPE_NAME, gameProps, settings, extractor,
+				sharding.defaultShardAllocationStrategy(settings), new GameActor.Stop());
+	}
+
+	// The game of an envelope is its entity, and the shard is found from the game id
+	private static class Extractor extends ShardRegion.HashCodeMessageExtractor {
+
+		Extractor(int shards) {
+			super(shards);
+		}
+
+		@Override
+		public String entityId(Object message) {
+			return message instanceof GameEnvelope ? ((GameEnvelope) message).gameId.toString() : null;
+		}
+
+		@Override
+		public Object entityMessage(Object message) {
+			return message instanceof GameEnvelope ? ((GameEnvelope) message).message : message;
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package actors;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.typesafe.config.Config;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.dispatch.Envelope;
+import akka.dispatch.MailboxType;
+import akka.dispatch.MessageQueue;
+import akka.dispatch.ProducesMessageQueue;
+import akka.dispatch.UnboundedMessageQueueSemantics;
+import play.libs.Json;
+import scala.Option;
+
+/**
+ * An unbounded mailbox that keeps count of the messages waiting in it, so we can see
+ * which games are falling behind. GameActors get it through the game-mailbox entry in
+ * application.conf (see GameScreenController.createGameActor).
+ *
+ * The queue of every live game is kept in a registry until its actor stops, and
+ * metrics() reports them all, which is what /metrics/games serves.
+ */
+public class MeteredMailbox implements MailboxType, ProducesMessageQueue<MeteredMailbox.Queue> {
+
+	private static final Map<ActorRef, Queue> queues = new ConcurrentHashMap<ActorRef, Queue>();
+
+	/**
+	 * Called by Akka when the mailbox is configured
+	 * @param settings
+	 * @param config
+	 */
+	public MeteredMailbox(ActorSystem.Settings settings, Config config) {}
+
+	@Override
+	public MessageQueue create(Option<ActorRef> owner, Option<ActorSystem> system) {
+		Queue queue = new Queue();
+		if (owner.isDefined()) queues.put(owner.get(), queue);
+		return queue;
+	}
+
+	/**
+	 * @param actor
+	 * @return the mailbox of the given actor, or null if it does not use this mailbox
+	 * (or has stopped)
+	 */
+	public static Queue of(ActorRef actor) {
+		return queues.get(actor);
+	}
+
+	/**
+	 * @return one entry per live game: its actor, the messages waiting in its mailbox,
+	 * the most that have ever been waiting, and how many it has received
+	 */
+	public static ArrayNode metrics() {
+		ArrayNode games = Json.newArray();
+		for (Map.Entry<ActorRef, Queue> entry : queues.entrySet()) {
+			ObjectNode game = games.addObject();
+			game.put("actor", entry.getKey().path().name());
+			game.put("mailboxDepth", entry.getValue().numberOfMessages());
+			game.put("peakDepth", entry.getValue().getPeakDepth());
+			game.put("received", entry.getValue().getReceived());
+		}
+		return games;
+	}
+
+	/**
+	 * The messages waiting for one actor
+	 */
+	public static class Queue implements MessageQueue, UnboundedMessageQueueSemantics {
+
+		private final ConcurrentLinkedQueue<Envelope> messages = new ConcurrentLinkedQueue<Envelope>();
+		private final AtomicInteger depth = new AtomicInteger(); // ConcurrentLinkedQueue.size() walks the queue
+		private final AtomicInteger peakDepth = new AtomicInteger();
+		private final AtomicLong received = new AtomicLong();
+
+		@Override
+		public void enqueue(ActorRef receiver, Envelope handle) {
+			messages.add(handle);
+			peakDepth.accumulateAndGet(depth.incrementAndGet(), Math::max);
+			received.incrementAndGet();
+		}
+
+		@Override
+		public Envelope dequeue() {
+			Envelope handle = messages.poll();
+			if (handle != null) depth.decrementAndGet();
+			return handle;
+		}
+
+		@Override
+		public int numberOfMessages() {
+			return depth.get();
+		}
+
+		@Override
+		public boolean hasMessages() {
+			return !messages.isEmpty();
+		}
+
+		/**
+		 * Called by Akka when the actor stops: whatever it did not get to goes to dead
+		 * letters, and the game leaves the registry.
+		 */
+		@Override
+		public void cleanUp(ActorRef owner, MessageQueue deadLetters) {
+			queues.remove(owner);
+			Envelope handle;
+			while ((handle = dequeue()) != null) {
+				deadLetters.enqueue(owner, handle);
+			}
+		}
+
+		/**
+		 * @return the most messages that have been waiting at once
+		 */
+		public int getPeakDepth() {
+			return peakDepth.get();
+		}
+
+		/**
+		 * @return the number of messages the actor has been sent
+		 */
+		public long getReceived() {
+			return received.get();
+		}
+	}
+}
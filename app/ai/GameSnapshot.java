@@ -0,0 +1,698 @@
+package ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import card.CardEffect;
+import card.CardFactory;
+import card.CreatureCardEffect;
+import card.player1.DarkTerminusEffect;
+import card.player2.TruestrikeEffect;
+import structures.Bitboard;
+import structures.GameState;
+import structures.basic.Card;
+import structures.basic.Keywords;
+import structures.basic.Player;
+import structures.basic.Tile;
+import structures.basic.Unit;
+
+/**
+ * A compact copy of a game, for the AI to play hypothetical moves on. Everything is
+ * held in primitive arrays that are allocated once, so a snapshot can be copied over
+ * another (copyFrom) and played forward without creating any objects, which is what
+ * lets the planner try tens of thousands of move sequences in a turn.
+ *
+ * The rules are a model of the real ones in the managers: units move to the tiles
+ * the AI may move to, attack adjacent enemies and are counter-attacked, creatures
+ * are summoned next to friendly units and spells with a simple effect (Truestrike,
+ * Dark Terminus) can be cast. Of the unit abilities only the keywords (Provoke,
+ * Flying, Rush) are modelled.
+ *
+ * Units are numbered by their position in the unit arrays; dead units keep their
+ * number but are off the board. Cards are numbered by their position in the card
+ * table, which is shared between copies.
+ *
+ * Moves are ints, see the action methods. A move can be played for good (apply), or
+ * made so that it can be taken back (make, undo): made moves record the values they
+ * overwrite on a trail, so a search can go down and back up a line of play on one
+ * snapshot instead of copying it at every step.
+ *
+ * A snapshot is derived from a GameState (load), and matches() tells whether it still
+ * describes the game, e.g. after its moves have been played there.
+ */
+public class GameSnapshot {
+
+	public static final int WIDTH = Bitboard.WIDTH;
+	public static final int HEIGHT = Bitboard.HEIGHT;
+	public static final int CELLS = Bitboard.CELLS;
+	public static final int MAX_UNITS = 64;
+	public static final int MAX_HAND = 6;
+	public static final int MAX_ACTIONS = 2048;
+
+	// action kinds
+	public static final int END_TURN = 0;
+	public static final int MOVE = 1; // unit, cell
+	public static final int ATTACK = 2; // unit, target unit
+	public static final int SUMMON = 3; // hand index, cell
+	public static final int SPELL = 4; // hand index, target unit
+
+	// what a card does when played
+	static final int UNPLAYABLE = 0;
+	static final int CREATURE = 1;
+	static final int DAMAGE_TWO = 2; // Truestrike
+	static final int DESTROY = 3; // Dark Terminus
+
+	// what the undo trail records writes to: the arrays below, then the single values
+	private static final int HEALTH = 0;
+	private static final int MANA = 1;
+	private static final int HAND_1 = 2;
+	private static final int HAND_2 = 3;
+	private static final int HAND_SIZE = 4;
+	private static final int DECK_POSITION = 5;
+	private static final int UNIT_ID = 6;
+	private static final int OWNER = 7;
+	private static final int HP = 8;
+	private static final int ATTACK_VALUE = 9;
+	private static final int CELL = 10;
+	private static final int FLAGS = 11;
+	private static final int BOARD = 12;
+	private static final int CURRENT_PLAYER = 13;
+	private static final int TURN = 14;
+	private static final int WINNER = 15;
+	private static final int UNIT_COUNT = 16;
+
+	// unit flags
+	static final int MOVED = 1;
+	static final int ATTACKED = 2;
+	static final int SLEEPING = 4;
+	static final int AVATAR = 8;
+	static final int PROVOKE = 16;
+	static final int FLYING = 32;
+	static final int KEPT = AVATAR | PROVOKE | FLYING; // flags that last from turn to turn
+
+	// cells around each cell, and the cells a unit may move to from each cell (see Bitboard)
+	static final int[][] ADJACENT = new int[CELLS][];
+	static final int[][] MOVES = new int[CELLS][];
+	static {
+		for (int cell = 0; cell < CELLS; cell++) {
+			ADJACENT[cell] = cellsIn(Bitboard.neighbours(cell));
+			MOVES[cell] = cellsIn(Bitboard.moves(cell));
+		}
+	}
+
+	// card table, shared between copies
+	int[] cardCost = new int[0];
+	int[] cardAttack = new int[0];
+	int[] cardHealth = new int[0];
+	int[] cardKind = new int[0];
+	int[] cardKeywords = new int[0]; // Keywords of the creature a card summons
+	String[] cardName = new String[0];
+
+	// players, indexed by player number (1 or 2)
+	int currentPlayer;
+	int turn;
+	int winner;
+	final int[] health = new int[3];
+	final int[] mana = new int[3];
+	final int[] avatar = new int[3];
+	final int[][] hand = new int[3][MAX_HAND];
+	final int[] handSize = new int[3];
+	int[][] deck = new int[3][0]; // shared between copies, only deckPosition changes
+	final int[] deckPosition = new int[3];
+
+	// units
+	int unitCount;
+	final int[] unitId = new int[MAX_UNITS];
+	final int[] owner = new int[MAX_UNITS];
+	final int[] hp = new int[MAX_UNITS];
+	final int[] attack = new int[MAX_UNITS];
+	final int[] cell = new int[MAX_UNITS];
+	final int[] flags = new int[MAX_UNITS];
+	final int[] board = new int[CELLS]; // unit on each cell, or -1
+
+	// undo trail: (what, index, old value) for each write made by a made move,
+	// and the length the trail had when each move still to be undone was made
+	private int[] trail = new int[3 * 1024];
+	private int trailSize;
+	private int[] made = new int[64];
+	private int madeCount;
+	private boolean trailing;
+
+	/**
+	 * @param gameState
+	 * @return a snapshot of the game
+	 */
+	public static GameSnapshot of(GameState gameState) {
+		GameSnapshot snapshot = new GameSnapshot();
+		snapshot.load(gameState);
+		return snapshot;
+	}
+
+	/**
+	 * Overwrites this snapshot with the current state of a game.
+	 * @param gameState
+	 */
+	public void load(GameState gameState) {
+		currentPlayer = gameState.currentPlayer;
+		turn = gameState.currentTurn;
+		winner = 0;
+		trailSize = madeCount = 0;
+		health[1] = gameState.player1.getHealth();
+		health[2] = gameState.player2.getHealth();
+		mana[1] = gameState.player1.getMana();
+		mana[2] = gameState.player2.getMana();
+
+		CardTableBuilder cards = new CardTableBuilder();
+		deck = new int[3][];
+		loadCards(cards, 1, gameState.player1Hand, gameState.player1Deck);
+		loadCards(cards, 2, gameState.player2Hand, gameState.player2Deck);
+		cards.build(this);
+
+		Arrays.fill(board, -1);
+		unitCount = 0;
+		avatar[1] = avatar[2] = -1;
+		for (Unit unit : gameState.playerUnits) {
+			Tile tile = unit.getTile();
+			if (unit.isDead() || tile == null || unitCount == MAX_UNITS) continue;
+			int u = unitCount++;
+			unitId[u] = unit.getId();
+			owner[u] = unit.getOwner();
+			hp[u] = unit.getHealth();
+			attack[u] = unit.getAttack();
+			cell[u] = cellOf(tile.getTilex(), tile.getTiley());
+			flags[u] = 0;
+			if (unit.hasMoved()) flags[u] |= MOVED;
+			if (unit.hasAttacked()) flags[u] |= ATTACKED;
+			if (!unit.canMove() && !unit.hasMoved()) flags[u] |= SLEEPING;
+			if (unit == gameState.player1Avatar || unit == gameState.player2Avatar) {
+				flags[u] |= AVATAR;
+				avatar[unit.getOwner()] = u;
+			}
+			flags[u] |= keywordFlags(unit.getKeywordFlags());
+			board[cell[u]] = u;
+		}
+	}
+
+	private void loadCards(CardTableBuilder cards, int player, List<Card> playerHand, List<Card> playerDeck) {
+		handSize[player] = Math.min(playerHand.size(), MAX_HAND);
+		for (int i = 0; i < handSize[player]; i++) hand[player][i] = cards.idOf(playerHand.get(i));
+		int[] cardIds = new int[playerDeck.size()];
+		for (int i = 0; i < cardIds.length; i++) cardIds[i] = cards.idOf(playerDeck.get(i));
+		deck[player] = cardIds;
+		deckPosition[player] = 0;
+	}
+
+	/**
+	 * Makes this snapshot a copy of another one, without allocating.
+	 * @param other
+	 */
+	public void copyFrom(GameSnapshot other) {
+		cardCost = other.cardCost;
+		cardAttack = other.cardAttack;
+		cardHealth = other.cardHealth;
+		cardKind = other.cardKind;
+		cardKeywords = other.cardKeywords;
+		cardName = other.cardName;
+		deck = other.deck;
+		trailSize = madeCount = 0;
+
+		currentPlayer = other.currentPlayer;
+		turn = other.turn;
+		winner = other.winner;
+		System.arraycopy(other.health, 0, health, 0, 3);
+		System.arraycopy(other.mana, 0, mana, 0, 3);
+		System.arraycopy(other.avatar, 0, avatar, 0, 3);
+		System.arraycopy(other.handSize, 0, handSize, 0, 3);
+		System.arraycopy(other.hand[1], 0, hand[1], 0, MAX_HAND);
+		System.arraycopy(other.hand[2], 0, hand[2], 0, MAX_HAND);
+		System.arraycopy(other.deckPosition, 0, deckPosition, 0, 3);
+
+		unitCount = other.unitCount;
+		System.arraycopy(other.unitId, 0, unitId, 0, unitCount);
+		System.arraycopy(other.owner, 0, owner, 0, unitCount);
+		System.arraycopy(other.hp, 0, hp, 0, unitCount);
+		System.arraycopy(other.attack, 0, attack, 0, unitCount);
+		System.arraycopy(other.cell, 0, cell, 0, unitCount);
+		System.arraycopy(other.flags, 0, flags, 0, unitCount);
+		System.arraycopy(other.board, 0, board, 0, CELLS);
+	}
+
+	public int getCurrentPlayer() {
+		return currentPlayer;
+	}
+
+	public int getTurn() {
+		return turn;
+	}
+
+	/**
+	 * @return the player who has won, or 0 while the game is still going
+	 */
+	public int getWinner() {
+		return winner;
+	}
+
+	public int getHealth(int player) {
+		return health[player];
+	}
+
+	/**
+	 * @return the number of units, dead ones included
+	 */
+	public int getUnitCount() {
+		return unitCount;
+	}
+
+	/**
+	 * @param unit
+	 * @return the id of the real unit, or -1 for units summoned in the snapshot
+	 */
+	public int getUnitId(int unit) {
+		return unitId[unit];
+	}
+
+	/**
+	 * Tells the snapshot which real unit a unit it summoned turned out to be, once the
+	 * summon has been played on the game.
+	 * @param unit
+	 * @param id
+	 */
+	public void setUnitId(int unit, int id) {
+		unitId[unit] = id;
+	}
+
+	/**
+	 * Checks that the snapshot still describes the game: the same player to move,
+	 * health, mana and hands, and the same units (by id) with the same owner, health,
+	 * attack and tile. Whether units have moved or attacked this turn is not compared.
+	 * @param gameState
+	 * @return false if the game has turned out differently, e.g. because of an ability
+	 * the snapshot does not model
+	 */
+	public boolean matches(GameState gameState) {
+		if (currentPlayer != gameState.currentPlayer || turn != gameState.currentTurn) return false;
+		if (!matches(1, gameState.player1, gameState.player1Hand) || !matches(2, gameState.player2, gameState.player2Hand)) return false;
+
+		int units = 0;
+		for (int u = 0; u < unitCount; u++) {
+			if (cell[u] < 0) continue;
+			units++;
+			Unit unit = unitId[u] < 0 ? null : gameState.getUnitById(unitId[u]);
+			if (unit == null || unit.isDead() || unit.getTile() == null) return false;
+			if (unit.getOwner() != owner[u] || unit.getHealth() != hp[u] || unit.getAttack() != attack[u]) return false;
+			if (cellOf(unit.getTile().getTilex(), unit.getTile().getTiley()) != cell[u]) return false;
+		}
+		for (Unit unit : gameState.playerUnits) {
+			if (!unit.isDead() && unit.getTile() != null) units--;
+		}
+		return units == 0;
+	}
+
+	private boolean matches(int player, Player real, List<Card> realHand) {
+		if (health[player] != real.getHealth() || mana[player] != real.getMana()) return false;
+		if (handSize[player] != Math.min(realHand.size(), MAX_HAND)) return false;
+		for (int i = 0; i < handSize[player]; i++) {
+			if (!cardName[hand[player][i]].equals(realHand.get(i).getCardname())) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param other
+	 * @return true if both snapshots describe the same position
+	 */
+	public boolean sameAs(GameSnapshot other) {
+		if (currentPlayer != other.currentPlayer || turn != other.turn || winner != other.winner || unitCount != other.unitCount) return false;
+		for (int player = 1; player <= 2; player++) {
+			if (health[player] != other.health[player] || mana[player] != other.mana[player]) return false;
+			if (handSize[player] != other.handSize[player] || deckPosition[player] != other.deckPosition[player]) return false;
+			for (int i = 0; i < handSize[player]; i++) {
+				if (hand[player][i] != other.hand[player][i]) return false;
+			}
+		}
+		for (int u = 0; u < unitCount; u++) {
+			if (unitId[u] != other.unitId[u] || owner[u] != other.owner[u] || hp[u] != other.hp[u]
+					|| attack[u] != other.attack[u] || cell[u] != other.cell[u] || flags[u] != other.flags[u]) return false;
+		}
+		return Arrays.equals(board, other.board);
+	}
+
+	/**
+	 * Writes the moves the current player can make into the given array.
+	 * @param actions at least MAX_ACTIONS long
+	 * @return the number of moves, always at least one (END_TURN)
+	 */
+	public int legalActions(int[] actions) {
+		int count = 0;
+		actions[count++] = END_TURN;
+		if (winner != 0) return count;
+		int player = currentPlayer;
+
+		long friendly = 0L; // cells with a friendly unit, next to which creatures can be summoned
+		long provokers = 0L; // cells with an enemy unit that has Provoke
+		for (int u = 0; u < unitCount; u++) {
+			if (cell[u] < 0) continue;
+			if (owner[u] == player) friendly |= 1L << cell[u];
+			else if ((flags[u] & PROVOKE) != 0) provokers |= 1L << cell[u];
+		}
+
+		for (int u = 0; u < unitCount; u++) {
+			if (owner[u] != player || cell[u] < 0) continue;
+			if ((flags[u] & SLEEPING) != 0) continue;
+			// a unit next to an enemy with Provoke cannot move, and can only attack such enemies
+			boolean provoked = (Bitboard.neighbours(cell[u]) & provokers) != 0;
+			if ((flags[u] & ATTACKED) == 0) {
+				for (int c : ADJACENT[cell[u]]) {
+					int target = board[c];
+					if (target < 0 || owner[target] == player) continue;
+					if (provoked && (flags[target] & PROVOKE) == 0) continue;
+					actions[count++] = action(ATTACK, u, target);
+				}
+			}
+			if ((flags[u] & (MOVED | ATTACKED)) == 0 && !provoked) {
+				if ((flags[u] & FLYING) != 0) {
+					for (int c = 0; c < CELLS; c++) {
+						if (board[c] < 0) actions[count++] = action(MOVE, u, c);
+					}
+				} else {
+					for (int c : MOVES[cell[u]]) {
+						if (board[c] < 0) actions[count++] = action(MOVE, u, c);
+					}
+				}
+			}
+		}
+
+		long summonable = Bitboard.spread(friendly) & ~occupied();
+		for (int i = 0; i < handSize[player]; i++) {
+			int card = hand[player][i];
+			if (cardCost[card] > mana[player]) continue;
+			switch (cardKind[card]) {
+			case CREATURE:
+				if (unitCount == MAX_UNITS) break;
+				for (long cells = summonable; cells != 0; cells = Bitboard.next(cells)) {
+					actions[count++] = action(SUMMON, i, Bitboard.first(cells));
+				}
+				break;
+			case DAMAGE_TWO:
+			case DESTROY:
+				for (int u = 0; u < unitCount; u++) {
+					if (owner[u] == player || cell[u] < 0) continue;
+					if (cardKind[card] == DESTROY && (flags[u] & AVATAR) != 0) continue;
+					actions[count++] = action(SPELL, i, u);
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Plays a move for the current player. The move must be one of the legal ones.
+	 * Moves played this way cannot be undone, so do not mix them with make().
+	 * @param action
+	 */
+	public void apply(int action) {
+		int player = currentPlayer;
+		int a = argA(action);
+		int b = argB(action);
+		switch (kindOf(action)) {
+		case MOVE:
+			write(BOARD, board, cell[a], -1);
+			write(CELL, cell, a, b);
+			write(BOARD, board, b, a);
+			write(FLAGS, flags, a, flags[a] | MOVED);
+			break;
+		case ATTACK:
+			write(FLAGS, flags, a, flags[a] | ATTACKED | MOVED);
+			damage(b, attack[a]);
+			if (cell[b] >= 0) damage(a, attack[b]); // counter attack
+			break;
+		case SUMMON: {
+			int card = playCard(player, a);
+			int u = unitCount;
+			setValue(UNIT_COUNT, unitCount + 1);
+			write(UNIT_ID, unitId, u, -1);
+			write(OWNER, owner, u, player);
+			write(HP, hp, u, Math.max(1, cardHealth[card]));
+			write(ATTACK_VALUE, attack, u, cardAttack[card]);
+			write(CELL, cell, u, b);
+			// a creature with Rush can act on the turn it is summoned
+			int keywords = cardKeywords[card];
+			write(FLAGS, flags, u, keywordFlags(keywords) | ((keywords & Keywords.RUSH) != 0 ? 0 : SLEEPING));
+			write(BOARD, board, b, u);
+			break;
+		}
+		case SPELL: {
+			int card = playCard(player, a);
+			if (cardKind[card] == DAMAGE_TWO) damage(b, 2);
+			else kill(b);
+			break;
+		}
+		default:
+			endTurn();
+			break;
+		}
+	}
+
+	/**
+	 * Plays a move for the current player so that it can be taken back with undo().
+	 * The move must be one of the legal ones.
+	 * @param action
+	 */
+	public void make(int action) {
+		if (madeCount == made.length) made = Arrays.copyOf(made, madeCount * 2);
+		made[madeCount++] = trailSize;
+		trailing = true;
+		apply(action);
+		trailing = false;
+	}
+
+	/**
+	 * Takes back the last move played with make().
+	 */
+	public void undo() {
+		int start = made[--madeCount];
+		while (trailSize > start) {
+			int value = trail[--trailSize];
+			int index = trail[--trailSize];
+			int what = trail[--trailSize];
+			switch (what) {
+			case HEALTH: health[index] = value; break;
+			case MANA: mana[index] = value; break;
+			case HAND_1: hand[1][index] = value; break;
+			case HAND_2: hand[2][index] = value; break;
+			case HAND_SIZE: handSize[index] = value; break;
+			case DECK_POSITION: deckPosition[index] = value; break;
+			case UNIT_ID: unitId[index] = value; break;
+			case OWNER: owner[index] = value; break;
+			case HP: hp[index] = value; break;
+			case ATTACK_VALUE: attack[index] = value; break;
+			case CELL: cell[index] = value; break;
+			case FLAGS: flags[index] = value; break;
+			case BOARD: board[index] = value; break;
+			case CURRENT_PLAYER: currentPlayer = value; break;
+			case TURN: turn = value; break;
+			case WINNER: winner = value; break;
+			default: unitCount = value; break;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of moves made with make() that can still be undone
+	 */
+	public int getMadeCount() {
+		return madeCount;
+	}
+
+	/**
+	 * Scores the position for a player, between 0 (lost) and 1 (won).
+	 * @param player
+	 * @return
+	 */
+	public double evaluate(int player) {
+		if (winner != 0) return winner == player ? 1.0 : 0.0;
+		int other = 3 - player;
+		double score = 3 * (health[player] - health[other]);
+		for (int u = 0; u < unitCount; u++) {
+			if (cell[u] < 0 || (flags[u] & AVATAR) != 0) continue;
+			int value = hp[u] + attack[u];
+			score += owner[u] == player ? value : -value;
+		}
+		return 1.0 / (1.0 + Math.exp(-score / 20.0));
+	}
+
+	// the unit flags for a unit's Keywords
+	private static int keywordFlags(int keywords) {
+		int unitFlags = 0;
+		if ((keywords & Keywords.PROVOKE) != 0) unitFlags |= PROVOKE;
+		if ((keywords & Keywords.FLYING) != 0) unitFlags |= FLYING;
+		return unitFlags;
+	}
+
+	private long occupied() {
+		long cells = 0L;
+		for (int u = 0; u < unitCount; u++) {
+			if (cell[u] >= 0) cells |= 1L << cell[u];
+		}
+		return cells;
+	}
+
+	private int playCard(int player, int handIndex) {
+		int[] cards = hand[player];
+		int what = player == 1 ? HAND_1 : HAND_2;
+		int card = cards[handIndex];
+		write(MANA, mana, player, mana[player] - cardCost[card]);
+		for (int i = handIndex; i < handSize[player] - 1; i++) write(what, cards, i, cards[i + 1]);
+		write(HAND_SIZE, handSize, player, handSize[player] - 1);
+		return card;
+	}
+
+	private void damage(int u, int amount) {
+		write(HP, hp, u, Math.max(0, hp[u] - amount));
+		if ((flags[u] & AVATAR) != 0) write(HEALTH, health, owner[u], hp[u]);
+		if (hp[u] == 0) kill(u);
+	}
+
+	private void kill(int u) {
+		write(HP, hp, u, 0);
+		write(BOARD, board, cell[u], -1);
+		write(CELL, cell, u, -1);
+		if ((flags[u] & AVATAR) != 0) {
+			write(HEALTH, health, owner[u], 0);
+			if (winner == 0) setValue(WINNER, 3 - owner[u]);
+		}
+	}
+
+	// as TurnManager.switchTurn: the turn count goes up when it is player 1's go again,
+	// every unit is woken up and the next player gets their mana and draws a card
+	private void endTurn() {
+		int next = 3 - currentPlayer;
+		setValue(CURRENT_PLAYER, next);
+		if (next == 1) setValue(TURN, turn + 1);
+		for (int u = 0; u < unitCount; u++) {
+			if ((flags[u] & ~KEPT) != 0) write(FLAGS, flags, u, flags[u] & KEPT);
+		}
+		write(MANA, mana, next, turn + 1);
+		int[] cards = deck[next];
+		if (handSize[next] < MAX_HAND && deckPosition[next] < cards.length) {
+			write(next == 1 ? HAND_1 : HAND_2, hand[next], handSize[next], cards[deckPosition[next]]);
+			write(HAND_SIZE, handSize, next, handSize[next] + 1);
+			write(DECK_POSITION, deckPosition, next, deckPosition[next] + 1);
+		}
+	}
+
+	// Every change made by a move goes through here or setValue, so made moves can be undone
+	private void write(int what, int[] array, int index, int value) {
+		if (trailing) record(what, index, array[index]);
+		array[index] = value;
+	}
+
+	private void setValue(int what, int value) {
+		switch (what) {
+		case CURRENT_PLAYER:
+			if (trailing) record(what, 0, currentPlayer);
+			currentPlayer = value;
+			break;
+		case TURN:
+			if (trailing) record(what, 0, turn);
+			turn = value;
+			break;
+		case WINNER:
+			if (trailing) record(what, 0, winner);
+			winner = value;
+			break;
+		default:
+			if (trailing) record(UNIT_COUNT, 0, unitCount);
+			unitCount = value;
+			break;
+		}
+	}
+
+	private void record(int what, int index, int value) {
+		if (trailSize + 3 > trail.length) trail = Arrays.copyOf(trail, trail.length * 2);
+		trail[trailSize++] = what;
+		trail[trailSize++] = index;
+		trail[trailSize++] = value;
+	}
+
+	public static int action(int kind, int a, int b) {
+		return (kind << 24) | (a << 12) | b;
+	}
+
+	public static int kindOf(int action) {
+		return action >>> 24;
+	}
+
+	public static int argA(int action) {
+		return (action >>> 12) & 0xFFF;
+	}
+
+	public static int argB(int action) {
+		return action & 0xFFF;
+	}
+
+	public static int cellOf(int tilex, int tiley) {
+		return Bitboard.cellOf(tilex, tiley);
+	}
+
+	public static int tilex(int cell) {
+		return Bitboard.tilex(cell);
+	}
+
+	public static int tiley(int cell) {
+		return Bitboard.tiley(cell);
+	}
+
+	private static int[] cellsIn(long cells) {
+		int[] list = new int[Long.bitCount(cells)];
+		for (int i = 0; cells != 0; cells = Bitboard.next(cells)) list[i++] = Bitboard.first(cells);
+		return list;
+	}
+
+	// Numbers the distinct cards of a game, by name
+	private static class CardTableBuilder {
+
+		private final List<String> names = new ArrayList<String>();
+		private final List<Card> cards = new ArrayList<Card>();
+
+		int idOf(Card card) {
+			int id = names.indexOf(card.getCardname());
+			if (id < 0) {
+				id = names.size();
+				names.add(card.getCardname());
+				cards.add(card);
+			}
+			return id;
+		}
+
+		void build(GameSnapshot snapshot) {
+			int size = cards.size();
+			snapshot.cardCost = new int[size];
+			snapshot.cardAttack = new int[size];
+			snapshot.cardHealth = new int[size];
+			snapshot.cardKind = new int[size];
+			snapshot.cardKeywords = new int[size];
+			snapshot.cardName = names.toArray(new String[size]);
+			for (int id = 0; id < size; id++) {
+				Card card = cards.get(id);
+				snapshot.cardCost[id] = card.getManacost();
+				snapshot.cardAttack[id] = card.getAttack();
+				snapshot.cardHealth[id] = card.getHealth();
+				snapshot.cardKind[id] = kindOf(card);
+				snapshot.cardKeywords[id] = card.getKeywords();
+			}
+		}
+
+		private static int kindOf(Card card) {
+			CardEffect effect = CardFactory.createCardEffect(card);
+			if (effect instanceof CreatureCardEffect) return CREATURE;
+			if (effect instanceof TruestrikeEffect) return DAMAGE_TWO;
+			if (effect instanceof DarkTerminusEffect) return DESTROY;
+			return UNPLAYABLE;
+		}
+	}
+}
@@ -0,0 +1,214 @@
+package ai;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Plans a whole turn for the AI with a Monte Carlo tree search over GameSnapshots.
+ *
+ * For each move of the turn the planner grows a search tree from the current position:
+ * it walks down the tree picking moves by UCT, adds the moves of the position it ends
+ * up in, then plays random moves to the end of the opponent's following turn and scores
+ * the result. The move visited most often is played, and the search starts again from
+ * there until the planner chooses to end the turn.
+ *
+ * The tree lives in arrays allocated with the planner, and positions are replayed
+ * into two preallocated snapshots, so a search creates no garbage however many
+ * playouts it runs. Each thread reuses one planner (forThread), which also means a
+ * planner must only be used by one thread at a time.
+ */
+public class MctsPlanner {
+
+	// nodes the tree may hold; once it is full the search carries on with playouts only
+	static final int CAPACITY = 1 << 15;
+
+	private static final double EXPLORATION = 1.4;
+	private static final int MAX_PLAYOUT_ACTIONS = 200;
+	// searched for each move even if the time is up, so a plan is never a blind guess
+	private static final int MIN_ITERATIONS = 64;
+
+	private static final ThreadLocal<MctsPlanner> planners = ThreadLocal.withInitial(MctsPlanner::new);
+
+	// the tree, one entry per node in each array; the children of a node are next to each other
+	private final int[] parent = new int[CAPACITY];
+	private final int[] firstChild = new int[CAPACITY];
+	private final int[] childCount = new int[CAPACITY];
+	private final int[] action = new int[CAPACITY];
+	private final int[] mover = new int[CAPACITY]; // player who made the node's move
+	private final int[] visits = new int[CAPACITY];
+	private final double[] value = new double[CAPACITY]; // summed scores, for the mover
+	private int size;
+
+	private final GameSnapshot turn = new GameSnapshot(); // the position the turn has reached
+	private final GameSnapshot state = new GameSnapshot(); // scratch position for one iteration
+	private final int[] actions = new int[GameSnapshot.MAX_ACTIONS];
+	private final int[] path = new int[CAPACITY];
+	private SplittableRandom random;
+	private long playouts;
+
+	/**
+	 * @return the planner of the calling thread
+	 */
+	public static MctsPlanner forThread() {
+		return planners.get();
+	}
+
+	/**
+	 * Plans the current player's turn.
+	 * @param snapshot the game, which is left as it is
+	 * @param budgetMillis how long the planner may take
+	 * @param seed seeds the random playouts
+	 * @return the moves to play, in order, the last one being END_TURN
+	 */
+	public int[] planTurn(GameSnapshot snapshot, long budgetMillis, long seed) {
+		random = new SplittableRandom(seed);
+		playouts = 0;
+		turn.copyFrom(snapshot);
+		long deadline = System.nanoTime() + budgetMillis * 1_000_000L;
+
+		int[] plan = new int[16];
+		int length = 0;
+		while (true) {
+			// each move gets half of the time that is left, the first ones matter most
+			long remaining = Math.max(0, deadline - System.nanoTime());
+			int next = search(System.nanoTime() + remaining / 2);
+			if (length == plan.length) plan = Arrays.copyOf(plan, length * 2);
+			plan[length++] = next;
+			if (GameSnapshot.kindOf(next) == GameSnapshot.END_TURN) break;
+			turn.apply(next);
+			if (turn.winner != 0) {
+				if (length == plan.length) plan = Arrays.copyOf(plan, length + 1);
+				plan[length++] = GameSnapshot.END_TURN;
+				break;
+			}
+		}
+		return Arrays.copyOf(plan, length);
+	}
+
+	/**
+	 * @return the number of playouts run by the last planTurn
+	 */
+	public long getPlayouts() {
+		return playouts;
+	}
+
+	// Searches from the position in turn, and returns the best move found
+	private int search(long deadline) {
+		int count = turn.legalActions(actions);
+		if (count == 1) return actions[0];
+
+		size = 1;
+		parent[0] = -1;
+		childCount[0] = 0;
+		visits[0] = 0;
+		value[0] = 0;
+		int player = turn.currentPlayer;
+
+		int iterations = 0;
+		while (iterations < MIN_ITERATIONS || System.nanoTime() < deadline) {
+			iterate(player);
+			iterations++;
+		}
+
+		int best = firstChild[0];
+		for (int child = firstChild[0] + 1; child < firstChild[0] + childCount[0]; child++) {
+			if (visits[child] > visits[best] || (visits[child] == visits[best] && value[child] > value[best])) best = child;
+		}
+		return action[best];
+	}
+
+	private void iterate(int player) {
+		state.copyFrom(turn);
+		int node = 0;
+		int depth = 0;
+		path[depth++] = node;
+
+		// selection
+		while (childCount[node] > 0 && state.winner == 0) {
+			node = select(node);
+			state.apply(action[node]);
+			path[depth++] = node;
+		}
+
+		// expansion
+		if (state.winner == 0 && (visits[node] > 0 || node == 0)) {
+			int count = state.legalActions(actions);
+			if (size + count <= CAPACITY) {
+				firstChild[node] = size;
+				childCount[node] = count;
+				for (int i = 0; i < count; i++) {
+					int child = size++;
+					parent[child] = node;
+					action[child] = actions[i];
+					mover[child] = state.currentPlayer;
+					childCount[child] = 0;
+					visits[child] = 0;
+					value[child] = 0;
+				}
+				node = firstChild[node] + random.nextInt(count);
+				state.apply(action[node]);
+				path[depth++] = node;
+			}
+		}
+
+		double score = playout(player);
+
+		// backpropagation
+		for (int i = 0; i < depth; i++) {
+			int n = path[i];
+			visits[n]++;
+			value[n] += mover[n] == player ? score : 1 - score;
+		}
+	}
+
+	// UCT: the child with the best mix of a good average score and few visits
+	private int select(int node) {
+		int first = firstChild[node];
+		int last = first + childCount[node];
+		double logVisits = Math.log(visits[node]);
+		int best = first;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for (int child = first; child < last; child++) {
+			if (visits[child] == 0) return child;
+			double score = value[child] / visits[child] + EXPLORATION * Math.sqrt(logVisits / visits[child]);
+			if (score > bestScore) {
+				bestScore = score;
+				best = child;
+			}
+		}
+		return best;
+	}
+
+	// Plays on until the end of the opponent's next turn, and scores the result for player
+	private double playout(int player) {
+		playouts++;
+		boolean opponentMoved = state.currentPlayer != player;
+		for (int steps = 0; steps < MAX_PLAYOUT_ACTIONS && state.winner == 0; steps++) {
+			if (state.currentPlayer != player) opponentMoved = true;
+			else if (opponentMoved) break;
+			state.apply(playoutAction());
+		}
+		return state.evaluate(player);
+	}
+
+	private int playoutAction() {
+		int count = state.legalActions(actions);
+		if (count == 1) return actions[0];
+
+		// end the turn now and then, otherwise units wander about until they run out of moves
+		if (random.nextInt(8) == 0) return GameSnapshot.END_TURN;
+
+		// attacks and spells are few among many moves, so give them a better chance
+		int strikes = 0;
+		for (int i = 1; i < count; i++) {
+			int kind = GameSnapshot.kindOf(actions[i]);
+			if (kind == GameSnapshot.ATTACK || kind == GameSnapshot.SPELL) {
+				int swap = actions[++strikes];
+				actions[strikes] = actions[i];
+				actions[i] = swap;
+			}
+		}
+		if (strikes > 0 && random.nextBoolean()) return actions[1 + random.nextInt(strikes)];
+		return actions[1 + random.nextInt(count - 1)];
+	}
+}
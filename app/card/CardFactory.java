@@ -1,14 +1,27 @@
 package card;
 
+import java.lang.reflect.Constructor;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
 import structures.basic.Card;
-import card.player1.*;
-import card.player2.*;
 
 /**
  * Factory class for creating card effects based on the card configuration.
+ *
+ * Each card's configuration (conf/gameconfs/cards) names the class of its effect, e.g.
+ * "effect": "card.player1.BadOmenEffect", so adding a card does not mean changing this
+ * class. A class is looked up once, the first time a card names it. Effects hold no
+ * state between plays, so one instance of each is shared by every card and game; an
+ * effect that does keep state implements StatefulCardEffect, and a new one is made
+ * for each card played.
  */
 public class CardFactory {
-    
+
+    // how to get the effect of each class named by a card, or an empty supplier for an unknown class
+    private static final Map<String, Supplier<CardEffect>> effects = new ConcurrentHashMap<>();
+
     /**
      * Creates a card effect for the given card
      * 
@@ -16,34 +29,29 @@ public class CardFactory {
      * @return The CardEffect for the card, or null if not found
      */
     public static CardEffect createCardEffect(Card card) {
-        if (card == null) return null;
-        
-        String cardName = card.getCardname();
-        
-        // Player 1 cards
-        if (cardName.equals("Bad Omen")) return new BadOmenEffect();
-        if (cardName.equals("Gloom Chaser")) return new GloomChaserEffect();
-        if (cardName.equals("Rock Pulveriser")) return new RockPulveriserEffect();
-        if (cardName.equals("Shadow Watcher")) return new ShadowWatcherEffect();
-        if (cardName.equals("Nightsorrow Assassin")) return new NightsorrowAssassinEffect();
-        if (cardName.equals("Bloodmoon Priestess")) return new BloodmoonPriestessEffect();
-        if (cardName.equals("Shadowdancer")) return new ShadowdancerEffect();
-        if (cardName.equals("Horn of the Forsaken")) return new HornOfTheForsakenEffect();
-        if (cardName.equals("Wraithling Swarm")) return new WraithlingSwarmEffect();
-        if (cardName.equals("Dark Terminus")) return new DarkTerminusEffect();
-        
-        // Player 2 cards
-        if (cardName.equals("Swamp Entangler")) return new SwampEntanglerEffect();
-        if (cardName.equals("Silverguard Squire")) return new SilverguardSquireEffect();
-        if (cardName.equals("Skyrock Golem")) return new SkyrockGolemEffect();
-        if (cardName.equals("Saberspine Tiger")) return new SaberspineTigerEffect();
-        if (cardName.equals("Silverguard Knight")) return new SilverguardKnightEffect();
-        if (cardName.equals("Young Flamewing")) return new YoungFlamewingEffect();
-        if (cardName.equals("Ironcliff Guardian")) return new IroncliffGuardianEffect();
-        //if (cardName.equals("Sundrop Elixir")) return new SundropElixirEffect();
-        if (cardName.equals("Truestrike")) return new TruestrikeEffect();
-        //if (cardName.equals("Beamshock")) return new BeamshockEffect();
-        
-        return null;
+        if (card == null || card.getEffect() == null) return null;
+        return effects.computeIfAbsent(card.getEffect(), CardFactory::resolve).get();
+    }
+
+    private static Supplier<CardEffect> resolve(String className) {
+        try {
+            Constructor<? extends CardEffect> constructor = Class.forName(className).asSubclass(CardEffect.class).getConstructor();
+            if (StatefulCardEffect.class.isAssignableFrom(constructor.getDeclaringClass())) {
+                return () -> newEffect(constructor);
+            }
+            CardEffect effect = newEffect(constructor);
+            return () -> effect;
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            System.err.println("CardFactory: no card effect " + className);
+            return () -> null;
+        }
+    }
+
+    private static CardEffect newEffect(Constructor<? extends CardEffect> constructor) {
+        try {
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,9 @@
+package card;
+
+/**
+ * Marks a card effect that keeps state from one play to the next (e.g. the
+ * robustness of Horn of the Forsaken), so CardFactory creates a new one for every card
+ * played instead of sharing one instance.
+ */
+public interface StatefulCardEffect extends CardEffect {
+}
@@ -0,0 +1,186 @@
+package card.abilities;
+
+import java.util.Arrays;
+
+import akka.actor.ActorRef;
+import structures.GameState;
+import structures.basic.Unit;
+
+/**
+ * The abilities of the units in a game, by what triggers them. Units join the
+ * registry of their game when they are added to it (GameState.addUnit) and leave it
+ * when they are removed, and the abilities they gain or lose in between are
+ * registered as they go (Unit.addAbility/removeAbility). An ability is registered
+ * under every trigger it implements, e.g. Horn of the Forsaken is both an Artifact
+ * and an OnHit.
+ *
+ * A trigger then only goes through the abilities that respond to it, rather than
+ * through every ability of every unit. The abilities of a trigger are kept in an array
+ * that is replaced (not changed) when one is registered or unregistered, so a trigger
+ * goes through the abilities registered when it fired, without copying them, even if
+ * they summon or kill units along the way.
+ */
+public class AbilityRegistry {
+
+    /**
+     * What an ability responds to
+     */
+    public enum Trigger {
+        DEATHWATCH(Deathwatch.class),
+        ON_HIT(OnHit.class),
+        ARTIFACT(Artifact.class),
+        OPENING_GAMBIT(OpeningGambit.class),
+        PROVOKE(Provoke.class),
+        FLYING(Flying.class),
+        RUSH(Rush.class);
+
+        private final Class<? extends Ability> type;
+
+        Trigger(Class<? extends Ability> type) {
+            this.type = type;
+        }
+    }
+
+    private static final Trigger[] TRIGGERS = Trigger.values();
+    private static final Subscription[] NONE = new Subscription[0];
+
+    private final Subscription[][] subscriptions = new Subscription[TRIGGERS.length][];
+
+    public AbilityRegistry() {
+        Arrays.fill(subscriptions, NONE);
+    }
+
+    /**
+     * Registers an ability of a unit under every trigger it responds to.
+     * @param unit
+     * @param ability
+     */
+    public void register(Unit unit, Ability ability) {
+        for (Trigger trigger : TRIGGERS) {
+            if (trigger.type.isInstance(ability)) {
+                Subscription[] current = subscriptions[trigger.ordinal()];
+                Subscription[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = new Subscription(unit, ability);
+                subscriptions[trigger.ordinal()] = updated;
+            }
+        }
+    }
+
+    /**
+     * Unregisters one ability of a unit.
+     * @param unit
+     * @param ability
+     */
+    public void unregister(Unit unit, Ability ability) {
+        remove(unit, ability);
+    }
+
+    /**
+     * Unregisters all of the abilities of a unit.
+     * @param unit
+     */
+    public void unregister(Unit unit) {
+        remove(unit, null);
+    }
+
+    /**
+     * @param trigger
+     * @return the number of abilities registered under a trigger
+     */
+    public int count(Trigger trigger) {
+        return subscriptions[trigger.ordinal()].length;
+    }
+
+    /**
+     * @param unit
+     * @param trigger
+     * @return true if the unit has an ability registered under the trigger
+     */
+    public boolean has(Unit unit, Trigger trigger) {
+        for (Subscription subscription : subscriptions[trigger.ordinal()]) {
+            if (subscription.unit == unit) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Triggers the Deathwatch abilities of every unit, as a unit dies.
+     * @param out
+     * @param gameState
+     * @param deadUnit
+     */
+    public void unitDied(ActorRef out, GameState gameState, Unit deadUnit) {
+        for (Subscription subscription : subscriptions[Trigger.DEATHWATCH.ordinal()]) {
+            ((Deathwatch) subscription.ability).onUnitDeath(out, gameState, subscription.unit, deadUnit);
+        }
+    }
+
+    /**
+     * Triggers the Artifact abilities of a unit that is about to take damage.
+     * @param out
+     * @param gameState
+     * @param unit
+     * @return true if an artifact took the damage instead of the unit
+     */
+    public boolean unitHurt(ActorRef out, GameState gameState, Unit unit) {
+        for (Subscription subscription : subscriptions[Trigger.ARTIFACT.ordinal()]) {
+            if (subscription.unit == unit && ((Artifact) subscription.ability).onHurt(out, gameState)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Triggers the OnHit abilities of a unit that has dealt damage.
+     * @param out
+     * @param gameState
+     * @param unit
+     * @return true if an OnHit ability took effect
+     */
+    public boolean unitHit(ActorRef out, GameState gameState, Unit unit) {
+        for (Subscription subscription : subscriptions[Trigger.ON_HIT.ordinal()]) {
+            if (subscription.unit == unit && ((OnHit) subscription.ability).onHit(out, gameState)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Removes the given ability of a unit, or all of them if ability is null
+    private void remove(Unit unit, Ability ability) {
+        for (int t = 0; t < subscriptions.length; t++) {
+            Subscription[] current = subscriptions[t];
+            int kept = 0;
+            for (Subscription subscription : current) {
+                if (!subscription.matches(unit, ability)) kept++;
+            }
+            if (kept == current.length) continue;
+
+            Subscription[] updated = new Subscription[kept];
+            int i = 0;
+            for (Subscription subscription : current) {
+                if (!subscription.matches(unit, ability)) updated[i++] = subscription;
+            }
+            subscriptions[t] = updated;
+        }
+    }
+
+    // An ability of a unit
+    private static class Subscription {
+
+        final Unit unit;
+        final Ability ability;
+
+        Subscription(Unit unit, Ability ability) {
+            this.unit = unit;
+            this.ability = ability;
+        }
+
+        boolean matches(Unit unit, Ability ability) {
+            return this.unit == unit && (ability == null || this.ability == ability);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package card.abilities;
 
 import akka.actor.ActorRef;
 import structures.GameState;
+import structures.basic.Keywords;
 import structures.basic.Tile;
 import structures.basic.Unit;
 
@@ -60,8 +61,6 @@ public class Flying implements Ability {
      * @return true if the unit has Flying
      */
     public static boolean hasFlyingAbility(Unit unit) {
-        // This will be expanded when we implement unit abilities fully
-        String unitConfig = unit.getClass().getName();
-        return unitConfig.contains("YoungFlamewing");
+        return unit.hasKeyword(Keywords.FLYING);
     }
 }
\ No newline at end of file
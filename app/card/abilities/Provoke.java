@@ -1,7 +1,9 @@
 package card.abilities;
 
 import akka.actor.ActorRef;
+import structures.Bitboard;
 import structures.GameState;
+import structures.basic.Keywords;
 import structures.basic.Tile;
 import structures.basic.Unit;
 
@@ -37,36 +39,9 @@ public class Provoke implements Ability {
      * @return true if the unit is provoked
      */
     public static boolean isUnitProvoked(GameState gameState, Unit unit) {
-        if (unit == null) return false;
-        
-        int unitX = unit.getPosition().getTilex();
-        int unitY = unit.getPosition().getTiley();
-        
-        // Check all 8 adjacent tiles for enemy units with Provoke
-        int[][] directions = {
-            {1, 0}, {-1, 0}, {0, 1}, {0, -1},  // Adjacent
-            {1, 1}, {1, -1}, {-1, 1}, {-1, -1} // Diagonal
-        };
-        
-        for (int[] dir : directions) {
-            int x = unitX + dir[0];
-            int y = unitY + dir[1];
-            
-            // Check if the position is valid on the board
-            if (x >= 0 && x < 9 && y >= 0 && y < 5) {
-                Tile adjacentTile = gameState.board[x][y];
-                Unit adjacentUnit = adjacentTile.getUnit();
-                
-                // Check if there's an enemy unit with Provoke
-                if (adjacentUnit != null && 
-                    adjacentUnit.getOwner() != unit.getOwner() && 
-                    hasProvokeAbility(adjacentUnit)) {
-                    return true;
-                }
-            }
-        }
-        
-        return false;
+        if (unit == null || unit.getPosition() == null) return false;
+        int cell = Bitboard.cellOf(unit.getPosition().getTilex(), unit.getPosition().getTiley());
+        return gameState.bitboard.provoked(cell, unit.getOwner());
     }
     
     /**
@@ -76,12 +51,6 @@ public class Provoke implements Ability {
      * @return true if the unit has Provoke
      */
     public static boolean hasProvokeAbility(Unit unit) {
-        // This will be expanded when we implement unit abilities fully
-        // For now, we can check based on the unit type
-        String unitConfig = unit.getClass().getName();
-        return unitConfig.contains("Silverguard") || 
-               unitConfig.contains("Ironcliff") || 
-               unitConfig.contains("SwampEntangler") ||
-               unitConfig.contains("RockPulveriser");
+        return unit.hasKeyword(Keywords.PROVOKE);
     }
 }
\ No newline at end of file
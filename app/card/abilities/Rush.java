@@ -2,6 +2,7 @@ package card.abilities;
 
 import akka.actor.ActorRef;
 import structures.GameState;
+import structures.basic.Keywords;
 import structures.basic.Tile;
 import structures.basic.Unit;
 
@@ -36,8 +37,6 @@ public class Rush implements Ability {
      * @return true if the unit has Rush
      */
     public static boolean hasRushAbility(Unit unit) {
-        // This will be expanded when we implement unit abilities fully
-        String unitConfig = unit.getClass().getName();
-        return unitConfig.contains("SaberspineTiger");
+        return unit.hasKeyword(Keywords.RUSH);
     }
 }
\ No newline at end of file
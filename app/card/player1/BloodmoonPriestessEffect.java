@@ -12,7 +12,6 @@ import utils.StaticConfFiles;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 /**
  * Bloodmoon Priestess card effect:
@@ -48,8 +47,7 @@ public class BloodmoonPriestessEffect extends CreatureCardEffect {
             }
 
             // Select a random empty tile
-            Random random = new Random();
-            Tile summonTile = emptyAdjacentTiles.get(random.nextInt(emptyAdjacentTiles.size()));
+            Tile summonTile = emptyAdjacentTiles.get(gameState.random.nextInt(emptyAdjacentTiles.size()));
 
             UnitManager.summonUnitDirectly(out, gameState, StaticConfFiles.wraithling, 1, 1, summonTile);
 
@@ -2,6 +2,7 @@ package card.player1;
 
 import akka.actor.ActorRef;
 import card.SpellCardEffect;
+import card.StatefulCardEffect;
 import card.abilities.Artifact;
 import card.abilities.OnHit;
 import commands.BasicCommands;
@@ -24,9 +25,9 @@ import utils.StaticConfFiles;
  * Wraithling on a randomly selected unoccupied adjacent tile. If there are no
  * unoccupied tiles, then this ability has no effect.
  */
-public class HornOfTheForsakenEffect extends SpellCardEffect {
+public class HornOfTheForsakenEffect extends SpellCardEffect implements StatefulCardEffect {
 
-    int robustness = 3;
+    int robustness = 3; // of the artifact this card equips, so each card played needs its own effect
 
     @Override
     protected String getEffectAnimation() {
@@ -4,6 +4,7 @@ import akka.actor.ActorRef;
 import card.CreatureCardEffect;
 import card.abilities.Deathwatch;
 import commands.BasicCommands;
+import managers.GeneralManager;
 import structures.GameState;
 import structures.basic.Tile;
 import structures.basic.Unit;
@@ -39,15 +40,7 @@ public class ShadowWatcherEffect extends CreatureCardEffect {
             
             unit.setAttack(out, newAttack);
             unit.setHealth(out, newHealth);
-            
-            // Update the UI
-            BasicCommands.setUnitAttack(out, unit, newAttack);
-            BasicCommands.setUnitHealth(out, unit, newHealth);
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+            GeneralManager.sleep(100);
             
             // Play a buff effect
             playEffectAnimation(out, gameState, StaticConfFiles.f1_buff, unit.getTile());
@@ -50,9 +50,6 @@ public class ShadowdancerEffect extends CreatureCardEffect {
                     BasicCommands.setPlayer1Health(out, gameState.player1);
                 }
                 
-                // Update enemy avatar health display
-                BasicCommands.setUnitHealth(out, enemyAvatar, newHealth);
-                
                 // Play damage effect on enemy avatar
                 playEffectAnimation(out, gameState, StaticConfFiles.f1_buff, enemyAvatar.getTile());
             }
@@ -75,9 +72,6 @@ public class ShadowdancerEffect extends CreatureCardEffect {
                     BasicCommands.setPlayer2Health(out, gameState.player2);
                 }
                 
-                // Update player avatar health display
-                BasicCommands.setUnitHealth(out, playerAvatar, newHealth);
-                
                 // Play heal effect on player avatar
                 playEffectAnimation(out, gameState, StaticConfFiles.f1_buff, playerAvatar.getTile());
             }
@@ -11,7 +11,6 @@ import utils.StaticConfFiles;
 
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Random;
 
 /**
  * Wraithling Swarm card effect:
@@ -36,29 +35,19 @@ public class WraithlingSwarmEffect extends SpellCardEffect {
         }
 
         // Summon up to 3 Wraithlings
-        Random random = new Random();
         int summonCount = 0;
 
         for (int i = 0; i < 3 && !validTiles.isEmpty(); i++) {
             // Select a random valid tile
-            int index = random.nextInt(validTiles.size());
+            int index = gameState.random.nextInt(validTiles.size());
             Tile summonTile = validTiles.get(index);
             validTiles.remove(index);
 
             // Play summon effect
             playEffectAnimation(out, gameState, StaticConfFiles.f1_buff, summonTile);
 
-            // Summon a Wraithling
-            Unit wraithling = UnitManager.summonUnitDirectly(out, gameState, StaticConfFiles.wraithling, 1, 1,
-                    summonTile);
-            wraithling.setOwner(gameState.currentPlayer);
-
-            // Place the Wraithling on the board
-            wraithling.setTile(summonTile);
-            summonTile.setUnit(wraithling);
-
-            // Add to the game state
-            gameState.playerUnits.add(wraithling);
+            // Summon a Wraithling, owned by the current player
+            UnitManager.summonUnitDirectly(out, gameState, StaticConfFiles.wraithling, 1, 1, summonTile);
 
             summonCount++;
         }
@@ -74,10 +63,8 @@ public class WraithlingSwarmEffect extends SpellCardEffect {
         List<Tile> validTiles = new ArrayList<>();
 
         // Get all tiles adjacent to friendly units
-        for (Unit unit : gameState.playerUnits) {
-            if (unit.getOwner() == gameState.currentPlayer) {
-                validTiles.addAll(getAdjacentTiles(gameState, unit, true));
-            }
+        for (Unit unit : gameState.getUnits(gameState.currentPlayer)) {
+            validTiles.addAll(getAdjacentTiles(gameState, unit, true));
         }
 
         return validTiles;
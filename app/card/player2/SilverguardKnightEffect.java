@@ -58,15 +58,12 @@ public class SilverguardKnightEffect extends CreatureCardEffect {
      */
     public void onAvatarDamaged(ActorRef out, GameState gameState, int playerOwner) {
         // Find all Silverguard Knights belonging to the player
-        for (Unit unit : gameState.playerUnits) {
-            if (unit.getOwner() == playerOwner && isSilverguardKnight(unit)) {
+        for (Unit unit : gameState.getUnits(playerOwner)) {
+            if (isSilverguardKnight(unit)) {
                 // Apply the +2 attack buff
                 int newAttack = unit.getAttack() + 2;
                 unit.setAttack(out, newAttack);
                 
-                // Update the UI
-                BasicCommands.setUnitAttack(out, unit, newAttack);
-                
                 // Play a buff effect
                 playEffectAnimation(out, gameState, StaticConfFiles.f1_buff, unit.getTile());
                 
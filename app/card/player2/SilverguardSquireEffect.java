@@ -80,10 +80,6 @@ public class SilverguardSquireEffect extends CreatureCardEffect {
         unit.setAttack(out, newAttack);
         unit.setHealth(out, newHealth);
         
-        // Update the UI
-        BasicCommands.setUnitAttack(out, unit, newAttack);
-        BasicCommands.setUnitHealth(out, unit, newHealth);
-        
         // Play a buff effect
         playEffectAnimation(out, gameState, StaticConfFiles.f1_buff, unit.getTile());
     }
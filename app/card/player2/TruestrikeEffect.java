@@ -2,7 +2,6 @@ package card.player2;
 
 import akka.actor.ActorRef;
 import card.SpellCardEffect;
-import commands.BasicCommands;
 import structures.GameState;
 import structures.basic.Card;
 import structures.basic.Tile;
@@ -35,9 +34,6 @@ public class TruestrikeEffect extends SpellCardEffect {
         int newHealth = targetUnit.getHealth() - 2;
         targetUnit.setHealth(out, Math.max(0, newHealth));
         
-        // Update the UI
-        BasicCommands.setUnitHealth(out, targetUnit, targetUnit.getHealth());
-        
         showNotification(out, "Truestrike deals 2 damage to the target", 2);
         
         // If the unit is dead, remove it
@@ -1,10 +1,11 @@
 package commands;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import akka.actor.ActorRef;
 import play.libs.Json;
+import structures.GameState;
 import structures.basic.Card;
 import structures.basic.EffectAnimation;
 import structures.basic.Player;
@@ -23,12 +24,21 @@ import structures.basic.UnitAnimationType;
  */
 public class BasicCommands {
 
-	private static ObjectMapper mapper = new ObjectMapper(); // Jackson Java Object Serializer, is used to turn java objects to Strings
-	
 	// An alternative class with a 'tell' implementation can be given if writing unit tests
 	// and need to have a null ActorRef. This should be null during normal operation.
+	// It is shared by every thread, so code that runs games in parallel should bind a
+	// CommandSink instead, which takes precedence.
 	public static DummyTell altTell = null;
 	
+	// Versions of the command protocol. The server offers the latest one in the actorReady
+	// message and the front-end answers with the one it wants (see events.ProtocolSelected).
+	// Version 2 sends unit stat changes as compact unitPatch commands.
+	// Version 3 also sends tile highlight changes together, as drawTiles commands.
+	public static final int PROTOCOL_LEGACY = 1;
+	public static final int PROTOCOL_UNIT_PATCH = 2;
+	public static final int PROTOCOL_TILE_BATCH = 3;
+	public static final int LATEST_PROTOCOL = PROTOCOL_TILE_BATCH;
+	
 	
 	/**
 	 * You can consider the contents of the user’s browser window a canvas that can be drawn upon. drawTile will draw 
@@ -39,20 +49,49 @@ public class BasicCommands {
 	 * @param tile
 	 * @param mode
 	 */
-	@SuppressWarnings({"deprecation"})
 	public static void drawTile(ActorRef out, Tile tile, int mode) {
 		try {
+			if (muted()) return;
 			ObjectNode returnMessage = Json.newObject();
 			returnMessage.put("messagetype", "drawTile");
-			returnMessage.put("tile", mapper.readTree(mapper.writeValueAsString(tile)));
+			returnMessage.set("tile", CommandPayloads.tile(tile));
 			returnMessage.put("mode", mode);
-			if (altTell!=null) altTell.tell(returnMessage);
-			else out.tell(returnMessage, out);
+			tell(out, returnMessage);
+			CommandSink sink = CommandSink.current();
+			if (sink!=null) sink.getBoard().drawn(tile, mode);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Changes the highlight mode of a board tile. Unlike drawTile, nothing is sent if the front-end already shows
+	 * the tile in that mode, and the tiles changed one after the other go out together just before the next
+	 * command, delay or the end of the event (see BoardRender). Without a CommandSink the tile is drawn straight away.
+	 * @param out
+	 * @param tile
+	 * @param mode
+	 */
+	public static void highlightTile(ActorRef out, Tile tile, int mode) {
+		try {
+			if (muted()) return;
+			CommandSink sink = CommandSink.current();
+			if (sink==null || !sink.getBoard().mark(tile, mode)) drawTile(out, tile, mode);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 	}
 	
+	/**
+	 * Sends the tile highlight changes that are waiting, if any. Called before a delay
+	 * and once an event has been processed; other commands send them first anyway.
+	 */
+	public static void flushTiles() {
+		CommandSink sink = CommandSink.current();
+		if (sink==null || !sink.getBoard().isDirty()) return;
+		for (ObjectNode message : sink.getBoard().drain(sink.getProtocolVersion())) sink.send(message);
+	}
+	
 	/**
 	 * drawUnit will draw the sprite for a unit (a picture of that unit with its attack and health values) on the board. 
 	 * This command takes as input a target Tile (a ‘square’ of the main game grid) to place the unit’s sprite upon, 
@@ -61,15 +100,14 @@ public class BasicCommands {
 	 * @param unit
 	 * @param tile
 	 */
-	@SuppressWarnings({"deprecation"})
 	public static void drawUnit(ActorRef out, Unit unit, Tile tile) {
 		try {
+			if (muted()) return;
 			ObjectNode returnMessage = Json.newObject();
 			returnMessage.put("messagetype", "drawUnit");
-			returnMessage.put("tile", mapper.readTree(mapper.writeValueAsString(tile)));
-			returnMessage.put("unit", mapper.readTree(mapper.writeValueAsString(unit)));
-			if (altTell!=null) altTell.tell(returnMessage);
-			else out.tell(returnMessage, out);
+			returnMessage.set("tile", CommandPayloads.tile(tile));
+			returnMessage.set("unit", CommandPayloads.unit(unit));
+			tell(out, returnMessage);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -78,19 +116,23 @@ public class BasicCommands {
 	/**
 	 * This command changes the visualised attack value just under a unit’s sprite to a value between 0 
 	 * and 20. The command takes in a unit instance. The associated values are read from the unit object.
+	 * If the front-end speaks protocol version 2 only the unit id and the new value are sent.
 	 * @param out
 	 * @param unit
 	 * @param attack
 	 */
-	@SuppressWarnings({"deprecation"})
 	public static void setUnitAttack(ActorRef out, Unit unit, int attack) {
 		try {
+			if (muted()) return;
+			if (protocolVersion() >= PROTOCOL_UNIT_PATCH) {
+				tell(out, unitPatch(unit).put("attack", attack));
+				return;
+			}
 			ObjectNode returnMessage = Json.newObject();
 			returnMessage.put("messagetype", "setUnitAttack");
-			returnMessage.put("unit", mapper.readTree(mapper.writeValueAsString(unit)));
+			returnMessage.set("unit", CommandPayloads.unit(unit));
 			returnMessage.put("attack", attack);
-			if (altTell!=null) altTell.tell(returnMessage);
-			else out.tell(returnMessage, out);
+			tell(out, returnMessage);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -99,19 +141,23 @@ public class BasicCommands {
 	/**
 	 * This command changes the visualised health value just under a unit’s sprite to a value between 0 
 	 * and 20. The command takes in a unit instance. The associated values are read from the unit object.
+	 * If the front-end speaks protocol version 2 only the unit id and the new value are sent.
 	 * @param out
 	 * @param unit
 	 * @param health
 	 */
-	@SuppressWarnings({"deprecation"})
 	public static void setUnitHealth(ActorRef out, Unit unit, int health) {
 		try {
+			if (muted()) return;
+			if (protocolVersion() >= PROTOCOL_UNIT_PATCH) {
+				tell(out, unitPatch(unit).put("health", health));
+				return;
+			}
 			ObjectNode returnMessage = Json.newObject();
 			returnMessage.put("messagetype", "setUnitHealth");
-			returnMessage.put("unit", mapper.readTree(mapper.writeValueAsString(unit)));
+			returnMessage.set("unit", CommandPayloads.unit(unit));
 			returnMessage.put("health", health);
-			if (altTell!=null) altTell.tell(returnMessage);
-			else out.tell(returnMessage, out);
+			tell(out, returnMessage);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -124,15 +170,14 @@ public class BasicCommands {
 	 * @param unit
 	 * @param tile
 	 */
-	@SuppressWarnings({"deprecation"})
 	public static void moveUnitToTile(ActorRef out, Unit unit, Tile tile) {
 		try {
+			if (muted()) return;
 			ObjectNode returnMessage = Json.newObject();
 			returnMessage.put("messagetype", "moveUnitToTile");
-			returnMessage.put("unit", mapper.readTree(mapper.writeValueAsString(unit)));
-			returnMessage.put("tile", mapper.readTree(mapper.writeValueAsString(tile)));
-			if (altTell!=null) altTell.tell(returnMessage);
-			else out.tell(returnMessage, out);
+			returnMessage.set("unit", CommandPayloads.unit(unit));
+			returnMessage.set("tile", CommandPayloads.tile(tile));
+			tell(out, returnMessage);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -147,16 +192,15 @@ public class BasicCommands {
 	 * @param unit
 	 * @param tile
 	 */
-	@SuppressWarnings({"deprecation"})
 	public static void moveUnitToTile(ActorRef out, Unit unit, Tile tile, boolean yfirst) {
 		try {
+			if (muted()) return;
 			ObjectNode returnMessage = Json.newObject();
 			returnMessage.put("messagetype", "moveUnitToTile");
 			returnMessage.put("yfirst", yfirst);
-			returnMessage.put("unit", mapper.readTree(mapper.writeValueAsString(unit)));
-			returnMessage.put("tile", mapper.readTree(mapper.writeValueAsString(tile)));
-			if (altTell!=null) altTell.tell(returnMessage);
-			else out.tell(returnMessage, out);
+			returnMessage.set("unit", CommandPayloads.unit(unit));
+			returnMessage.set("tile", CommandPayloads.tile(tile));
+			tell(out, returnMessage);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -173,18 +217,17 @@ public class BasicCommands {
 	 * @param unit
 	 * @param animation
 	 */
-	@SuppressWarnings({"deprecation"})
 	public static int playUnitAnimation(ActorRef out, Unit unit, UnitAnimationType animationToPlay) {
 		try {
 			
 			unit.setAnimation(animationToPlay);
+			if (muted()) return 0;
 			
 			ObjectNode returnMessage = Json.newObject();
 			returnMessage.put("messagetype", "playUnitAnimation");
-			returnMessage.put("unit", mapper.readTree(mapper.writeValueAsString(unit)));
+			returnMessage.set("unit", CommandPayloads.unit(unit));
 			returnMessage.put("animation", animationToPlay.toString());
-			if (altTell!=null) altTell.tell(returnMessage);
-			else out.tell(returnMessage, out);
+			tell(out, returnMessage);
 			
 			// estimate the time needed for the animation to play
 			UnitAnimation animation = null;
@@ -211,14 +254,13 @@ public class BasicCommands {
 	 * @param out
 	 * @param unit
 	 */
-	@SuppressWarnings({"deprecation"})
 	public static void deleteUnit(ActorRef out, Unit unit) {
 		try {
+			if (muted()) return;
 			ObjectNode returnMessage = Json.newObject();
 			returnMessage.put("messagetype", "deleteUnit");
-			returnMessage.put("unit", mapper.readTree(mapper.writeValueAsString(unit)));
-			if (altTell!=null) altTell.tell(returnMessage);
-			else out.tell(returnMessage, out);
+			returnMessage.set("unit", CommandPayloads.unit(unit));
+			tell(out, returnMessage);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -231,14 +273,13 @@ public class BasicCommands {
 	 * @param out
 	 * @param player
 	 */
-	@SuppressWarnings({"deprecation"})
 	public static void setPlayer1Health(ActorRef out, Player player) {
 		try {
+			if (muted()) return;
 			ObjectNode returnMessage = Json.newObject();
 			returnMessage.put("messagetype", "setPlayer1Health");
-			returnMessage.put("player", mapper.readTree(mapper.writeValueAsString(player)));
-			if (altTell!=null) altTell.tell(returnMessage);
-			else out.tell(returnMessage, out);
+			returnMessage.set("player", CommandPayloads.player(player));
+			tell(out, returnMessage);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -251,14 +292,13 @@ public class BasicCommands {
 	 * @param out
 	 * @param player
 	 */
-	@SuppressWarnings({"deprecation"})
 	public static void setPlayer2Health(ActorRef out, Player player) {
 		try {
+			if (muted()) return;
 			ObjectNode returnMessage = Json.newObject();
 			returnMessage.put("messagetype", "setPlayer2Health");
-			returnMessage.put("player", mapper.readTree(mapper.writeValueAsString(player)));
-			if (altTell!=null) altTell.tell(returnMessage);
-			else out.tell(returnMessage, out);
+			returnMessage.set("player", CommandPayloads.player(player));
+			tell(out, returnMessage);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -271,14 +311,13 @@ public class BasicCommands {
 	 * @param out
 	 * @param player
 	 */
-	@SuppressWarnings({"deprecation"})
 	public static void setPlayer1Mana(ActorRef out, Player player) {
 		try {
+			if (muted()) return;
 			ObjectNode returnMessage = Json.newObject();
 			returnMessage.put("messagetype", "setPlayer1Mana");
-			returnMessage.put("player", mapper.readTree(mapper.writeValueAsString(player)));
-			if (altTell!=null) altTell.tell(returnMessage);
-			else out.tell(returnMessage, out);
+			returnMessage.set("player", CommandPayloads.player(player));
+			tell(out, returnMessage);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -291,14 +330,13 @@ public class BasicCommands {
 	 * @param out
 	 * @param player
 	 */
-	@SuppressWarnings({"deprecation"})
 	public static void setPlayer2Mana(ActorRef out, Player player) {
 		try {
+			if (muted()) return;
 			ObjectNode returnMessage = Json.newObject();
 			returnMessage.put("messagetype", "setPlayer2Mana");
-			returnMessage.put("player", mapper.readTree(mapper.writeValueAsString(player)));
-			if (altTell!=null) altTell.tell(returnMessage);
-			else out.tell(returnMessage, out);
+			returnMessage.set("player", CommandPayloads.player(player));
+			tell(out, returnMessage);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -313,16 +351,15 @@ public class BasicCommands {
 	 * @param position
 	 * @param mode
 	 */
-	@SuppressWarnings({"deprecation"})
 	public static void drawCard(ActorRef out, Card card, int position, int mode) {
 		try {
+			if (muted()) return;
 			ObjectNode returnMessage = Json.newObject();
 			returnMessage.put("messagetype", "drawCard");
-			returnMessage.put("card", mapper.readTree(mapper.writeValueAsString(card)));
+			returnMessage.set("card", CommandPayloads.card(card));
 			returnMessage.put("position", position);
 			returnMessage.put("mode", mode);
-			if (altTell!=null) altTell.tell(returnMessage);
-			else out.tell(returnMessage, out);
+			tell(out, returnMessage);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -335,11 +372,63 @@ public class BasicCommands {
 	 */
 	public static void deleteCard(ActorRef out, int position) {
 		try {
+			if (muted()) return;
 			ObjectNode returnMessage = Json.newObject();
 			returnMessage.put("messagetype", "deleteCard");
 			returnMessage.put("position", position);
-			if (altTell!=null) altTell.tell(returnMessage);
-			else out.tell(returnMessage, out);
+			tell(out, returnMessage);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Redraws a whole game in one command, for a front-end that reconnected to a game that
+	 * is already being played. It carries every tile in the mode the front-end was last
+	 * sent, the units on the board (by tile, the front-end knows the tiles from the same
+	 * message), the cards in player 1's hand and the health and mana of both players.
+	 * The front-end takes it apart into the commands it would otherwise have received one
+	 * by one, without the pauses in between.
+	 * @param out
+	 * @param gameState
+	 */
+	public static void drawFullState(ActorRef out, GameState gameState) {
+		try {
+			if (muted()) return;
+			flushTiles();
+			CommandSink sink = CommandSink.current();
+			ObjectNode returnMessage = Json.newObject();
+			returnMessage.put("messagetype", "fullState");
+			ArrayNode tiles = returnMessage.putArray("tiles");
+			for (int y = 0; y < BoardRender.HEIGHT; y++) {
+				for (int x = 0; x < BoardRender.WIDTH; x++) {
+					Tile tile = gameState.board[x][y];
+					if (tile == null) continue;
+					ObjectNode entry = tiles.addObject();
+					entry.set("tile", CommandPayloads.tile(tile));
+					entry.put("tilex", x);
+					entry.put("tiley", y);
+					entry.put("mode", sink == null ? 0 : sink.getBoard().modeOf(tile));
+				}
+			}
+			ArrayNode units = returnMessage.putArray("units");
+			for (Unit unit : gameState.playerUnits) {
+				if (unit.getPosition() == null) continue;
+				ObjectNode entry = units.addObject();
+				entry.set("unit", CommandPayloads.unit(unit));
+				entry.put("tilex", unit.getPosition().getTilex());
+				entry.put("tiley", unit.getPosition().getTiley());
+			}
+			ArrayNode hand = returnMessage.putArray("hand");
+			for (int i = 0; i < gameState.player1Hand.size(); i++) {
+				ObjectNode entry = hand.addObject();
+				entry.set("card", CommandPayloads.card(gameState.player1Hand.get(i)));
+				entry.put("position", i + 1);
+				entry.put("mode", gameState.selectedHandPosition == i + 1 ? 1 : 0);
+			}
+			returnMessage.set("player1", CommandPayloads.player(gameState.player1));
+			returnMessage.set("player2", CommandPayloads.player(gameState.player2));
+			tell(out, returnMessage);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -354,15 +443,14 @@ public class BasicCommands {
 	 * @param effect
 	 * @param tile
 	 */
-	@SuppressWarnings({"deprecation"})
 	public static int playEffectAnimation(ActorRef out, EffectAnimation effect, Tile tile) {
 		try {
+			if (muted()) return 0;
 			ObjectNode returnMessage = Json.newObject();
 			returnMessage.put("messagetype", "playEffectAnimation");
-			returnMessage.put("effect", mapper.readTree(mapper.writeValueAsString(effect)));
-			returnMessage.put("tile", mapper.readTree(mapper.writeValueAsString(tile)));
-			if (altTell!=null) altTell.tell(returnMessage);
-			else out.tell(returnMessage, out);
+			returnMessage.set("effect", CommandPayloads.effect(effect));
+			returnMessage.set("tile", CommandPayloads.tile(tile));
+			tell(out, returnMessage);
 			
 			return ((1000*effect.getAnimationTextures().size())/effect.getFps())+50;
 		} catch (Exception e) {
@@ -381,12 +469,12 @@ public class BasicCommands {
 	 */
 	public static void addPlayer1Notification(ActorRef out, String text, int displayTimeSeconds) {
 		try {
+			if (muted()) return;
 			ObjectNode returnMessage = Json.newObject();
 			returnMessage.put("messagetype", "addPlayer1Notification");
 			returnMessage.put("text", text);
 			returnMessage.put("seconds", displayTimeSeconds);
-			if (altTell!=null) altTell.tell(returnMessage);
-			else out.tell(returnMessage, out);
+			tell(out, returnMessage);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -398,20 +486,65 @@ public class BasicCommands {
 	 * @param effect
 	 * @param tile
 	 */
-	@SuppressWarnings({"deprecation"})
 	public static void playProjectileAnimation(ActorRef out, EffectAnimation effect, int mode, Tile startTile, Tile targetTile) {
 		try {
+			if (muted()) return;
 			ObjectNode returnMessage = Json.newObject();
 			returnMessage.put("messagetype", "drawProjectile");
-			returnMessage.put("effect", mapper.readTree(mapper.writeValueAsString(effect)));
-			returnMessage.put("tile", mapper.readTree(mapper.writeValueAsString(startTile)));
-			returnMessage.put("targetTile", mapper.readTree(mapper.writeValueAsString(targetTile)));
-			returnMessage.put("mode", mapper.readTree(mapper.writeValueAsString(mode)));
-			if (altTell!=null) altTell.tell(returnMessage);
-			else out.tell(returnMessage, out);
+			returnMessage.set("effect", CommandPayloads.effect(effect));
+			returnMessage.set("tile", CommandPayloads.tile(startTile));
+			returnMessage.set("targetTile", CommandPayloads.tile(targetTile));
+			returnMessage.put("mode", mode);
+			tell(out, returnMessage);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 	}
 	
-}
+	/**
+	 * Hands a command over to the front-end. During a game the command goes to the
+	 * CommandSink of the game being processed (a CommandChannel takes care of pacing it
+	 * after any animation delays). Unit tests can swap this for altTell.
+	 * @param out
+	 * @param message
+	 */
+	private static void tell(ActorRef out, ObjectNode message) {
+		CommandSink sink = CommandSink.current();
+		if (sink!=null) {
+			flushTiles(); // keep tile changes in order with the other commands
+			sink.send(message);
+		}
+		else if (altTell!=null) altTell.tell(message);
+		else out.tell(message, out);
+	}
+	
+	/**
+	 * @return true if the commands would be thrown away anyway (headless games)
+	 */
+	private static boolean muted() {
+		CommandSink sink = CommandSink.current();
+		return sink!=null && sink.isMuted();
+	}
+	
+	/**
+	 * Starts a unitPatch command, which carries the id of a unit and only the fields that changed.
+	 * @param unit
+	 * @return
+	 */
+	private static ObjectNode unitPatch(Unit unit) {
+		ObjectNode returnMessage = Json.newObject();
+		returnMessage.put("messagetype", "unitPatch");
+		returnMessage.put("id", unit.getId());
+		return returnMessage;
+	}
+	
+	/**
+	 * @return the protocol version agreed with the front-end of the game being processed
+	 */
+	private static int protocolVersion() {
+		CommandSink sink = CommandSink.current();
+		if (sink==null) return PROTOCOL_LEGACY;
+		return sink.getProtocolVersion();
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,134 @@
+package commands;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import play.libs.Json;
+import structures.basic.Tile;
+
+/**
+ * What the board looks like on the front-end: the highlight mode last sent for each
+ * tile. Highlight changes (BasicCommands.highlightTile) are only marked here, and are
+ * sent when the next other command goes out, when the timeline is delayed or when the
+ * event has been processed. A tile that ends up in the mode the front-end already
+ * shows is not sent at all, so clearing the highlights and highlighting the same tiles
+ * again costs nothing. The rest go out together, as one drawTiles command if the
+ * front-end speaks protocol version 3, otherwise as one drawTile each.
+ *
+ * Each CommandSink has its own, and like the game it is only used by the thread
+ * processing the game's events.
+ */
+public class BoardRender {
+
+	public static final int WIDTH = 9;
+	public static final int HEIGHT = 5;
+
+	private static final int UNSENT = -1;
+
+	private final int[] sent = new int[WIDTH * HEIGHT]; // mode the front-end shows, or UNSENT
+	private final int[] wanted = new int[WIDTH * HEIGHT];
+	private final Tile[] tiles = new Tile[WIDTH * HEIGHT]; // marked tiles, null if not marked
+	private final int[] dirty = new int[WIDTH * HEIGHT]; // cells marked since the last drain, in order
+	private int dirtyCount = 0;
+
+	public BoardRender() {
+		Arrays.fill(sent, UNSENT);
+	}
+
+	/**
+	 * Marks a tile to be shown in the given mode.
+	 * @param tile
+	 * @param mode
+	 * @return false if the tile is not on the board, in which case it should be drawn straight away
+	 */
+	public boolean mark(Tile tile, int mode) {
+		int cell = cellOf(tile);
+		if (cell < 0) return false;
+		if (tiles[cell] == null) {
+			if (mode == sent[cell]) return true;
+			dirty[dirtyCount++] = cell;
+		}
+		tiles[cell] = tile;
+		wanted[cell] = mode;
+		return true;
+	}
+
+	/**
+	 * Records that a tile was drawn directly (BasicCommands.drawTile), after the
+	 * marked tiles have been drained.
+	 * @param tile
+	 * @param mode
+	 */
+	public void drawn(Tile tile, int mode) {
+		int cell = cellOf(tile);
+		if (cell >= 0) sent[cell] = mode;
+	}
+
+	/**
+	 * @param tile
+	 * @return the mode the front-end was last sent for the tile, 0 if it was never drawn
+	 */
+	public int modeOf(Tile tile) {
+		int cell = cellOf(tile);
+		return cell < 0 || sent[cell] == UNSENT ? 0 : sent[cell];
+	}
+
+	/**
+	 * @return true if some tiles have been marked since the last drain
+	 */
+	public boolean isDirty() {
+		return dirtyCount > 0;
+	}
+
+	/**
+	 * Builds the commands for the tiles whose mode changed, and takes them as sent.
+	 * @param protocolVersion of the front-end
+	 * @return the commands to send, in order
+	 */
+	public List<ObjectNode> drain(int protocolVersion) {
+		List<ObjectNode> messages = new ArrayList<ObjectNode>();
+		ArrayNode batch = null;
+		for (int i = 0; i < dirtyCount; i++) {
+			int cell = dirty[i];
+			Tile tile = tiles[cell];
+			int mode = wanted[cell];
+			tiles[cell] = null;
+			if (mode == sent[cell]) continue;
+
+			if (protocolVersion >= BasicCommands.PROTOCOL_TILE_BATCH) {
+				if (batch == null) {
+					ObjectNode message = Json.newObject();
+					message.put("messagetype", "drawTiles");
+					batch = message.putArray("tiles");
+					messages.add(message);
+				}
+				// the full tile only the first time, after that the front-end knows it by position
+				ObjectNode entry = batch.addObject();
+				if (sent[cell] == UNSENT) entry.set("tile", CommandPayloads.tile(tile));
+				entry.put("tilex", tile.getTilex());
+				entry.put("tiley", tile.getTiley());
+				entry.put("mode", mode);
+			} else {
+				ObjectNode message = Json.newObject();
+				message.put("messagetype", "drawTile");
+				message.set("tile", CommandPayloads.tile(tile));
+				message.put("mode", mode);
+				messages.add(message);
+			}
+			sent[cell] = mode;
+		}
+		dirtyCount = 0;
+		return messages;
+	}
+
+	private static int cellOf(Tile tile) {
+		int x = tile.getTilex();
+		int y = tile.getTiley();
+		if (x < 0 || x >= WIDTH || y < 0 || y >= HEIGHT) return -1;
+		return x * HEIGHT + y;
+	}
+}
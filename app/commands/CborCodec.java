@@ -0,0 +1,294 @@
+package commands;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+
+import akka.util.ByteString;
+import play.http.websocket.Message;
+import play.libs.Json;
+
+/**
+ * The CBOR side of one websocket (see WireFormat). Messages are written as CBOR
+ * (RFC 8949) with one addition: each side of the connection numbers the text strings
+ * of STRING_MIN_BYTES bytes or more in the order they first go out, and after that
+ * sends a string as its number, tagged STRING_REF. Commands are mostly the same keys
+ * and asset paths over and over, so most strings in a frame become two or three bytes.
+ * The reading side numbers the strings the same way as they come in, so the frames of
+ * a connection must be read in the order they were written, which a websocket does.
+ *
+ * Text frames are read as JSON, so the other side can always fall back to JSON for
+ * what it sends.
+ */
+class CborCodec implements WireFormat.Codec {
+
+	static final int STRING_REF = 25; // tag of a string sent before, followed by its number
+	static final int STRING_MIN_BYTES = 4; // shorter strings are not numbered, a reference would save nothing
+	static final int MAX_STRINGS = 4096; // strings after this many are not numbered
+
+	// major types
+	private static final int UNSIGNED = 0;
+	private static final int NEGATIVE = 1;
+	private static final int BYTES = 2;
+	private static final int TEXT = 3;
+	private static final int ARRAY = 4;
+	private static final int MAP = 5;
+	private static final int TAG = 6;
+	private static final int SIMPLE = 7;
+
+	private static final int INDEFINITE = 31;
+	private static final int BREAK = 0xFF;
+
+	// strings written so far, by number, and strings read so far
+	private final Map<String, Integer> written = new HashMap<String, Integer>();
+	private final List<String> read = new ArrayList<String>();
+
+	private byte[] out = new byte[4096];
+	private int size;
+
+	@Override
+	public Message write(JsonNode message) {
+		size = 0;
+		writeValue(message);
+		return new Message.Binary(ByteString.fromArray(out, 0, size));
+	}
+
+	@Override
+	public JsonNode read(Message frame) throws IOException {
+		if (frame instanceof Message.Text) return Json.mapper().readTree(((Message.Text) frame).data());
+		Reader reader = new Reader(((Message.Binary) frame).data().toArray());
+		JsonNode message = reader.readValue();
+		if (reader.position != reader.in.length) throw new IOException("Trailing bytes in CBOR frame");
+		return message;
+	}
+
+	private void writeValue(JsonNode node) {
+		switch (node.getNodeType()) {
+		case OBJECT:
+			writeHeader(MAP, node.size());
+			for (Iterator<Map.Entry<String, JsonNode>> fields = node.fields(); fields.hasNext();) {
+				Map.Entry<String, JsonNode> field = fields.next();
+				writeString(field.getKey());
+				writeValue(field.getValue());
+			}
+			break;
+		case ARRAY:
+			writeHeader(ARRAY, node.size());
+			for (JsonNode element : node) writeValue(element);
+			break;
+		case STRING:
+			writeString(node.textValue());
+			break;
+		case NUMBER:
+			if (node.isIntegralNumber() && node.canConvertToLong()) {
+				long value = node.longValue();
+				if (value >= 0) writeHeader(UNSIGNED, value);
+				else writeHeader(NEGATIVE, -1 - value);
+			} else {
+				ensure(9);
+				out[size++] = (byte) (SIMPLE << 5 | 27);
+				putLong(Double.doubleToLongBits(node.doubleValue()));
+			}
+			break;
+		case BOOLEAN:
+			ensure(1);
+			out[size++] = (byte) (SIMPLE << 5 | (node.booleanValue() ? 21 : 20));
+			break;
+		case BINARY:
+			try {
+				byte[] bytes = node.binaryValue();
+				writeHeader(BYTES, bytes.length);
+				putBytes(bytes);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			break;
+		case POJO:
+			writeValue(Json.toJson(((POJONode) node).getPojo()));
+			break;
+		default: // null, missing
+			ensure(1);
+			out[size++] = (byte) (SIMPLE << 5 | 22);
+			break;
+		}
+	}
+
+	private void writeString(String value) {
+		Integer number = written.get(value);
+		if (number != null) {
+			writeHeader(TAG, STRING_REF);
+			writeHeader(UNSIGNED, number);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeHeader(TEXT, bytes.length);
+		putBytes(bytes);
+		if (bytes.length >= STRING_MIN_BYTES && written.size() < MAX_STRINGS) written.put(value, written.size());
+	}
+
+	// the major type and the value or length that follows it, in as few bytes as it fits
+	private void writeHeader(int major, long value) {
+		ensure(9);
+		int type = major << 5;
+		if (value < 24) {
+			out[size++] = (byte) (type | value);
+		} else if (value < 0x100) {
+			out[size++] = (byte) (type | 24);
+			out[size++] = (byte) value;
+		} else if (value < 0x10000) {
+			out[size++] = (byte) (type | 25);
+			out[size++] = (byte) (value >> 8);
+			out[size++] = (byte) value;
+		} else if (value < 0x100000000L) {
+			out[size++] = (byte) (type | 26);
+			for (int shift = 24; shift >= 0; shift -= 8) out[size++] = (byte) (value >> shift);
+		} else {
+			out[size++] = (byte) (type | 27);
+			putLong(value);
+		}
+	}
+
+	private void putLong(long value) {
+		for (int shift = 56; shift >= 0; shift -= 8) out[size++] = (byte) (value >> shift);
+	}
+
+	private void putBytes(byte[] bytes) {
+		ensure(bytes.length);
+		System.arraycopy(bytes, 0, out, size, bytes.length);
+		size += bytes.length;
+	}
+
+	private void ensure(int bytes) {
+		if (size + bytes > out.length) out = Arrays.copyOf(out, Math.max(out.length * 2, size + bytes));
+	}
+
+	// Reads one frame
+	private class Reader {
+
+		final byte[] in;
+		int position;
+
+		Reader(byte[] in) {
+			this.in = in;
+		}
+
+		JsonNode readValue() throws IOException {
+			int initial = next();
+			int major = initial >>> 5;
+			int info = initial & 31;
+			if (major == SIMPLE) return readSimple(info);
+			long value = readLength(info);
+			switch (major) {
+			case UNSIGNED:
+				return number(value);
+			case NEGATIVE:
+				return number(-1 - value);
+			case BYTES:
+				return JsonNodeFactory.instance.binaryNode(take(value));
+			case TEXT:
+				return JsonNodeFactory.instance.textNode(readText(value));
+			case ARRAY: {
+				ArrayNode array = JsonNodeFactory.instance.arrayNode();
+				for (long i = 0; value < 0 ? !atBreak() : i < value; i++) array.add(readValue());
+				return array;
+			}
+			case MAP: {
+				ObjectNode object = JsonNodeFactory.instance.objectNode();
+				for (long i = 0; value < 0 ? !atBreak() : i < value; i++) {
+					JsonNode key = readValue();
+					if (!key.isTextual()) throw new IOException("CBOR map key is not a string");
+					object.set(key.textValue(), readValue());
+				}
+				return object;
+			}
+			default: // TAG
+				if (value != STRING_REF) return readValue(); // other tags add nothing we use
+				int number = (int) readValue().asLong(-1);
+				if (number < 0 || number >= read.size()) throw new IOException("Unknown CBOR string reference " + number);
+				return JsonNodeFactory.instance.textNode(read.get(number));
+			}
+		}
+
+		// as Jackson reads JSON numbers, so messages compare equal whichever way they came
+		JsonNode number(long value) {
+			if (value == (int) value) return JsonNodeFactory.instance.numberNode((int) value);
+			return JsonNodeFactory.instance.numberNode(value);
+		}
+
+		String readText(long length) throws IOException {
+			if (length < 0) throw new IOException("Chunked CBOR strings are not supported");
+			String value = new String(take(length), StandardCharsets.UTF_8);
+			if (length >= STRING_MIN_BYTES && read.size() < MAX_STRINGS) read.add(value);
+			return value;
+		}
+
+		JsonNode readSimple(int info) throws IOException {
+			switch (info) {
+			case 20: return JsonNodeFactory.instance.booleanNode(false);
+			case 21: return JsonNodeFactory.instance.booleanNode(true);
+			case 25: return JsonNodeFactory.instance.numberNode(halfFloat((int) readBits(2)));
+			case 26: return JsonNodeFactory.instance.numberNode(Float.intBitsToFloat((int) readBits(4)));
+			case 27: return JsonNodeFactory.instance.numberNode(Double.longBitsToDouble(readBits(8)));
+			default: return JsonNodeFactory.instance.nullNode();
+			}
+		}
+
+		// the value or length after the initial byte, or -1 if indefinite
+		long readLength(int info) throws IOException {
+			if (info < 24) return info;
+			switch (info) {
+			case 24: return readBits(1);
+			case 25: return readBits(2);
+			case 26: return readBits(4);
+			case 27: return readBits(8);
+			case INDEFINITE: return -1;
+			default: throw new IOException("Malformed CBOR");
+			}
+		}
+
+		boolean atBreak() throws IOException {
+			if (position >= in.length) throw new IOException("Truncated CBOR frame");
+			if ((in[position] & 0xFF) != BREAK) return false;
+			position++;
+			return true;
+		}
+
+		long readBits(int bytes) throws IOException {
+			long value = 0;
+			for (int i = 0; i < bytes; i++) value = value << 8 | next();
+			return value;
+		}
+
+		byte[] take(long length) throws IOException {
+			if (length < 0 || length > in.length - position) throw new IOException("Truncated CBOR frame");
+			byte[] bytes = Arrays.copyOfRange(in, position, position + (int) length);
+			position += (int) length;
+			return bytes;
+		}
+
+		int next() throws IOException {
+			if (position >= in.length) throw new IOException("Truncated CBOR frame");
+			return in[position++] & 0xFF;
+		}
+	}
+
+	private static double halfFloat(int bits) {
+		int exponent = (bits >> 10) & 31;
+		int fraction = bits & 1023;
+		double value = exponent == 0 ? fraction * Math.pow(2, -24)
+				: exponent == 31 ? (fraction != 0 ? Double.NaN : Double.POSITIVE_INFINITY)
+				: (1 + fraction / 1024.0) * Math.pow(2, exponent - 15);
+		return (bits & 0x8000) != 0 ? -value : value;
+	}
+}
@@ -0,0 +1,235 @@
+package commands;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import akka.actor.ActorRef;
+import akka.actor.Cancellable;
+import akka.actor.Scheduler;
+import play.libs.Json;
+import scala.concurrent.ExecutionContext;
+
+/**
+ * The outbound side of one game. Commands used to be paced by calling Thread.sleep
+ * between them on the actor's thread, so the browser had time to play animations.
+ * A channel keeps a timeline instead: GeneralManager.sleep() moves a cursor forward,
+ * and any command issued after that is scheduled (via the Akka scheduler) for the
+ * moment the cursor points at. The game logic for an event finishes straight away
+ * and the actor goes back to its mailbox while the commands trickle out.
+ *
+ * The channel of the game currently being processed is bound to the actor's thread
+ * by the GameActor (see CommandSink), which is how the static helpers in BasicCommands
+ * and GeneralManager find it.
+ *
+ * Commands can also be batched (see Batching), in which case the commands an event
+ * produces are collected and sent as one "batch" frame when the GameActor flushes
+ * the channel at the end of the event.
+ *
+ * A game outlives its websocket, so the channel is attached to the socket the game is
+ * currently played through, and while none is attached its commands are dropped.
+ */
+public class CommandChannel extends CommandSink {
+
+	/**
+	 * How commands are grouped into websocket frames, set by game.commands.batching
+	 * in application.conf.
+	 */
+	public enum Batching {
+		/** One frame per command (legacy front-ends) */
+		OFF,
+		/** Commands that are due at the same time share one "batch" frame */
+		ON,
+		/** All commands of an event go in one "batch" frame, with "delay" markers the front-end waits on */
+		CLIENT_PACED;
+
+		public static Batching fromConfig(String value) {
+			if (value == null) return OFF;
+			switch (value.trim().toLowerCase()) {
+			case "on": return ON;
+			case "client-paced": return CLIENT_PACED;
+			default: return OFF;
+			}
+		}
+	}
+
+	private ActorRef out; // the socket, or null while the game has none
+	private final Scheduler scheduler;
+	private final ExecutionContext dispatcher;
+	private final Batching batching;
+
+	private long cursor = 0; // wall-clock time (ms) at which the next command should go out
+	private final Deque<PendingCommand> pending = new ArrayDeque<PendingCommand>();
+	private Cancellable drain = null;
+	private int protocolVersion = BasicCommands.PROTOCOL_LEGACY;
+
+	public CommandChannel(ActorRef out, Scheduler scheduler, ExecutionContext dispatcher, Batching batching) {
+		this.out = out;
+		this.scheduler = scheduler;
+		this.dispatcher = dispatcher;
+		this.batching = batching;
+	}
+
+	/**
+	 * Sends the commands from now on to another websocket (a front-end that reconnected).
+	 * Whatever was waiting for the previous one is dropped, and the new front-end has to
+	 * ask for a protocol version again.
+	 * @param out
+	 */
+	public synchronized void attach(ActorRef out) {
+		close();
+		this.out = out;
+		protocolVersion = BasicCommands.PROTOCOL_LEGACY;
+	}
+
+	/**
+	 * Drops the commands from now on, called when the websocket closes.
+	 */
+	public synchronized void detach() {
+		close();
+		out = null;
+	}
+
+	/**
+	 * @return the command protocol version the front-end asked for
+	 */
+	@Override
+	public int getProtocolVersion() {
+		return protocolVersion;
+	}
+
+	public void setProtocolVersion(int protocolVersion) {
+		this.protocolVersion = protocolVersion;
+	}
+
+	/**
+	 * Moves the timeline forward, so the commands sent after this call reach the
+	 * front-end the given number of milliseconds later than the ones before it.
+	 * @param millis
+	 */
+	@Override
+	public synchronized void delay(int millis) {
+		if (millis <= 0) return;
+		cursor = Math.max(cursor, now()) + millis;
+	}
+
+	/**
+	 * Sends a command at the current position of the timeline. Without batching, if
+	 * nothing is waiting and the timeline is not ahead of the clock, the command is sent
+	 * immediately. With batching it waits for flush().
+	 * @param message
+	 */
+	@Override
+	public synchronized void send(JsonNode message) {
+		if (out == null) return;
+		long now = now();
+		if (batching == Batching.OFF && cursor <= now && pending.isEmpty()) {
+			out.tell(message, out);
+			return;
+		}
+		pending.addLast(new PendingCommand(Math.max(cursor, now), message));
+		if (batching == Batching.OFF) scheduleDrain(now);
+	}
+
+	/**
+	 * Called by the GameActor once it has finished processing an event. Sends what is
+	 * due now as one batch and schedules the rest, or with client pacing sends all of
+	 * it as one batch with delay markers.
+	 */
+	public synchronized void flush() {
+		if (batching == Batching.OFF || pending.isEmpty()) return;
+		if (batching == Batching.CLIENT_PACED) {
+			sendPaced();
+		} else if (drain == null) {
+			drainDue();
+		}
+	}
+
+	/**
+	 * @return true while there are commands waiting to be sent to the front-end
+	 */
+	public synchronized boolean isPlaying() {
+		return !pending.isEmpty() || cursor > now();
+	}
+
+	/**
+	 * Drops anything that has not been sent yet, called when the game stops.
+	 */
+	public synchronized void close() {
+		if (drain != null) drain.cancel();
+		drain = null;
+		pending.clear();
+		cursor = 0;
+	}
+
+	private synchronized void drainDue() {
+		drain = null;
+		long now = now();
+		List<JsonNode> due = new ArrayList<JsonNode>();
+		while (!pending.isEmpty() && pending.peekFirst().due <= now) {
+			JsonNode message = pending.pollFirst().message;
+			if (batching == Batching.OFF) out.tell(message, out);
+			else due.add(message);
+		}
+		if (due.size() == 1) out.tell(due.get(0), out);
+		else if (due.size() > 1) out.tell(batch(due), out);
+		scheduleDrain(now);
+	}
+
+	// The front-end takes over the timing: the gaps between commands become delay
+	// markers, and the timeline starts again from the clock for the next event since
+	// the front-end plays batches one after the other anyway.
+	private void sendPaced() {
+		List<JsonNode> commands = new ArrayList<JsonNode>(pending.size() * 2);
+		long previous = now();
+		for (PendingCommand command : pending) {
+			if (command.due > previous) {
+				ObjectNode delay = Json.newObject();
+				delay.put("messagetype", "delay");
+				delay.put("ms", command.due - previous);
+				commands.add(delay);
+				previous = command.due;
+			}
+			commands.add(command.message);
+		}
+		pending.clear();
+		cursor = 0;
+		out.tell(batch(commands), out);
+	}
+
+	private static ObjectNode batch(List<JsonNode> commands) {
+		ObjectNode batch = Json.newObject();
+		batch.put("messagetype", "batch");
+		ArrayNode array = batch.putArray("commands");
+		array.addAll(commands);
+		return batch;
+	}
+
+	// Only one drain is scheduled at a time, and it always sends the oldest command
+	// first, so commands keep their order even when several are due in the same tick.
+	private void scheduleDrain(long now) {
+		if (drain != null || pending.isEmpty()) return;
+		long wait = Math.max(0, pending.peekFirst().due - now);
+		drain = scheduler.scheduleOnce(Duration.ofMillis(wait), this::drainDue, dispatcher);
+	}
+
+	private static long now() {
+		return System.currentTimeMillis();
+	}
+
+	private static class PendingCommand {
+		final long due;
+		final JsonNode message;
+
+		PendingCommand(long due, JsonNode message) {
+			this.due = due;
+			this.message = message;
+		}
+	}
+}
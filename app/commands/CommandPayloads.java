@@ -0,0 +1,131 @@
+package commands;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import structures.basic.Card;
+import structures.basic.EffectAnimation;
+import structures.basic.Player;
+import structures.basic.Position;
+import structures.basic.Tile;
+import structures.basic.Unit;
+
+/**
+ * Builds the JSON payloads of the commands in BasicCommands straight into ObjectNode trees,
+ * rather than writing each object out to a String and parsing it back in.
+ *
+ * The parts of a payload that never change once an object is loaded (a unit's animation set
+ * and image correction, the tile textures, cards and effects) are converted once and the
+ * resulting nodes are shared between every message that contains them. Only the fields that
+ * change during a game (health, attack, position, highlight mode...) are written per call.
+ * The shared nodes must therefore never be modified.
+ *
+ * The output is field-for-field what Jackson would produce for the same objects.
+ */
+public class CommandPayloads {
+
+	private static ObjectMapper mapper = new ObjectMapper(); // Jackson Java Object Serializer, used for the cached fragments
+	private static JsonNodeFactory nodes = JsonNodeFactory.instance;
+
+	// Weak keys, so that fragments go away together with the objects they were made from.
+	// The model classes do not override equals, so they are looked up by identity; lists
+	// (tile textures) are looked up by content, which gives the same JSON anyway.
+	private static Map<Object, JsonNode> fragments = Collections.synchronizedMap(new WeakHashMap<Object, JsonNode>());
+
+	/**
+	 * @param tile
+	 * @return the JSON representation of a tile
+	 */
+	public static ObjectNode tile(Tile tile) {
+		ObjectNode node = nodes.objectNode();
+		node.set("tileTextures", fragment(tile.getTileTextures()));
+		node.put("xpos", tile.getXpos());
+		node.put("ypos", tile.getYpos());
+		node.put("width", tile.getWidth());
+		node.put("height", tile.getHeight());
+		node.put("tilex", tile.getTilex());
+		node.put("tiley", tile.getTiley());
+		node.put("highlightStatus", tile.getHighlightStatus());
+		return node;
+	}
+
+	/**
+	 * @param unit
+	 * @return the JSON representation of a unit
+	 */
+	public static ObjectNode unit(Unit unit) {
+		if (unit.getClass() != Unit.class) {
+			// subclasses may carry extra fields, leave those to Jackson
+			return mapper.valueToTree(unit);
+		}
+		ObjectNode node = nodes.objectNode();
+		node.put("id", unit.getId());
+		node.put("health", unit.getHealth());
+		node.put("attack", unit.getAttack());
+		node.put("owner", unit.getOwner());
+		if (unit.getAnimation() == null) node.putNull("animation");
+		else node.put("animation", unit.getAnimation().toString());
+		node.set("position", position(unit.getPosition()));
+		node.set("animations", fragment(unit.getAnimations()));
+		node.set("correction", fragment(unit.getCorrection()));
+		node.put("tilex", unit.getTilex());
+		node.put("tiley", unit.getTiley());
+		node.put("dead", unit.isDead());
+		return node;
+	}
+
+	/**
+	 * @param player
+	 * @return the JSON representation of a player
+	 */
+	public static ObjectNode player(Player player) {
+		ObjectNode node = nodes.objectNode();
+		node.put("health", player.getHealth());
+		node.put("mana", player.getMana());
+		return node;
+	}
+
+	/**
+	 * Cards do not change once they have been loaded, so their JSON is shared.
+	 * @param card
+	 * @return the JSON representation of a card
+	 */
+	public static JsonNode card(Card card) {
+		return fragment(card);
+	}
+
+	/**
+	 * Effects do not change once they have been loaded, so their JSON is shared.
+	 * @param effect
+	 * @return the JSON representation of an effect animation
+	 */
+	public static JsonNode effect(EffectAnimation effect) {
+		return fragment(effect);
+	}
+
+	private static JsonNode position(Position position) {
+		if (position == null) return nodes.nullNode();
+		ObjectNode node = nodes.objectNode();
+		node.put("xpos", position.getXpos());
+		node.put("ypos", position.getYpos());
+		node.put("tilex", position.getTilex());
+		node.put("tiley", position.getTiley());
+		return node;
+	}
+
+	private static JsonNode fragment(Object value) {
+		if (value == null) return nodes.nullNode();
+		JsonNode node = fragments.get(value);
+		if (node == null) {
+			node = mapper.valueToTree(value);
+			fragments.put(value, node);
+		}
+		return node;
+	}
+}
@@ -0,0 +1,93 @@
+package commands;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Where the commands produced by the game rules end up. While an event is being
+ * processed, the sink of that game is bound to the processing thread, which is how the
+ * static helpers in BasicCommands and GeneralManager find it. Binding per thread (rather
+ * than setting something static) lets any number of games run side by side.
+ *
+ * A game with a front-end uses a CommandChannel. Games played without one (simulations,
+ * tests) can use NONE, which drops everything; BasicCommands does not even build the
+ * commands when it is bound.
+ */
+public abstract class CommandSink {
+
+	private static final ThreadLocal<CommandSink> current = new ThreadLocal<CommandSink>();
+
+	private final BoardRender board = new BoardRender();
+
+	/**
+	 * Drops every command and ignores delays, for games without a front-end
+	 */
+	public static final CommandSink NONE = new CommandSink() {
+
+		@Override
+		public void send(JsonNode message) {}
+
+		@Override
+		public void delay(int millis) {}
+
+		@Override
+		public boolean isMuted() {
+			return true;
+		}
+	};
+
+	/**
+	 * Binds a sink to the calling thread, so commands issued while processing
+	 * an event are routed to it.
+	 * @param sink
+	 */
+	public static void bind(CommandSink sink) {
+		current.set(sink);
+	}
+
+	public static void unbind() {
+		current.remove();
+	}
+
+	/**
+	 * @return the sink bound to the calling thread, or null if there is none
+	 * (e.g. in unit tests)
+	 */
+	public static CommandSink current() {
+		return current.get();
+	}
+
+	/**
+	 * Sends a command to the front-end.
+	 * @param message
+	 */
+	public abstract void send(JsonNode message);
+
+	/**
+	 * Holds back the commands sent after this call by the given number of
+	 * milliseconds, to give the front-end time to play animations.
+	 * @param millis
+	 */
+	public abstract void delay(int millis);
+
+	/**
+	 * @return the command protocol version the front-end asked for
+	 */
+	public int getProtocolVersion() {
+		return BasicCommands.PROTOCOL_LEGACY;
+	}
+
+	/**
+	 * @return the tile highlight modes this sink's front-end shows
+	 */
+	public BoardRender getBoard() {
+		return board;
+	}
+
+	/**
+	 * @return true if commands sent to this sink are thrown away, in which case
+	 * there is no point building them
+	 */
+	public boolean isMuted() {
+		return false;
+	}
+}
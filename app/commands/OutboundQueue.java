@@ -0,0 +1,381 @@
+package commands;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import akka.NotUsed;
+import akka.stream.Attributes;
+import akka.stream.BufferOverflowException;
+import akka.stream.FlowShape;
+import akka.stream.Inlet;
+import akka.stream.Outlet;
+import akka.stream.javadsl.Flow;
+import akka.stream.stage.AbstractInHandler;
+import akka.stream.stage.AbstractOutHandler;
+import akka.stream.stage.GraphStage;
+import akka.stream.stage.GraphStageLogic;
+import play.libs.Json;
+
+/**
+ * The commands of one websocket that the front-end has not taken yet. The socket only
+ * takes a frame when the browser keeps up, so a slow browser used to leave its
+ * commands to pile up (and past Play's small buffer, to be dropped at random). The
+ * queue sits between the game actor and the socket (see flow()) and keeps its size
+ * down instead:
+ *
+ *  - a command that is superseded while it waits is taken out: a tile drawn again, a
+ *    unit's attack or health set again, a player's health or mana set again. Unit
+ *    patches are merged into the newer one, and tiles keep the full tile a drawTiles
+ *    entry may depend on.
+ *  - once more than the pressure limit are waiting, commands that only decorate the
+ *    game (notifications, effect animations, projectiles, and the delay markers of
+ *    client-paced batches) are dropped, so a lagging browser catches up on what
+ *    matters rather than replaying seconds of animations.
+ *  - if more than the most allowed are still waiting, the socket is failed, and the
+ *    browser has to reconnect.
+ *
+ * Batch frames are taken apart, so commands inside them are conflated like any other,
+ * and put back together (without what was taken out) when they are sent.
+ *
+ * The queue of every open socket is kept in a registry, reported at /metrics/games.
+ */
+public class OutboundQueue {
+
+	private static final Map<String, OutboundQueue> sessions = new ConcurrentHashMap<String, OutboundQueue>();
+
+	private final String session;
+	private final int maxCommands;
+	private final int pressure;
+
+	private final ArrayDeque<Entry> entries = new ArrayDeque<Entry>();
+	private final Map<String, Entry> latest = new HashMap<String, Entry>(); // last command queued for each key
+
+	// written by the stream only, read by metrics()
+	private volatile int depth;
+	private volatile int peakDepth;
+	private volatile long sent;
+	private volatile long conflated;
+	private volatile long dropped;
+
+	/**
+	 * @param session names the queue in the metrics
+	 * @param maxCommands the most commands that may wait
+	 * @param pressure the number of waiting commands from which decorations are dropped
+	 */
+	public OutboundQueue(String session, int maxCommands, int pressure) {
+		this.session = session;
+		this.maxCommands = maxCommands;
+		this.pressure = pressure;
+	}
+
+	/**
+	 * @param session names the socket in the metrics
+	 * @param maxCommands the most commands that may wait
+	 * @param pressure the number of waiting commands from which decorations are dropped
+	 * @return a stage that queues the messages going to a websocket
+	 */
+	public static Flow<JsonNode, JsonNode, NotUsed> flow(String session, int maxCommands, int pressure) {
+		return Flow.fromGraph(new Stage(session, maxCommands, pressure));
+	}
+
+	/**
+	 * @return one entry per open socket: the commands waiting, the most that have been
+	 * waiting, and how many were sent, conflated and dropped
+	 */
+	public static ArrayNode metrics() {
+		ArrayNode queues = Json.newArray();
+		for (OutboundQueue queue : sessions.values()) {
+			ObjectNode entry = queues.addObject();
+			entry.put("session", queue.session);
+			entry.put("depth", queue.depth);
+			entry.put("peakDepth", queue.peakDepth);
+			entry.put("sent", queue.sent);
+			entry.put("conflated", queue.conflated);
+			entry.put("dropped", queue.dropped);
+		}
+		return queues;
+	}
+
+	/**
+	 * Queues a message from the game: a command, or a batch of them.
+	 * @param message
+	 * @throws BufferOverflowException if more than the most allowed are waiting
+	 */
+	public void offer(JsonNode message) {
+		if ("batch".equals(message.path("messagetype").asText())) {
+			Frame frame = new Frame();
+			for (JsonNode command : message.path("commands")) add(command, frame);
+		} else {
+			add(message, new Frame());
+		}
+
+		while (depth > maxCommands) {
+			if (!dropOldestDecoration()) {
+				throw new BufferOverflowException("More than " + maxCommands + " commands waiting for session " + session);
+			}
+		}
+		peakDepth = Math.max(peakDepth, depth);
+	}
+
+	/**
+	 * @return the next frame for the front-end, or null if nothing is waiting
+	 */
+	public JsonNode poll() {
+		while (!entries.isEmpty()) {
+			Frame frame = entries.peekFirst().frame;
+			List<JsonNode> commands = new ArrayList<JsonNode>();
+			while (!entries.isEmpty() && entries.peekFirst().frame == frame) {
+				Entry entry = entries.pollFirst();
+				if (entry.removed) continue;
+				entry.removed = true; // so later commands no longer conflate with it
+				commands.add(entry.command);
+			}
+			if (commands.isEmpty()) continue; // everything in it was superseded
+			depth -= commands.size();
+			sent += commands.size();
+			if (commands.size() == 1) return commands.get(0);
+
+			ObjectNode batch = Json.newObject();
+			batch.put("messagetype", "batch");
+			batch.putArray("commands").addAll(commands);
+			return batch;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the number of commands waiting
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	public int getPeakDepth() {
+		return peakDepth;
+	}
+
+	public long getConflated() {
+		return conflated;
+	}
+
+	public long getDropped() {
+		return dropped;
+	}
+
+	private void add(JsonNode command, Frame frame) {
+		String type = command.path("messagetype").asText();
+		if (depth >= pressure && isDecoration(type)) {
+			dropped++;
+			return;
+		}
+
+		Entry entry = new Entry(command, frame);
+		switch (type) {
+		case "drawTile":
+			supersedeTile(command.path("tile"), null);
+			latest.put(tileKey(command.path("tile")), entry);
+			break;
+		case "drawTiles":
+			for (JsonNode tile : command.path("tiles")) {
+				supersedeTile(tile, (ObjectNode) tile);
+				latest.put(tileKey(tile), entry);
+			}
+			break;
+		case "setUnitAttack":
+		case "setUnitHealth":
+			supersede(type + ":" + command.path("unit").path("id").asInt(), entry);
+			break;
+		case "unitPatch": {
+			Entry older = supersede(type + ":" + command.path("id").asInt(), entry);
+			// the older patch's fields, unless the newer one changes them again
+			if (older != null) {
+				for (Iterator<Map.Entry<String, JsonNode>> fields = older.command.fields(); fields.hasNext();) {
+					Map.Entry<String, JsonNode> field = fields.next();
+					if (!command.has(field.getKey())) ((ObjectNode) command).set(field.getKey(), field.getValue());
+				}
+			}
+			break;
+		}
+		case "setPlayer1Health":
+		case "setPlayer1Mana":
+		case "setPlayer2Health":
+		case "setPlayer2Mana":
+			supersede(type, entry);
+			break;
+		default:
+			break;
+		}
+		entries.addLast(entry);
+		depth++;
+	}
+
+	// Takes out the waiting command with the given key, if any, and returns it
+	private Entry supersede(String key, Entry entry) {
+		Entry older = latest.put(key, entry);
+		if (older == null || older.removed) return null;
+		remove(older);
+		return older;
+	}
+
+	// Takes out the waiting drawing of a tile, if any. A drawTiles entry only carries the
+	// full tile the first time the tile is drawn, so the newer entry (if it is one) takes it over.
+	private void supersedeTile(JsonNode tile, ObjectNode newer) {
+		Entry older = latest.get(tileKey(tile));
+		if (older == null || older.removed) return;
+
+		JsonNode fullTile;
+		if ("drawTile".equals(older.command.path("messagetype").asText())) {
+			fullTile = older.command.get("tile");
+			remove(older);
+		} else {
+			ArrayNode tiles = (ArrayNode) older.command.path("tiles");
+			int index = indexOfTile(tiles, tile);
+			if (index < 0) return;
+			fullTile = tiles.get(index).get("tile");
+			tiles.remove(index);
+			if (tiles.size() == 0) remove(older);
+			else conflated++;
+		}
+		if (newer != null && fullTile != null && !newer.has("tile")) newer.set("tile", fullTile);
+	}
+
+	private boolean dropOldestDecoration() {
+		for (Entry entry : entries) {
+			if (!entry.removed && isDecoration(entry.command.path("messagetype").asText())) {
+				entry.removed = true;
+				depth--;
+				dropped++;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void remove(Entry entry) {
+		entry.removed = true;
+		depth--;
+		conflated++;
+	}
+
+	private static boolean isDecoration(String type) {
+		switch (type) {
+		case "addPlayer1Notification":
+		case "playEffectAnimation":
+		case "drawProjectile":
+		case "delay":
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private static String tileKey(JsonNode tile) {
+		return "tile:" + tile.path("tilex").asInt() + "," + tile.path("tiley").asInt();
+	}
+
+	private static int indexOfTile(ArrayNode tiles, JsonNode tile) {
+		for (int i = 0; i < tiles.size(); i++) {
+			JsonNode other = tiles.get(i);
+			if (other.path("tilex").asInt() == tile.path("tilex").asInt()
+					&& other.path("tiley").asInt() == tile.path("tiley").asInt()) return i;
+		}
+		return -1;
+	}
+
+	// A frame from the game: the commands of a batch are sent together again
+	private static class Frame {
+	}
+
+	// A waiting command
+	private static class Entry {
+
+		final JsonNode command;
+		final Frame frame;
+		boolean removed; // superseded, dropped or sent
+
+		Entry(JsonNode command, Frame frame) {
+			this.command = command;
+			this.frame = frame;
+		}
+	}
+
+	// Always takes what the game sends, and hands the socket the next frame when it asks
+	private static class Stage extends GraphStage<FlowShape<JsonNode, JsonNode>> {
+
+		private final Inlet<JsonNode> in = Inlet.create("OutboundQueue.in");
+		private final Outlet<JsonNode> out = Outlet.create("OutboundQueue.out");
+		private final FlowShape<JsonNode, JsonNode> shape = FlowShape.of(in, out);
+		private final String session;
+		private final int maxCommands;
+		private final int pressure;
+
+		Stage(String session, int maxCommands, int pressure) {
+			this.session = session;
+			this.maxCommands = maxCommands;
+			this.pressure = pressure;
+		}
+
+		@Override
+		public FlowShape<JsonNode, JsonNode> shape() {
+			return shape;
+		}
+
+		@Override
+		public GraphStageLogic createLogic(Attributes inheritedAttributes) {
+			OutboundQueue queue = new OutboundQueue(session, maxCommands, pressure);
+			return new GraphStageLogic(shape) {
+				{
+					setHandler(in, new AbstractInHandler() {
+						@Override
+						public void onPush() {
+							try {
+								queue.offer(grab(in));
+							} catch (BufferOverflowException e) {
+								failStage(e);
+								return;
+							}
+							if (isAvailable(out)) {
+								JsonNode next = queue.poll();
+								if (next != null) push(out, next);
+							}
+							pull(in);
+						}
+
+						@Override
+						public void onUpstreamFinish() {
+							if (queue.getDepth() == 0) completeStage();
+						}
+					});
+					setHandler(out, new AbstractOutHandler() {
+						@Override
+						public void onPull() {
+							JsonNode next = queue.poll();
+							if (next != null) push(out, next);
+							if (queue.getDepth() == 0 && isClosed(in)) completeStage();
+						}
+					});
+				}
+
+				@Override
+				public void preStart() {
+					sessions.put(session, queue);
+					pull(in);
+				}
+
+				@Override
+				public void postStop() {
+					sessions.remove(session, queue);
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package commands;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import akka.stream.javadsl.Flow;
+import play.http.websocket.Message;
+import play.libs.F;
+import play.libs.Json;
+import play.libs.Scala;
+import play.mvc.WebSocket;
+
+/**
+ * How messages are framed on the game's websocket. The front-end picks one when it
+ * connects, with the format query parameter (/gamews?format=cbor); without it the
+ * socket speaks JSON text, as it always has.
+ *
+ * With CBOR every command goes out as one binary frame (see CborCodec): numbers are
+ * written as binary rather than digits, and the keys and asset paths that every
+ * command repeats are sent once per connection and then referred to by number, so a
+ * frame is a fraction of the size of its JSON text and quicker to write. Commands are
+ * still built by BasicCommands as before, the format only changes how they are written
+ * to the socket.
+ *
+ * Whatever the format, text frames from the front-end are read as JSON, so a front-end
+ * that receives CBOR can still send its events as JSON.
+ */
+public enum WireFormat {
+
+	/** Text frames holding JSON */
+	JSON,
+	/** Binary frames holding CBOR, with strings sent once per connection */
+	CBOR;
+
+	/**
+	 * Turns the messages of one websocket into frames and back. A codec may remember
+	 * what went before (CborCodec does), so each websocket has its own.
+	 */
+	public interface Codec {
+
+		/**
+		 * @param frame a text or binary frame from the front-end
+		 * @return the message it holds
+		 * @throws IOException if the frame cannot be read
+		 */
+		JsonNode read(Message frame) throws IOException;
+
+		/**
+		 * @param message a message for the front-end
+		 * @return the frame to send
+		 */
+		Message write(JsonNode message);
+	}
+
+	// JSON both ways, as Play's WebSocket.Json; binary frames are read as plain CBOR
+	private static final Codec JSON_CODEC = new Codec() {
+
+		private final ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+
+		@Override
+		public JsonNode read(Message frame) throws IOException {
+			if (frame instanceof Message.Text) return Json.mapper().readTree(((Message.Text) frame).data());
+			return cbor.readTree(((Message.Binary) frame).data().iterator().asInputStream());
+		}
+
+		@Override
+		public Message write(JsonNode message) {
+			return new Message.Text(Json.stringify(message));
+		}
+	};
+
+	// The frames that carry messages are passed on to the codec of the websocket; pings,
+	// pongs and closes are left to Play
+	private static final WebSocket.MappedWebSocketAcceptor<Message, Message> FRAMES =
+			new WebSocket.MappedWebSocketAcceptor<Message, Message>(Scala.partialFunction(WireFormat::messageFrame), frame -> frame);
+
+	/**
+	 * @param value the format query parameter, may be null
+	 * @return the format it names, JSON if it is missing or unknown
+	 */
+	public static WireFormat fromQuery(String value) {
+		if (value != null && value.trim().equalsIgnoreCase("cbor")) return CBOR;
+		return JSON;
+	}
+
+	/**
+	 * @return a codec for a new websocket
+	 */
+	public Codec newCodec() {
+		return this == CBOR ? new CborCodec() : JSON_CODEC;
+	}
+
+	/**
+	 * Builds websockets that speak this format.
+	 * @param messages creates the flow of messages of each websocket, e.g. its game actor
+	 * @return
+	 */
+	public WebSocket accept(java.util.function.Function<play.mvc.Http.RequestHeader, Flow<JsonNode, JsonNode, ?>> messages) {
+		return FRAMES.accept(request -> {
+			Codec codec = newCodec();
+			return Flow.<Message>create().map(codec::read).via(messages.apply(request)).map(codec::write);
+		});
+	}
+
+	private static F.Either<Message, Message> messageFrame(Message frame) {
+		if (frame instanceof Message.Text || frame instanceof Message.Binary) return F.Either.Left(frame);
+		throw Scala.noMatch();
+	}
+}
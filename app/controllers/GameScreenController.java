@@ -1,48 +1,114 @@
 package controllers;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.CompletionStage;
+
 import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.typesafe.config.Config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import actors.GameActor;
+import actors.GameRegistry;
+import actors.GameSession;
+import actors.GameSharding;
+import actors.MeteredMailbox;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Props;
 import akka.stream.Materializer;
+import akka.stream.OverflowStrategy;
+import akka.stream.javadsl.Flow;
+import commands.CommandChannel;
+import commands.OutboundQueue;
+import commands.WireFormat;
+import journal.JournalRetention;
+import managers.AIManager;
 import play.data.Form;
 import play.data.FormFactory;
+import play.http.websocket.Message;
+import play.libs.F;
+import play.libs.Json;
 import play.libs.streams.ActorFlow;
 import play.mvc.Controller;
 import play.mvc.Http;
 import play.mvc.Result;
 import play.mvc.WebSocket;
 import structures.User;
+import utils.PreloadManifest;
 
 /**
  * This is the Controller class for the game. 
  * @author Dr. Richard McCreadie
  *
  */
+@Singleton
 public class GameScreenController extends Controller {
 
 	private final ActorSystem actorSystem;
 	private final Materializer materializer;
+	private final CommandChannel.Batching batching;
+	private final String gameDispatcher;
+	private final String gameMailbox;
+	private final String journalDirectory;
+	private final int outboundMaxCommands;
+	private final int outboundPressure;
+	private final Duration reconnectGrace;
+	private final Duration idleTimeout;
+	private final ActorRef games; // the GameRegistry, or the shard region of the games in a cluster
 	Form<User> userForm = null;
 	
 	
 	@Inject
-	public GameScreenController(FormFactory formFactory, ActorSystem actorSystem, Materializer materializer) {
+	public GameScreenController(FormFactory formFactory, ActorSystem actorSystem, Materializer materializer, Config config) {
 		this.actorSystem = actorSystem;
 		this.materializer = materializer;
+		this.batching = CommandChannel.Batching.fromConfig(config.hasPath("game.commands.batching") ? config.getString("game.commands.batching") : null);
+		this.gameDispatcher = configuredPath(config, "game.dispatcher");
+		this.gameMailbox = configuredPath(config, "game.mailbox");
+		this.journalDirectory = config.hasPath("game.journal.dir") ? config.getString("game.journal.dir") : null;
+		this.outboundMaxCommands = config.hasPath("game.outbound.max-commands") ? config.getInt("game.outbound.max-commands") : 2048;
+		this.outboundPressure = config.hasPath("game.outbound.pressure") ? config.getInt("game.outbound.pressure") : 64;
+		this.reconnectGrace = config.hasPath("game.reconnect.grace") ? config.getDuration("game.reconnect.grace") : Duration.ofMinutes(5);
+		this.idleTimeout = config.hasPath("game.passivate.idle") ? config.getDuration("game.passivate.idle") : Duration.ofMinutes(10);
+		this.games = GameSharding.isClustered(config) ? GameSharding.start(actorSystem, createGameActor(), config)
+				: actorSystem.actorOf(Props.create(GameRegistry.class, createGameActor()));
+		if (journalDirectory != null && config.hasPath("game.journal.keep")) {
+			// deletes the journals nobody has come back to, once an hour
+			Path journals = Paths.get(journalDirectory);
+			Duration keep = config.getDuration("game.journal.keep");
+			actorSystem.scheduler().scheduleWithFixedDelay(Duration.ZERO, Duration.ofHours(1),
+					() -> JournalRetention.prune(journals, keep), actorSystem.dispatcher());
+		}
 		userForm = formFactory.form(User.class);
+		AIManager.setPlannerBudget(config.hasPath("game.ai.planner-budget-ms") ? config.getInt("game.ai.planner-budget-ms") : 0);
+		PreloadManifest.get(); // build the pre-load list now, rather than when the first game starts
 	}
 
 	/**
-	 * This responds to the request for creation of the Websocket 
+	 * This responds to the request for creation of the Websocket. The front-end can ask
+	 * for binary CBOR frames with ?format=cbor, otherwise it gets JSON (see WireFormat).
+	 * A front-end that reconnects asks for the game it was playing with ?game=<id> (the
+	 * id it was sent in actorReady), and its GameSession is attached to that game.
+	 * The commands of the game wait in an OutboundQueue until the browser takes them.
 	 * @return
 	 */
 	public WebSocket socket() {
-
-		return WebSocket.Json.accept(
-				request -> ActorFlow.actorRef(this::createGameActor, actorSystem, materializer));
+		return new WebSocket() {
+			@Override
+			public CompletionStage<F.Either<Result, Flow<Message, Message, ?>>> apply(Http.RequestHeader request) {
+				WireFormat format = WireFormat.fromQuery(request.queryString("format").orElse(null));
+				String gameId = request.queryString("game").orElse(null);
+				return format.accept(header -> ActorFlow.<JsonNode, JsonNode>actorRef(out -> Props.create(GameSession.class, out, games, gameId),
+						outboundMaxCommands, OverflowStrategy.fail(), actorSystem, materializer)
+						.via(OutboundQueue.flow(String.valueOf(header.id()), outboundMaxCommands, outboundPressure))).apply(request);
+			}
+		};
 	}
 
 	/**
@@ -54,7 +120,61 @@ public class GameScreenController extends Controller {
 		return ok(views.html.gamescreen.render(request, null));
 	}
 	
-	public Props createGameActor(ActorRef out) {
-		return Props.create(GameActor.class, out); // calls the constructor for Game Actor
+	/**
+	 * Serves the list of images the front-end pre-loads. When asked for the current
+	 * version (v) the browser may keep it indefinitely, as a new list gets a new version.
+	 * @param v the version the front-end was told about in the actorReady message
+	 * @param request
+	 * @return
+	 */
+	public Result preloadImages(String v, Http.Request request) {
+		PreloadManifest manifest = PreloadManifest.get();
+		String etag = "\""+manifest.getVersion()+"\"";
+		if (request.header(IF_NONE_MATCH).map(etag::equals).orElse(false)) {
+			return status(NOT_MODIFIED).withHeader(ETAG, etag);
+		}
+		String cacheControl = manifest.getVersion().equals(v) ? "public, max-age=31536000, immutable" : "no-cache";
+		return ok(manifest.getJson()).as(Http.MimeTypes.JSON).withHeaders(ETAG, etag, CACHE_CONTROL, cacheControl);
+	}
+	
+	/**
+	 * Reports the mailbox of every live game, so we can spot a game that is falling
+	 * behind (its mailboxDepth keeps growing), the commands waiting for each
+	 * browser, so we can spot a browser that is falling behind, and how many games
+	 * this server is running, has put away and has brought back.
+	 * @return
+	 */
+	public Result gameMetrics() {
+		ObjectNode metrics = Json.newObject();
+		metrics.put("dispatcher", gameDispatcher == null ? "default" : gameDispatcher);
+		metrics.set("games", MeteredMailbox.metrics());
+		metrics.set("sessions", OutboundQueue.metrics());
+		metrics.set("lifecycle", GameActor.metrics());
+		return ok(metrics);
+	}
+	
+	/**
+	 * Game actors run on their own dispatcher (game.dispatcher in application.conf), so a
+	 * slow game or a long AI turn only holds up other games, not the HTTP and websocket
+	 * handling on Play's default dispatcher.
+	 * A game is named by its id (see GameRegistry and GameSharding).
+	 * @return
+	 */
+	public Props createGameActor() {
+		Props props = Props.create(GameActor.class, batching, journalDirectory, reconnectGrace, idleTimeout); // calls the constructor for Game Actor
+		if (gameDispatcher != null) props = props.withDispatcher(gameDispatcher);
+		if (gameMailbox != null) props = props.withMailbox(gameMailbox);
+		return props;
+	}
+	
+	/**
+	 * @param config
+	 * @param setting a setting naming another config entry (a dispatcher or a mailbox)
+	 * @return the name, or null if the setting or the entry it names is missing
+	 */
+	private static String configuredPath(Config config, String setting) {
+		if (!config.hasPath(setting)) return null;
+		String path = config.getString(setting);
+		return config.hasPath(path) ? path : null;
 	}
 }
\ No newline at end of file
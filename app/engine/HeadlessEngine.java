@@ -0,0 +1,127 @@
+package engine;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import commands.BasicCommands;
+import commands.CommandSink;
+import events.EventProcessor;
+import events.EventProcessors;
+import play.libs.Json;
+import structures.GameState;
+
+/**
+ * Plays a game without a front-end. Events are handed to the same event processors the
+ * GameActor uses, with a CommandSink bound to the calling thread instead of a websocket.
+ * With the default sink (CommandSink.NONE) no commands are built and animation delays
+ * are skipped, so the rules run as fast as they can. Each engine holds its own game, and
+ * nothing is shared between engines, so many can run in parallel on different threads.
+ *
+ * An engine is not thread-safe itself: a game should only be driven by one thread at a time.
+ */
+public class HeadlessEngine {
+
+	private final GameState gameState = new GameState();
+	private final Map<String, EventProcessor> eventProcessors = EventProcessors.create();
+	private final CommandSink sink;
+
+	/**
+	 * A game whose commands are thrown away
+	 */
+	public HeadlessEngine() {
+		this(CommandSink.NONE);
+	}
+
+	/**
+	 * @param sink receives the commands the game produces, e.g. to record them
+	 */
+	public HeadlessEngine(CommandSink sink) {
+		this.sink = sink;
+	}
+
+	public GameState getGameState() {
+		return gameState;
+	}
+
+	/**
+	 * Sets up the board, decks and avatars, as when the front-end first connects.
+	 */
+	public void start() {
+		processEvent("initalize", Json.newObject());
+	}
+
+	/**
+	 * @param tilex
+	 * @param tiley
+	 */
+	public void clickTile(int tilex, int tiley) {
+		ObjectNode message = Json.newObject();
+		message.put("tilex", tilex);
+		message.put("tiley", tiley);
+		processEvent("tileclicked", message);
+	}
+
+	/**
+	 * @param position position of the card in the hand
+	 */
+	public void clickCard(int position) {
+		ObjectNode message = Json.newObject();
+		message.put("position", position);
+		processEvent("cardclicked", message);
+	}
+
+	public void endTurn() {
+		processEvent("endturnclicked", Json.newObject());
+	}
+
+	/**
+	 * Processes an event as if it had been sent by the front-end, recording it in the
+	 * game's journal first.
+	 * @param messageType
+	 * @param message
+	 */
+	public void processEvent(String messageType, JsonNode message) {
+		EventProcessor processor = eventProcessors.get(messageType);
+		if (processor == null) {
+			throw new IllegalArgumentException("Unknown event type " + messageType);
+		}
+		gameState.journal.event(messageType, message);
+		try {
+			run(() -> processor.processEvent(null, gameState, message));
+		} finally {
+			gameState.journal.flush();
+		}
+	}
+
+	/**
+	 * Runs some game logic (e.g. a manager call) against this game, with the engine's
+	 * sink bound to the calling thread.
+	 * @param action
+	 */
+	public void run(Action action) {
+		CommandSink previous = CommandSink.current();
+		CommandSink.bind(sink);
+		try {
+			action.run();
+			BasicCommands.flushTiles();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		} finally {
+			if (previous != null) CommandSink.bind(previous);
+			else CommandSink.unbind();
+		}
+	}
+
+	/**
+	 * Game logic run by run(Action)
+	 */
+	public interface Action {
+		void run() throws Exception;
+	}
+}
@@ -0,0 +1,292 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import managers.AIManager;
+import structures.GameState;
+import structures.basic.Unit;
+
+/**
+ * Plays complete AI against AI games without a front-end, spread over all cores, and
+ * reports how they went. Each game has its own GameState, seeded from the simulation
+ * seed and the number of the game, so a run can be repeated exactly.
+ *
+ * Player 1 is played by AIManager.playTurn; player 2 takes its turn the usual way, as
+ * soon as player 1 ends theirs. Both sides summon from their decks as they go, and the
+ * report says how many units each summoned. A game is over when an avatar dies, and is
+ * counted as a draw if neither has after MAX_TURNS turns.
+ *
+ * Run it with e.g. sbt "runMain engine.MatchSimulator 10000 42", the arguments being the
+ * number of games (1000), the seed (1), the number of threads (one per core) and the
+ * time player 2's planner may take per turn in milliseconds (0, the simple rules).
+ */
+public class MatchSimulator {
+
+	public static final int MAX_TURNS = 100;
+
+	// games played by one task before it stops splitting the work
+	private static final int GAMES_PER_TASK = 4;
+
+	private final int games;
+	private final long seed;
+	private final int parallelism;
+
+	public MatchSimulator(int games, long seed, int parallelism) {
+		this.games = games;
+		this.seed = seed;
+		this.parallelism = parallelism;
+	}
+
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+		int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		AIManager.setPlannerBudget(args.length > 3 ? Integer.parseInt(args[3]) : 0);
+		System.out.println(new MatchSimulator(games, seed, parallelism).run());
+	}
+
+	/**
+	 * Plays all of the games.
+	 * @return
+	 */
+	public Report run() {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			long start = System.nanoTime();
+			List<MatchResult> results = pool.invoke(new Matches(seed, 0, games));
+			return new Report(results, System.nanoTime() - start);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Plays one game, AI against AI, on the calling thread.
+	 * @param seed seeds the game's random choices
+	 * @return
+	 */
+	public static MatchResult play(long seed) {
+		HeadlessEngine engine = new HeadlessEngine();
+		GameState gameState = engine.getGameState();
+		gameState.setSeed(seed);
+		engine.start();
+
+		long[] turnNanos = new long[MAX_TURNS * 2];
+		BitSet[] units = {null, new BitSet(), new BitSet()}; // the ids of every unit each player has had
+		int turns = 0;
+		int winner = 0;
+		while (gameState.currentTurn <= MAX_TURNS) {
+			long start = System.nanoTime();
+			engine.run(() -> AIManager.playTurn(null, gameState, 1));
+			turnNanos[turns++] = System.nanoTime() - start;
+			see(gameState, units);
+			if ((winner = winner(gameState)) != 0) break;
+
+			// player 2's turn is played as part of ending player 1's
+			start = System.nanoTime();
+			engine.endTurn();
+			turnNanos[turns++] = System.nanoTime() - start;
+			see(gameState, units);
+			if ((winner = winner(gameState)) != 0) break;
+		}
+		// every unit but the avatar was summoned
+		int[] summoned = {0, units[1].cardinality() - 1, units[2].cardinality() - 1};
+		return new MatchResult(seed, winner, gameState.currentTurn, Arrays.copyOf(turnNanos, turns), summoned);
+	}
+
+	// Notes the units on the board, after a turn
+	private static void see(GameState gameState, BitSet[] units) {
+		for (int player = 1; player <= 2; player++) {
+			for (Unit unit : gameState.getUnits(player)) units[player].set(unit.getId());
+		}
+	}
+
+	/**
+	 * @param gameState
+	 * @return the player who has won, or 0 if the game is not over
+	 */
+	static int winner(GameState gameState) {
+		if (gameState.player2Avatar.isDead()) return 1;
+		if (gameState.player1Avatar.isDead()) return 2;
+		return 0;
+	}
+
+	// Plays the games numbered [from, to), splitting the range between forked tasks
+	private static class Matches extends RecursiveTask<List<MatchResult>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long seed;
+		private final int from;
+		private final int to;
+
+		Matches(long seed, int from, int to) {
+			this.seed = seed;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<MatchResult> compute() {
+			if (to - from <= GAMES_PER_TASK) {
+				List<MatchResult> results = new ArrayList<MatchResult>(to - from);
+				for (int game = from; game < to; game++) results.add(play(seed + game));
+				return results;
+			}
+			int middle = (from + to) >>> 1;
+			Matches left = new Matches(seed, from, middle);
+			left.fork();
+			List<MatchResult> results = new Matches(seed, middle, to).compute();
+			List<MatchResult> all = left.join();
+			all.addAll(results);
+			return all;
+		}
+	}
+
+	/**
+	 * How one game went
+	 */
+	public static class MatchResult {
+
+		private final long seed;
+		private final int winner;
+		private final int turns;
+		private final long[] turnNanos;
+		private final int[] summoned; // indexed by player
+
+		MatchResult(long seed, int winner, int turns, long[] turnNanos, int[] summoned) {
+			this.seed = seed;
+			this.winner = winner;
+			this.turns = turns;
+			this.turnNanos = turnNanos;
+			this.summoned = summoned;
+		}
+
+		public long getSeed() {
+			return seed;
+		}
+
+		/**
+		 * @return 1 or 2, or 0 for a draw
+		 */
+		public int getWinner() {
+			return winner;
+		}
+
+		public int getTurns() {
+			return turns;
+		}
+
+		/**
+		 * @return how long each player turn took to compute, in order
+		 */
+		public long[] getTurnNanos() {
+			return turnNanos;
+		}
+
+		/**
+		 * @param player 1 or 2
+		 * @return how many units the player summoned, by cards or abilities
+		 */
+		public int getSummoned(int player) {
+			return summoned[player];
+		}
+	}
+
+	/**
+	 * The results of a simulation, summed up
+	 */
+	public static class Report {
+
+		private final List<MatchResult> results;
+		private final long elapsedNanos;
+		private final int[] wins = new int[3]; // indexed by winner, 0 being draws
+		private final double averageTurns;
+		private final double[] averageSummoned = new double[3]; // indexed by player
+		private final long p99TurnNanos;
+
+		Report(List<MatchResult> results, long elapsedNanos) {
+			this.results = results;
+			this.elapsedNanos = elapsedNanos;
+
+			long totalTurns = 0;
+			int turnCount = 0;
+			for (MatchResult result : results) {
+				wins[result.getWinner()]++;
+				totalTurns += result.getTurns();
+				turnCount += result.getTurnNanos().length;
+				for (int player = 1; player <= 2; player++) averageSummoned[player] += result.getSummoned(player);
+			}
+			averageTurns = results.isEmpty() ? 0 : (double) totalTurns / results.size();
+			for (int player = 1; player <= 2 && !results.isEmpty(); player++) averageSummoned[player] /= results.size();
+
+			long[] turnNanos = new long[turnCount];
+			int i = 0;
+			for (MatchResult result : results) {
+				for (long nanos : result.getTurnNanos()) turnNanos[i++] = nanos;
+			}
+			Arrays.sort(turnNanos);
+			p99TurnNanos = turnCount == 0 ? 0 : turnNanos[(int) Math.ceil(turnCount * 0.99) - 1];
+		}
+
+		public List<MatchResult> getResults() {
+			return results;
+		}
+
+		public int getGames() {
+			return results.size();
+		}
+
+		/**
+		 * @param player 1 or 2, or 0 for draws
+		 * @return
+		 */
+		public int getWins(int player) {
+			return wins[player];
+		}
+
+		public double getWinRate(int player) {
+			return results.isEmpty() ? 0 : (double) wins[player] / results.size();
+		}
+
+		public double getAverageTurns() {
+			return averageTurns;
+		}
+
+		/**
+		 * @param player 1 or 2
+		 * @return the units the player summoned in a game, on average
+		 */
+		public double getAverageSummoned(int player) {
+			return averageSummoned[player];
+		}
+
+		public double getGamesPerSecond() {
+			return elapsedNanos == 0 ? 0 : results.size() / (elapsedNanos / 1e9);
+		}
+
+		/**
+		 * @return the 99th percentile of the time taken to compute a player's turn
+		 */
+		public long getP99TurnNanos() {
+			return p99TurnNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d games in %.1fs (%.1f games/s)%n"
+					+ "player 1 wins: %.1f%%, player 2 wins: %.1f%%, draws: %.1f%%%n"
+					+ "average turns: %.1f, p99 turn time: %.3fms%n"
+					+ "units summoned per game: player 1 %.1f, player 2 %.1f",
+					getGames(), elapsedNanos / 1e9, getGamesPerSecond(),
+					getWinRate(1) * 100, getWinRate(2) * 100, getWinRate(0) * 100,
+					averageTurns, p99TurnNanos / 1e6,
+					averageSummoned[1], averageSummoned[2]);
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package events;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The event processors of a game, keyed by the messagetype of the events they handle.
+ * Shared by the GameActor and by games run without a front-end (engine.HeadlessEngine).
+ */
+public class EventProcessors {
+
+	/**
+	 * @return a new set of event processors for one game
+	 */
+	public static Map<String, EventProcessor> create() {
+		Map<String, EventProcessor> eventProcessors = new HashMap<String, EventProcessor>();
+		eventProcessors.put("initalize", new Initialize());
+		eventProcessors.put("heartbeat", new Heartbeat());
+		eventProcessors.put("unitMoving", new UnitMoving());
+		eventProcessors.put("unitstopped", new UnitStopped());
+		eventProcessors.put("unitAttacking", new UnitAttacking());
+		eventProcessors.put("tileclicked", new TileClicked());
+		eventProcessors.put("cardclicked", new CardClicked());
+		eventProcessors.put("endturnclicked", new EndTurnClicked());
+		eventProcessors.put("otherclicked", new OtherClicked());
+		eventProcessors.put("protocol", new ProtocolSelected());
+		return eventProcessors;
+	}
+}
@@ -20,6 +20,9 @@ import utils.StaticConfFiles;
  * 3. Loads the card decks for both players
  * 4. Initializes player states (health, mana, starting cards)
  * 5. Triggers `StartTurn` to refresh unit states and begin gameplay
+ *
+ * A front-end that reconnects to a game already being played sends it again once it
+ * has loaded; by then it has been sent the whole game (see GameActor), so it is ignored.
  */
 public class Initialize implements EventProcessor {
 
@@ -32,7 +35,8 @@ public class Initialize implements EventProcessor {
 	 */
 	@Override
 	public void processEvent(ActorRef out, GameState gameState, JsonNode message) throws InterruptedException {
-		// 1 Mark the game as initialized
+		// 1 Mark the game as initialized, once
+		if (gameState.gameInitalised) return;
 		gameState.gameInitalised = true;
 
 		// 2️ Draw the game board
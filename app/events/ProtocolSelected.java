@@ -0,0 +1,35 @@
+package events;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import akka.actor.ActorRef;
+import commands.BasicCommands;
+import commands.CommandChannel;
+import commands.CommandSink;
+import structures.GameState;
+
+/**
+ * Sent by the front-end in reply to the actorReady message, to choose which version
+ * of the command protocol it understands. Versions above the one the server offered
+ * are capped, and front-ends that never send this stay on the legacy protocol.
+ * 
+ * { 
+ *   messageType = “protocol”
+ *   version = <protocol version>
+ * }
+ *
+ */
+public class ProtocolSelected implements EventProcessor {
+
+	@Override
+	public void processEvent(ActorRef out, GameState gameState, JsonNode message) {
+		CommandSink sink = CommandSink.current();
+		if (!(sink instanceof CommandChannel)) return;
+		CommandChannel channel = (CommandChannel) sink;
+
+		int version = message.path("version").asInt(BasicCommands.PROTOCOL_LEGACY);
+		version = Math.max(BasicCommands.PROTOCOL_LEGACY, Math.min(version, BasicCommands.LATEST_PROTOCOL));
+		channel.setProtocolVersion(version);
+	}
+
+}
@@ -0,0 +1,83 @@
+package journal;
+
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Where a game records what it needs to be played again: the events the front-end
+ * sent, and the decisions the AI made that do not follow from the game's random seed
+ * (the planner is time-boxed, so how far it searches depends on the machine). Every
+ * other random choice comes from GameState.random, whose seed is in the journal's
+ * header, so replaying the events against a game seeded the same way rebuilds it
+ * exactly (see JournalReplayer).
+ *
+ * A game that is not recorded uses NONE. GameActor and engine.HeadlessEngine record
+ * each event before processing it, and flush the journal once the event is done.
+ *
+ * The file is written by JournalWriter:
+ *
+ *     header  "GJNL", version byte, game id (2 longs), seed (long), start time (long, ms)
+ *     EVENT   1, ms since start, message type, field count, fields (name, tag, value)
+ *     AI_TURN 2, planner budget (ms)
+ *     PLAN    3, action count, actions
+ *
+ * Numbers are variable-length (zig-zag for signed values). Strings (message types,
+ * field names, text values) are written once and then referred to by their number,
+ * so a click takes a handful of bytes.
+ */
+public abstract class Journal {
+
+	static final int MAGIC = 0x474A4E4C; // "GJNL"
+	static final int VERSION = 1;
+
+	static final int EVENT = 1;
+	static final int AI_TURN = 2;
+	static final int PLAN = 3;
+
+	// tags of event field values
+	static final int INT = 0;
+	static final int TEXT = 1;
+	static final int JSON = 2;
+
+	/**
+	 * Records nothing, and lets the AI decide for itself
+	 */
+	public static final Journal NONE = new Journal() {};
+
+	/**
+	 * Records an event from the front-end, before it is processed.
+	 * @param messageType
+	 * @param message
+	 */
+	public void event(String messageType, JsonNode message) {}
+
+	/**
+	 * Called as the AI starts a turn.
+	 * @param budgetMillis the planner budget it was given (0 plays the simple rules)
+	 * @return the budget to play the turn with: the one given, or in a replay the one
+	 * that was recorded
+	 */
+	public int aiTurn(int budgetMillis) {
+		return budgetMillis;
+	}
+
+	/**
+	 * Called when the AI plans (the rest of) its turn.
+	 * @param planner runs the planner
+	 * @return the plan: the planner's, or in a replay the one that was recorded
+	 */
+	public int[] plan(Supplier<int[]> planner) {
+		return planner.get();
+	}
+
+	/**
+	 * Writes out what has been recorded, at the end of each event.
+	 */
+	public void flush() {}
+
+	/**
+	 * Flushes the journal and closes its file, once the game is over.
+	 */
+	public void close() {}
+}
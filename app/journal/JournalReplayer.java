@@ -0,0 +1,267 @@
+package journal;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import commands.CommandSink;
+import engine.HeadlessEngine;
+import play.libs.Json;
+import structures.GameState;
+
+/**
+ * Rebuilds a game from its journal (see Journal): a new game is seeded the way the
+ * recorded one was, and the recorded events are processed by a HeadlessEngine, with
+ * the AI playing the turns it recorded. The game can be replayed up to any event, to
+ * recover it after a restart or once it has been put away while idle (see resume()),
+ * to step through it while looking for a bug, or to show it to a spectator through a
+ * CommandSink.
+ *
+ * A journal cut short (the server went down while writing it) is read up to its last
+ * complete record.
+ *
+ * Run it with e.g. sbt "runMain journal.JournalReplayer journal/<game id>.journal" to
+ * see how a recorded game stands.
+ */
+public class JournalReplayer {
+
+	private final UUID gameId;
+	private final long seed;
+	private final long startTime;
+	private final List<Event> events = new ArrayList<Event>();
+	private final List<Integer> budgets = new ArrayList<Integer>();
+	private final List<int[]> plans = new ArrayList<int[]>();
+	private final List<String> strings = new ArrayList<String>(); // numbered as in the file
+	private int length; // bytes up to the end of the last complete record
+	private int stringCount; // strings numbered up to there
+
+	/**
+	 * Reads a journal.
+	 * @param file
+	 * @return
+	 * @throws IOException if the file cannot be read or is not a journal
+	 */
+	public static JournalReplayer open(Path file) throws IOException {
+		return new JournalReplayer(ByteBuffer.wrap(Files.readAllBytes(file)));
+	}
+
+	private JournalReplayer(ByteBuffer in) throws IOException {
+		try {
+			if (in.getInt() != Journal.MAGIC) throw new IOException("Not a game journal");
+			if (in.get() != Journal.VERSION) throw new IOException("Unknown game journal version");
+			gameId = new UUID(in.getLong(), in.getLong());
+			seed = in.getLong();
+			startTime = in.getLong();
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Not a game journal");
+		}
+
+		length = in.position();
+		try {
+			while (in.hasRemaining()) {
+				// the lists are only added to once a record has been read in full
+				switch (in.get()) {
+				case Journal.EVENT:
+					events.add(readEvent(in, strings));
+					break;
+				case Journal.AI_TURN:
+					budgets.add((int) readNumber(in));
+					break;
+				case Journal.PLAN:
+					int[] plan = new int[(int) readNumber(in)];
+					for (int i = 0; i < plan.length; i++) plan[i] = (int) readSigned(in);
+					plans.add(plan);
+					break;
+				default:
+					throw new IOException("Corrupt game journal " + gameId);
+				}
+				length = in.position();
+				stringCount = strings.size();
+			}
+		} catch (BufferUnderflowException e) {
+			// cut short while the last record was written
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		JournalReplayer replayer = open(Paths.get(args[0]));
+		GameState gameState = replayer.replay().getGameState();
+		System.out.println("Game " + replayer.getGameId() + ": " + replayer.getEventCount() + " events, turn " + gameState.currentTurn
+				+ ", player " + gameState.currentPlayer + " to play, health " + gameState.player1Avatar.getHealth()
+				+ " / " + gameState.player2Avatar.getHealth());
+	}
+
+	public UUID getGameId() {
+		return gameId;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * @return when the game started (ms since the epoch)
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	// the bytes worth keeping, a record cut short is written again after them
+	int getLength() {
+		return length;
+	}
+
+	// the strings a writer carrying on from getLength() refers to by number
+	List<String> getStrings() {
+		return strings.subList(0, stringCount);
+	}
+
+	public int getEventCount() {
+		return events.size();
+	}
+
+	/**
+	 * @param event
+	 * @return when the given event arrived (ms since the game started)
+	 */
+	public long getEventTime(int event) {
+		return events.get(event).time;
+	}
+
+	/**
+	 * Rebuilds a game that was put away (see actors.GameActor) so it can carry on, with
+	 * its journal recording again from where it stopped.
+	 * @param file the game's journal
+	 * @return the game
+	 * @throws IOException if the journal cannot be read or written
+	 */
+	public static GameState resume(Path file) throws IOException {
+		JournalReplayer replayer = open(file);
+		GameState gameState = replayer.replay().getGameState();
+		gameState.journal = JournalWriter.append(file, replayer);
+		return gameState;
+	}
+
+	/**
+	 * Plays the whole game again.
+	 * @return the engine holding the rebuilt game
+	 */
+	public HeadlessEngine replay() {
+		return replay(events.size(), CommandSink.NONE);
+	}
+
+	/**
+	 * Plays the first events of the game again.
+	 * @param count the number of events to process
+	 * @param sink receives the commands the game produces
+	 * @return the engine holding the rebuilt game, which can carry on from there
+	 */
+	public HeadlessEngine replay(int count, CommandSink sink) {
+		HeadlessEngine engine = new HeadlessEngine(sink);
+		GameState gameState = engine.getGameState();
+		gameState.setSeed(seed);
+		gameState.journal = new Replay();
+		for (Event event : events.subList(0, count)) {
+			engine.processEvent(event.type, event.message);
+		}
+		gameState.journal = Journal.NONE;
+		return engine;
+	}
+
+	// Hands the AI the decisions it made, in order. If they run out (the journal was cut
+	// short) the AI decides for itself.
+	private class Replay extends Journal {
+
+		private final Deque<Integer> budgets = new ArrayDeque<Integer>(JournalReplayer.this.budgets);
+		private final Deque<int[]> plans = new ArrayDeque<int[]>(JournalReplayer.this.plans);
+
+		@Override
+		public int aiTurn(int budgetMillis) {
+			return budgets.isEmpty() ? budgetMillis : budgets.poll();
+		}
+
+		@Override
+		public int[] plan(Supplier<int[]> planner) {
+			return plans.isEmpty() ? planner.get() : plans.poll();
+		}
+	}
+
+	private static Event readEvent(ByteBuffer in, List<String> strings) throws IOException {
+		long time = readNumber(in);
+		String type = readString(in, strings);
+		ObjectNode message = Json.newObject();
+		for (long fields = readNumber(in); fields > 0; fields--) {
+			String name = readString(in, strings);
+			switch (in.get()) {
+			case Journal.INT:
+				message.put(name, (int) readSigned(in));
+				break;
+			case Journal.TEXT:
+				message.put(name, readString(in, strings));
+				break;
+			case Journal.JSON:
+				JsonNode value = Json.parse(new String(readBytes(in), StandardCharsets.UTF_8));
+				message.set(name, value);
+				break;
+			default:
+				throw new IOException("Corrupt game journal");
+			}
+		}
+		return new Event(time, type, message);
+	}
+
+	private static long readNumber(ByteBuffer in) {
+		long value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = in.get();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return value;
+		}
+	}
+
+	private static long readSigned(ByteBuffer in) {
+		long value = readNumber(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static byte[] readBytes(ByteBuffer in) {
+		byte[] bytes = new byte[(int) readNumber(in)];
+		in.get(bytes);
+		return bytes;
+	}
+
+	private static String readString(ByteBuffer in, List<String> strings) {
+		int number = (int) readNumber(in);
+		if (number < strings.size()) return strings.get(number);
+		String value = new String(readBytes(in), StandardCharsets.UTF_8);
+		strings.add(value);
+		return value;
+	}
+
+	// One recorded event
+	private static class Event {
+
+		final long time;
+		final String type;
+		final JsonNode message;
+
+		Event(long time, String type, JsonNode message) {
+			this.time = time;
+			this.type = type;
+			this.message = message;
+		}
+	}
+}
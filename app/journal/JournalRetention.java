@@ -0,0 +1,68 @@
+package journal;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+
+/**
+ * Keeps the journal directory from growing for ever. The journal of a game that has been
+ * played to the end is moved into finished/ as the game stops, where it can still be
+ * replayed but is no longer brought back when its game id is asked for. Journals that
+ * have not been written to for a while (game.journal.keep) are deleted, finished or not:
+ * a game put away and never come back to goes too.
+ *
+ * Servers sharing the directory may prune it at the same time; a journal already gone
+ * is simply skipped.
+ */
+public class JournalRetention {
+
+	public static final String FINISHED = "finished";
+
+	/**
+	 * Moves the journal of a finished game out of the way of new games.
+	 * @param file the game's journal, closed
+	 */
+	public static void finish(Path file) {
+		try {
+			Path finished = Files.createDirectories(file.resolveSibling(FINISHED));
+			Files.move(file, finished.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+		} catch (NoSuchFileException e) {
+			// already moved or pruned
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Deletes the journals in the directory, and in its finished/, that have not been
+	 * written to for longer than keep.
+	 * @param directory where journals are kept
+	 * @param keep
+	 * @return the number of journals deleted
+	 */
+	public static int prune(Path directory, Duration keep) {
+		long before = System.currentTimeMillis() - keep.toMillis();
+		return prune(directory, before) + prune(directory.resolve(FINISHED), before);
+	}
+
+	private static int prune(Path directory, long before) {
+		if (!Files.isDirectory(directory)) return 0;
+		int deleted = 0;
+		try (DirectoryStream<Path> journals = Files.newDirectoryStream(directory, "*.journal")) {
+			for (Path journal : journals) {
+				try {
+					if (Files.getLastModifiedTime(journal).toMillis() < before && Files.deleteIfExists(journal)) deleted++;
+				} catch (NoSuchFileException e) {
+					// pruned by another server
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return deleted;
+	}
+}
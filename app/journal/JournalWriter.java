@@ -0,0 +1,217 @@
+package journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Records a game to its own file, <game id>.journal, in the format described in
+ * Journal. Records are encoded into a buffer in memory as they happen, and the buffer
+ * is written to the file in one go when the game flushes the journal at the end of an
+ * event, so the event path only pays for one write to the OS (the file is not forced
+ * to disk until it is closed).
+ *
+ * If the file cannot be written the error is printed and the game carries on without
+ * being recorded.
+ */
+public class JournalWriter extends Journal {
+
+	private final UUID gameId;
+	private final long startTime;
+	private final Map<String, Integer> strings = new HashMap<String, Integer>(); // strings written so far, by number
+	private FileChannel file;
+	private ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+	/**
+	 * Starts the journal of a new game.
+	 * @param directory where journals are kept, created if need be
+	 * @param gameId
+	 * @param seed the seed of the game's GameState.random
+	 * @return
+	 * @throws IOException if the file cannot be created (or already exists)
+	 */
+	public static JournalWriter create(Path directory, UUID gameId, long seed) throws IOException {
+		Files.createDirectories(directory);
+		FileChannel file = FileChannel.open(fileOf(directory, gameId), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		JournalWriter writer = new JournalWriter(file, gameId, System.currentTimeMillis());
+		writer.buffer.putInt(MAGIC);
+		writer.buffer.put((byte) VERSION);
+		writer.buffer.putLong(gameId.getMostSignificantBits());
+		writer.buffer.putLong(gameId.getLeastSignificantBits());
+		writer.buffer.putLong(seed);
+		writer.buffer.putLong(writer.startTime);
+		return writer;
+	}
+
+	/**
+	 * Carries on the journal of a game that has been replayed, after its last complete
+	 * record.
+	 * @param file
+	 * @param replayer that read the file
+	 * @return
+	 * @throws IOException if the file cannot be written
+	 */
+	static JournalWriter append(Path file, JournalReplayer replayer) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+		channel.truncate(replayer.getLength());
+		channel.position(replayer.getLength());
+		JournalWriter writer = new JournalWriter(channel, replayer.getGameId(), replayer.getStartTime());
+		for (String value : replayer.getStrings()) writer.strings.put(value, writer.strings.size());
+		return writer;
+	}
+
+	/**
+	 * @param directory
+	 * @param gameId
+	 * @return the journal file of a game
+	 */
+	public static Path fileOf(Path directory, UUID gameId) {
+		return directory.resolve(gameId + ".journal");
+	}
+
+	private JournalWriter(FileChannel file, UUID gameId, long startTime) {
+		this.file = file;
+		this.gameId = gameId;
+		this.startTime = startTime;
+	}
+
+	public UUID getGameId() {
+		return gameId;
+	}
+
+	@Override
+	public void event(String messageType, JsonNode message) {
+		if (file == null) return;
+		writeByte(EVENT);
+		writeNumber(System.currentTimeMillis() - startTime);
+		writeString(messageType);
+		writeNumber(message.size());
+		for (Iterator<Map.Entry<String, JsonNode>> fields = message.fields(); fields.hasNext();) {
+			Map.Entry<String, JsonNode> field = fields.next();
+			JsonNode value = field.getValue();
+			writeString(field.getKey());
+			if (value.isIntegralNumber() && value.canConvertToInt()) {
+				writeByte(INT);
+				writeSigned(value.intValue());
+			} else if (value.isTextual()) {
+				writeByte(TEXT);
+				writeString(value.textValue());
+			} else {
+				writeByte(JSON);
+				writeBytes(value.toString().getBytes(StandardCharsets.UTF_8));
+			}
+		}
+	}
+
+	@Override
+	public int aiTurn(int budgetMillis) {
+		if (file != null) {
+			writeByte(AI_TURN);
+			writeNumber(budgetMillis);
+		}
+		return budgetMillis;
+	}
+
+	@Override
+	public int[] plan(Supplier<int[]> planner) {
+		int[] plan = planner.get();
+		if (file != null) {
+			writeByte(PLAN);
+			writeNumber(plan.length);
+			for (int action : plan) writeSigned(action);
+		}
+		return plan;
+	}
+
+	@Override
+	public void flush() {
+		if (file == null || buffer.position() == 0) return;
+		buffer.flip();
+		try {
+			while (buffer.hasRemaining()) file.write(buffer);
+		} catch (IOException e) {
+			fail(e);
+		}
+		buffer.clear();
+	}
+
+	@Override
+	public void close() {
+		flush();
+		if (file == null) return;
+		try {
+			file.force(true);
+			file.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		file = null;
+	}
+
+	// Stops recording, keeping what was written so far
+	private void fail(IOException e) {
+		e.printStackTrace();
+		try {
+			file.close();
+		} catch (IOException ignored) {
+		}
+		file = null;
+	}
+
+	private void ensure(int bytes) {
+		if (buffer.remaining() >= bytes) return;
+		ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+		buffer.flip();
+		bigger.put(buffer);
+		buffer = bigger;
+	}
+
+	private void writeByte(int value) {
+		ensure(1);
+		buffer.put((byte) value);
+	}
+
+	// 7 bits per byte, lowest first, with the top bit set on all but the last byte
+	private void writeNumber(long value) {
+		ensure(10);
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	// zig-zag, so small negative numbers stay short
+	private void writeSigned(long value) {
+		writeNumber((value << 1) ^ (value >> 63));
+	}
+
+	private void writeBytes(byte[] bytes) {
+		writeNumber(bytes.length);
+		ensure(bytes.length);
+		buffer.put(bytes);
+	}
+
+	// a string's number, followed by the string itself the first time it is written
+	private void writeString(String value) {
+		Integer number = strings.get(value);
+		if (number != null) {
+			writeNumber(number);
+		} else {
+			writeNumber(strings.size());
+			strings.put(value, strings.size());
+			writeBytes(value.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -1,18 +1,46 @@
 package managers;
 
+import ai.GameSnapshot;
+import ai.MctsPlanner;
 import akka.actor.ActorRef;
+import card.CardEffect;
+import card.CardFactory;
 import commands.BasicCommands;
+import structures.Bitboard;
 import structures.GameState;
 import structures.basic.*;
-import utils.BasicObjectBuilders;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
+/**
+ * Plays a turn for a computer controlled player. In a normal game that is player 2,
+ * whose turn is played as soon as player 1 ends theirs. The AI can play either side
+ * though, which is how engine.MatchSimulator plays AI against AI.
+ *
+ * With a planner budget set (game.ai.planner-budget-ms), player 2's turn is planned by
+ * a tree search (ai.MctsPlanner) and can include summoning and spells; without one the
+ * AI attacks where it can and otherwise advances on the enemy avatar, then summons the
+ * creatures in its hand it can afford.
+ */
 public class AIManager {
 
-    private static final Random random = new Random();
+    // milliseconds the planner may think for each turn, 0 for the simple rules
+    private static volatile int plannerBudget = 0;
+
+    // times a turn may be planned, when the game does not go as planned
+    private static final int MAX_PLANS = 3;
+
+    /**
+     * @param millis time the planner may take for a turn, 0 to play without it
+     */
+    public static void setPlannerBudget(int millis) {
+        plannerBudget = Math.max(0, millis);
+    }
+
+    public static int getPlannerBudget() {
+        return plannerBudget;
+    }
 
     public static void executeAITurn(ActorRef out, GameState gameState) {
         if (gameState.currentPlayer != 2) {
@@ -22,41 +50,179 @@ public class AIManager {
         gameState.AIActing = true;
 
         BasicCommands.addPlayer1Notification(out, "AI正在行动...", 2);
-        try {
-            Thread.sleep(500);
-        } catch (Exception e) {
+        GeneralManager.sleep(500);
+
+        int budget = gameState.journal.aiTurn(plannerBudget);
+        if (budget > 0) {
+            playPlannedTurn(out, gameState, 2, budget);
+        } else {
+            playTurn(out, gameState, 2);
         }
 
+        BasicCommands.addPlayer1Notification(out, "AI回合结束", 2);
+        gameState.AIActing = false;
+        TurnManager.switchTurn(out, gameState);
+    }
+
+    /**
+     * Plays the units and the creature cards of the given player for one turn, without
+     * ending the turn.
+     *
+     * @param out       WebSocket communication channel for UI updates.
+     * @param gameState The current game state.
+     * @param player    The player the AI plays for, who must be the current player.
+     * @return true if any unit attacked, moved or was summoned
+     */
+    public static boolean playTurn(ActorRef out, GameState gameState, int player) {
         // 重置AI单位状态
-        resetAIUnits(gameState);
+        resetAIUnits(gameState, player);
 
         // 执行AI行动
         // **优先执行 AI 攻击**
-        boolean actionTaken = aiAttack(out, gameState);
+        boolean actionTaken = aiAttack(out, gameState, player);
 
         // **如果不能攻击，再考虑移动**
         if (!actionTaken) {
-            actionTaken |= aiMove(out, gameState);
+            actionTaken |= aiMove(out, gameState, player);
         }
 
-        
+        // then summon, next to the units that have advanced
+        actionTaken |= aiSummonUnits(out, gameState, player);
+        return actionTaken;
+    }
 
-        BasicCommands.addPlayer1Notification(out, "AI回合结束", 2);
-        gameState.AIActing = false;
-        TurnManager.switchTurn(out, gameState);
+    /**
+     * Plans the turn of the given player with the tree search, then plays the plan,
+     * without ending the turn. The planner works on a model of the rules, so each move
+     * is checked against the real game before it is played, and the snapshot is checked
+     * against the game after it. When the game has turned out differently (an ability
+     * triggered, a move was not allowed...) the rest of the turn is planned again from
+     * the real game, a few times at most.
+     *
+     * @param out          WebSocket communication channel for UI updates.
+     * @param gameState    The current game state.
+     * @param player       The player the AI plays for, who must be the current player.
+     * @param budgetMillis Time the planner may take.
+     * @return the number of moves played
+     */
+    public static int playPlannedTurn(ActorRef out, GameState gameState, int player, int budgetMillis) {
+        resetAIUnits(gameState, player);
+
+        int played = 0;
+        for (int plans = 0; plans < MAX_PLANS; plans++) {
+            GameSnapshot snapshot = GameSnapshot.of(gameState);
+            int budget = (plans == 0) ? budgetMillis : budgetMillis / 4;
+            long seed = gameState.random.nextLong();
+            int[] plan = gameState.journal.plan(() -> MctsPlanner.forThread().planTurn(snapshot, budget, seed));
+
+            // the real units, by their number in the snapshot; summoned units are added as they appear
+            Unit[] units = new Unit[GameSnapshot.MAX_UNITS];
+            for (int u = 0; u < snapshot.getUnitCount(); u++) {
+                units[u] = gameState.getUnitById(snapshot.getUnitId(u));
+            }
+
+            boolean diverged = false;
+            for (int action : plan) {
+                if (GameSnapshot.kindOf(action) == GameSnapshot.END_TURN) {
+                    break;
+                }
+                int newUnit = snapshot.getUnitCount();
+                if (!playAction(out, gameState, player, units, action)) {
+                    diverged = true;
+                    break;
+                }
+                snapshot.apply(action);
+                if (GameSnapshot.kindOf(action) == GameSnapshot.SUMMON) {
+                    units[newUnit] = tileOf(gameState, GameSnapshot.argB(action)).getUnit();
+                    if (units[newUnit] != null) {
+                        snapshot.setUnitId(newUnit, units[newUnit].getId());
+                    }
+                }
+                played++;
+                if (!snapshot.matches(gameState)) {
+                    diverged = true;
+                    break;
+                }
+            }
+            if (!diverged || gameState.player1Avatar.isDead() || gameState.player2Avatar.isDead()) {
+                break;
+            }
+        }
+        return played;
     }
 
-    private static void resetAIUnits(GameState gameState) {
-        for (Unit unit : gameState.playerUnits) {
-            if (unit.getOwner() == 2) {
-                unit.resetTurnStatus();
+    // Plays one planned move, if the real game allows it
+    private static boolean playAction(ActorRef out, GameState gameState, int player, Unit[] units, int action) {
+        int a = GameSnapshot.argA(action);
+        int b = GameSnapshot.argB(action);
+        List<Card> hand = (player == 1) ? gameState.player1Hand : gameState.player2Hand;
+
+        switch (GameSnapshot.kindOf(action)) {
+            case GameSnapshot.MOVE: {
+                Unit unit = units[a];
+                Tile tile = tileOf(gameState, b);
+                if (unit == null || unit.isDead() || unit.hasMoved() || tile.getUnit() != null) {
+                    return false;
+                }
+                moveUnit(out, unit, tile);
+                return true;
             }
+            case GameSnapshot.ATTACK: {
+                Unit attacker = units[a];
+                Unit target = units[b];
+                if (attacker == null || target == null || attacker.isDead() || target.isDead()
+                        || attacker.hasAttacked() || !getEnemiesInAttackRange(attacker, gameState).contains(target)) {
+                    return false;
+                }
+                attackEnemy(out, gameState, attacker, target);
+                return true;
+            }
+            case GameSnapshot.SUMMON:
+                if (a >= hand.size()) {
+                    return false;
+                }
+                return playCard(out, gameState, hand.get(a), a + 1, tileOf(gameState, b));
+            case GameSnapshot.SPELL: {
+                Unit target = units[b];
+                if (a >= hand.size() || target == null || target.isDead()) {
+                    return false;
+                }
+                return playCard(out, gameState, hand.get(a), a + 1, target.getTile());
+            }
+            default:
+                return false; // END_TURN
+        }
+    }
+
+    // Plays a card from the AI's hand the way HandManager plays the human's
+    private static boolean playCard(ActorRef out, GameState gameState, Card card, int handPos, Tile tile) {
+        Player aiPlayer = (gameState.currentPlayer == 1) ? gameState.player1 : gameState.player2;
+        CardEffect effect = CardFactory.createCardEffect(card);
+        if (effect == null || aiPlayer.getMana() < card.getManacost()) {
+            return false;
+        }
+        if (card.isCreature() && tile.getUnit() != null) {
+            return false;
         }
+        if (!effect.executeEffect(out, gameState, card, tile) && !card.isCreature()) {
+            return false;
+        }
+        return HandManager.deductManaAndRemoveCard(out, gameState, card, handPos);
+    }
+
+    private static Tile tileOf(GameState gameState, int cell) {
+        return gameState.board[GameSnapshot.tilex(cell)][GameSnapshot.tiley(cell)];
     }
 
-    private static boolean aiAttack(ActorRef out, GameState gameState) {
+    private static void resetAIUnits(GameState gameState, int player) {
+        for (Unit unit : gameState.getUnits(player)) {
+            unit.resetTurnStatus();
+        }
+    }
+
+    private static boolean aiAttack(ActorRef out, GameState gameState, int player) {
         boolean attacked = false;
-        List<Unit> aiUnits = getAIUnits(gameState);
+        List<Unit> aiUnits = getAIUnits(gameState, player);
 
         for (Unit unit : aiUnits) {
             if (unit.hasAttacked() || unit.isDead())
@@ -68,16 +234,16 @@ public class AIManager {
             if (!enemies.isEmpty()) {
                 // **选择生命值最少的敌人作为优先攻击目标**
                 Unit target = selectWeakestEnemy(enemies);
-                attackEnemy(out, unit, target);
+                attackEnemy(out, gameState, unit, target);
                 attacked = true;
             }
         }
         return attacked;
     }
 
-    private static boolean aiMove(ActorRef out, GameState gameState) {
+    private static boolean aiMove(ActorRef out, GameState gameState, int player) {
         boolean moved = false;
-        List<Unit> aiUnits = getAIUnits(gameState);
+        List<Unit> aiUnits = getAIUnits(gameState, player);
 
         for (Unit unit : aiUnits) {
             if (unit.hasMoved() || unit.isDead())
@@ -92,61 +258,44 @@ public class AIManager {
         return moved;
     }
 
-    private static boolean aiSummonUnits(ActorRef out, GameState gameState) {
-    	if (gameState.player2Hand.isEmpty()) {
-    	    BasicCommands.addPlayer1Notification(out, "AI手牌为空，无法召唤单位", 2);
-    	    return false;
-    	}
-    	if (gameState.player2.getMana() < 1) {
-    	    BasicCommands.addPlayer1Notification(out, "AI魔法值不足，无法召唤单位", 2);
-    	    return false;
-    	}
-            
-
-        for (Card card : gameState.player2Hand) {
-            if (card.getManacost() <= gameState.player2.getMana()) {
-                Tile summonTile = findAnyEmptyTile(gameState);
-                if (summonTile != null) {
-                    summonUnit(out, gameState, card, summonTile);
-                    return true;
-                }
+    // Summons the creatures in hand the player can afford, in hand order, each on the free
+    // tile next to its units that is closest to the enemy avatar
+    private static boolean aiSummonUnits(ActorRef out, GameState gameState, int player) {
+        List<Card> hand = (player == 1) ? gameState.player1Hand : gameState.player2Hand;
+        Player aiPlayer = (player == 1) ? gameState.player1 : gameState.player2;
+        boolean summoned = false;
+
+        int index = 0;
+        while (index < hand.size()) {
+            Card card = hand.get(index);
+            Tile summonTile = findSummonTile(gameState, player);
+            if (summonTile == null) {
+                break;
+            }
+            if (card.isCreature() && card.getManacost() <= aiPlayer.getMana()
+                    && playCard(out, gameState, card, index + 1, summonTile)) {
+                summoned = true; // the card has left the hand, the next one has taken its place
+            } else {
+                index++;
             }
         }
-        return false;
+        return summoned;
     }
 
     // 辅助方法
-    private static List<Unit> getAIUnits(GameState gameState) {
+    private static List<Unit> getAIUnits(GameState gameState, int player) {
+        // a copy, as units die (and leave the index) while the AI goes through them
         List<Unit> aiUnits = new ArrayList<>();
-        for (Unit unit : gameState.playerUnits) {
-            if (unit.getOwner() == 2 && !unit.isDead()) {
+        for (Unit unit : gameState.getUnits(player)) {
+            if (!unit.isDead()) {
                 aiUnits.add(unit);
             }
         }
         return aiUnits;
     }
 
-    private static List<Unit> getAdjacentEnemies(Unit attacker, GameState gameState) {
-        List<Unit> enemies = new ArrayList<>();
-        Tile attackerTile = attacker.getTile();
-
-        int[][] directions = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 }, { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 } };
-        for (int[] dir : directions) {
-            int x = attackerTile.getTilex() + dir[0];
-            int y = attackerTile.getTiley() + dir[1];
-            if (x >= 0 && x < 9 && y >= 0 && y < 5) {
-                Tile tile = gameState.board[x][y];
-                Unit enemy = tile.getUnit();
-                if (enemy != null && enemy.getOwner() == 1) {
-                    enemies.add(enemy);
-                }
-            }
-        }
-        return enemies;
-    }
-
     private static Tile findMoveTowardsEnemyAvatar(Unit unit, GameState gameState) {
-        Unit enemyAvatar = gameState.player1Avatar;
+        Unit enemyAvatar = (unit.getOwner() == 2) ? gameState.player1Avatar : gameState.player2Avatar;
         List<Tile> movableTiles = BoardManager.getAIMovableTiles(unit, gameState);
         Tile bestTile = null;
         int minDistance = Integer.MAX_VALUE;
@@ -162,32 +311,33 @@ public class AIManager {
         return bestTile;
     }
 
-    private static Tile findAnyEmptyTile(GameState gameState) {
-        for (int x = 0; x < 9; x++) {
-            for (int y = 0; y < 5; y++) {
-                Tile tile = gameState.board[x][y];
-                if (tile.getUnit() == null)
-                    return tile;
+    private static Tile findSummonTile(GameState gameState, int player) {
+        Unit enemyAvatar = (player == 2) ? gameState.player1Avatar : gameState.player2Avatar;
+        Tile bestTile = null;
+        int minDistance = Integer.MAX_VALUE;
+
+        for (long cells = gameState.bitboard.summonTargets(player); cells != 0; cells = Bitboard.next(cells)) {
+            Tile tile = Bitboard.tile(gameState, Bitboard.first(cells));
+            int distance = Math.abs(tile.getTilex() - enemyAvatar.getTilex())
+                    + Math.abs(tile.getTiley() - enemyAvatar.getTiley());
+            if (distance < minDistance) {
+                minDistance = distance;
+                bestTile = tile;
             }
         }
-        return null;
+        return bestTile;
     }
 
-    private static void attackEnemy(ActorRef out, Unit attacker, Unit target) {
-        BasicCommands.playUnitAnimation(out, attacker, UnitAnimationType.attack);
-
-
+    private static void attackEnemy(ActorRef out, GameState gameState, Unit attacker, Unit target) {
+        Tile targetTile = target.getTile();
 
-        // **更新血量**
-        target.setHealth(out, target.getHealth() - attacker.getAttack());
-        attacker.setHealth(out, attacker.getHealth() - target.getAttack()); // 反击
+        // **更新血量** (the same damage rules as a player's attack, so dead units are removed)
+        UnitManager.causeDamage(out, gameState, attacker, target);
 
-        // **更新 UI**
-        BasicCommands.setUnitHealth(out, target, target.getHealth());
-        BasicCommands.setUnitHealth(out, attacker, attacker.getHealth());
-
-        // **如果目标死亡，移除**
-       
+        // **反击**
+        if (targetTile.getUnit() == target) {
+            UnitManager.causeDamage(out, gameState, target, attacker);
+        }
 
         // **标记单位已攻击**
         attacker.setHasAttacked(true);
@@ -199,35 +349,13 @@ public class AIManager {
         unit.setHasMoved(true);
     }
 
-    private static void summonUnit(ActorRef out, GameState gameState, Card card, Tile tile) {
-        Unit unit = BasicObjectBuilders.loadUnit(card.getUnitConfig(), gameState.getCurrentUnitId(), Unit.class);
-        unit.setOwner(2);
-        unit.setPositionByTile(tile);
-        gameState.playerUnits.add(unit);
-        gameState.player2.setMana(gameState.player2.getMana() - card.getManacost());
-        BasicCommands.drawUnit(out, unit, tile);
-    }
     private static List<Unit> getEnemiesInAttackRange(Unit attacker, GameState gameState) {
         List<Unit> enemies = new ArrayList<>();
-        Tile attackerTile = attacker.getTile();
-
-        int[][] attackRange = {
-                {1, 0}, {-1, 0}, {0, 1}, {0, -1}, 
-                {1, 1}, {1, -1}, {-1, 1}, {-1, -1} 
-        };
+        int cell = Bitboard.cellOf(attacker.getTile());
 
-        for (int[] dir : attackRange) {
-            int x = attackerTile.getTilex() + dir[0];
-            int y = attackerTile.getTiley() + dir[1];
-
-            if (x >= 0 && x < 9 && y >= 0 && y < 5) {
-                Tile tile = gameState.board[x][y];
-                Unit enemy = tile.getUnit();
-
-                if (enemy != null && enemy.getOwner() == 1) {
-                    enemies.add(enemy);
-                }
-            }
+        // adjacent & diagonal tiles with a unit of the other player
+        for (long cells = gameState.bitboard.attackTargets(cell, attacker.getOwner()); cells != 0; cells = Bitboard.next(cells)) {
+            enemies.add(Bitboard.tile(gameState, Bitboard.first(cells)).getUnit());
         }
         return enemies;
     }
@@ -2,9 +2,9 @@ package managers;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 import akka.actor.ActorRef;
+import structures.Bitboard;
 import structures.GameState;
 import structures.basic.Tile;
 import structures.basic.Unit;
@@ -28,6 +28,7 @@ public class BoardManager {
             for (int y = 0; y < 5; y++) { // Iterate through the 5 rows
                 Tile tile = BasicObjectBuilders.loadTile(x, y); // Load the tile
                 gameState.board[x][y] = tile; // Store the tile in the game state
+                tile.setBitboard(gameState.bitboard); // Track the units placed on it
                 tile.setHighlightStatus(out, 0); // Render the tile in UI
             }
         }
@@ -63,10 +64,7 @@ public class BoardManager {
      */
     public static void highlightCandidateTile(ActorRef out, GameState gameState) {
         clearTiles(out, gameState);
-        for (Unit unit : gameState.playerUnits) {
-            if (unit.getOwner() != 1) {
-                continue;
-            }
+        for (Unit unit : gameState.getUnits(1)) {
             if (unit.canMove() || unit.canAttack(gameState)) {
                 unit.getTile().setHighlightStatus(out, 1);
             }
@@ -154,45 +152,20 @@ public class BoardManager {
 
     public static void highlightSummonableTile(ActorRef out, GameState gameState) {
 
-        // 4️ Define summonable directions (adjacent & diagonal)
-        int[][] directions = new int[][] {
-                { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 }, // Adjacent tiles (right, left, down, up)
-                { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 } // Diagonal tiles (top-right, bottom-right, top-left,
-                                                           // bottom-left)
-        };
+        // Empty tiles next to (adjacent & diagonal) the current player's units
+        long cells = gameState.bitboard.summonTargets(gameState.currentPlayer);
 
-        // 5️ Get all active units, including the player's Avatar
-        List<Unit> activeUnits = new ArrayList<>();
-        for (Unit unit : gameState.playerUnits) {
-            if (unit.getOwner() != gameState.currentPlayer) {
-                continue;
-            }
-            activeUnits.add(unit);
-        }
-        if (!activeUnits.contains(gameState.player1Avatar)) {
-            activeUnits.add(gameState.player1Avatar);
+        // Player 1's Avatar always counts
+        Unit avatar = gameState.player1Avatar;
+        if (avatar != null && avatar.getPosition() != null) {
+            int cell = Bitboard.cellOf(avatar.getPosition().getTilex(), avatar.getPosition().getTiley());
+            cells |= Bitboard.neighbours(cell) & ~gameState.bitboard.occupied();
         }
 
-        // 6️ Loop through active units to find valid summonable tiles
-        for (Unit unit : activeUnits) {
-            if (unit == null || unit.getPosition() == null)
-                continue; // Skip invalid units
-            int cx = unit.getPosition().getTilex();
-            int cy = unit.getPosition().getTiley();
-
-            // 7 Check all adjacent and diagonal tiles
-            for (int[] dir : directions) {
-                int nx = cx + dir[0];
-                int ny = cy + dir[1];
-
-                if (nx >= 0 && nx < 9 && ny >= 0 && ny < 5) { // Ensure within board limits
-                    Tile t = gameState.board[nx][ny];
-                    if (t.getUnit() == null) { // Only allow empty tiles
-                        gameState.summonableTiles.add(t);
-                        t.setHighlightStatus(out, 1); // Highlight tile in UI
-                    }
-                }
-            }
+        for (; cells != 0; cells = Bitboard.next(cells)) {
+            Tile t = Bitboard.tile(gameState, Bitboard.first(cells));
+            gameState.summonableTiles.add(t);
+            t.setHighlightStatus(out, 1); // Highlight tile in UI
         }
     }
 
@@ -219,34 +192,19 @@ public class BoardManager {
         if (gameState.currentPlayer == 1) {
             gameState.movableTiles.clear();
 
-            // Define movable tiles (adjacent & diagonal)
-            int[][] directions = new int[][] {
-                    { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 }, // Adjacent tiles (right, left, down, up)
-                    { 2, 0 }, { -2, 0 }, { 0, 2 }, { 0, -2 }, // Interval tiles (right, left, down, up)
-                    { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 } // Diagonal tiles (top-right, bottom-right, top-left,
-                                                               // bottom-left)
-            };
-
-            // 6️ Loop through active units to find valid summonable tiles
             Unit unit = clickedTile.getUnit();
             if (unit == null || unit.getPosition() == null) {
                 return;
             }
-            int cx = unit.getPosition().getTilex();
-            int cy = unit.getPosition().getTiley();
-
-            // 7 Check all adjacent and diagonal tiles
-            for (int[] dir : directions) {
-                int nx = cx + dir[0];
-                int ny = cy + dir[1];
-
-                if (nx >= 0 && nx < 9 && ny >= 0 && ny < 5) { // Ensure within board limits
-                    Tile tile = gameState.board[nx][ny];
-                    if (tile.getUnit() == null) { // Only allow empty tiles
-                        gameState.movableTiles.add(tile);
-                        tile.setHighlightStatus(out, 1); // Highlight tile in UI
-                    }
-                }
+
+            // Empty tiles adjacent, diagonal or two steps away in a straight line (anywhere
+            // when flying, nowhere when provoked)
+            int cell = Bitboard.cellOf(unit.getPosition().getTilex(), unit.getPosition().getTiley());
+            long cells = gameState.bitboard.moveTargets(cell, unit.getOwner(), unit.getKeywordFlags());
+            for (; cells != 0; cells = Bitboard.next(cells)) {
+                Tile tile = Bitboard.tile(gameState, Bitboard.first(cells));
+                gameState.movableTiles.add(tile);
+                tile.setHighlightStatus(out, 1); // Highlight tile in UI
             }
         }
     }
@@ -273,42 +231,19 @@ public class BoardManager {
         if (gameState.currentPlayer == 1) {
             gameState.attackableTiles.clear();
 
-            // Define attackable tiles (adjacent & diagonal)
-            int[][] directions = new int[][] {
-                    { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 }, // Adjacent tiles (right, left, down, up)
-                    { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 } // Diagonal tiles (top-right, bottom-right, top-left,
-                                                               // bottom-left)
-            };
-
-            // Loop through active units to find valid attackable tiles
             Unit unit = clickedTile.getUnit();
             if (unit == null || unit.getPosition() == null) {
                 return;
             }
-            int cx = unit.getPosition().getTilex();
-            int cy = unit.getPosition().getTiley();
-
-            // Check all adjacent and diagonal tiles
-            for (int[] dir : directions) {
-                int nx = cx + dir[0];
-                int ny = cy + dir[1];
-
-                if (nx >= 0 && nx < 9 && ny >= 0 && ny < 5) { // Ensure within board limits
-                    Tile tile = gameState.board[nx][ny];
-
-                    // If the tile is empty, continue to next loop
-                    if (tile.getUnit() == null) {
-                        continue;
-                    }
-
-                    // Only allow enemy tiles
-                    if (tile.getUnit().getOwner() != gameState.currentPlayer) {
-                        gameState.attackableTiles.add(tile);
-                        tile.setHighlightStatus(out, 2); // Highlight tile in UI
-                    }
-                }
-            }
 
+            // Adjacent and diagonal tiles with an enemy unit (with Provoke, if there are any)
+            int cell = Bitboard.cellOf(unit.getPosition().getTilex(), unit.getPosition().getTiley());
+            long cells = gameState.bitboard.attackTargets(cell, gameState.currentPlayer);
+            for (; cells != 0; cells = Bitboard.next(cells)) {
+                Tile tile = Bitboard.tile(gameState, Bitboard.first(cells));
+                gameState.attackableTiles.add(tile);
+                tile.setHighlightStatus(out, 2); // Highlight tile in UI
+            }
         }
     }
 
@@ -319,26 +254,10 @@ public class BoardManager {
      * @return 可移动的Tile列表
      */
     public static List<Tile> getAIMovableTiles(Unit unit, GameState gameState) {
-        List<Tile> movableTiles = new ArrayList<>();
-        if (unit.getOwner() != 2) return movableTiles;
-
-        int[][] directions = {
-                {1,0}, {-1,0}, {0,1}, {0,-1},
-                {2,0}, {-2,0}, {0,2}, {0,-2},
-                {1,1}, {1,-1}, {-1,1}, {-1,-1}
-        };
-
-        int cx = unit.getTilex();
-        int cy = unit.getTiley();
-        for (int[] dir : directions) {
-            int nx = cx + dir[0];
-            int ny = cy + dir[1];
-            if (nx >=0 && nx <9 && ny >=0 && ny <5) {
-                Tile tile = gameState.board[nx][ny];
-                if (tile.getUnit() == null) {
-                    movableTiles.add(tile);
-                }
-            }
+        long cells = gameState.bitboard.moveTargets(Bitboard.cellOf(unit.getTilex(), unit.getTiley()), unit.getOwner(), unit.getKeywordFlags());
+        List<Tile> movableTiles = new ArrayList<>(Long.bitCount(cells));
+        for (; cells != 0; cells = Bitboard.next(cells)) {
+            movableTiles.add(Bitboard.tile(gameState, Bitboard.first(cells)));
         }
         return movableTiles;
     }
@@ -353,23 +272,9 @@ public class BoardManager {
         List<Unit> targets = new ArrayList<>();
         if (attacker.getOwner() != 2) return targets;
 
-        int[][] directions = {
-                {1,0}, {-1,0}, {0,1}, {0,-1},
-                {1,1}, {1,-1}, {-1,1}, {-1,-1}
-        };
-
-        int cx = attacker.getTilex();
-        int cy = attacker.getTiley();
-        for (int[] dir : directions) {
-            int nx = cx + dir[0];
-            int ny = cy + dir[1];
-            if (nx >=0 && nx <9 && ny >=0 && ny <5) {
-                Tile tile = gameState.board[nx][ny];
-                Unit enemy = tile.getUnit();
-                if (enemy != null && enemy.getOwner() == 1) {
-                    targets.add(enemy);
-                }
-            }
+        long cells = gameState.bitboard.attackTargets(Bitboard.cellOf(attacker.getTilex(), attacker.getTiley()), 2);
+        for (; cells != 0; cells = Bitboard.next(cells)) {
+            targets.add(Bitboard.tile(gameState, Bitboard.first(cells)).getUnit());
         }
         return targets;
     }
@@ -380,41 +285,22 @@ public class BoardManager {
      * @return 可用的召唤位置Tile
      */
     public static Tile findAISummonTile(GameState gameState) {
-        List<Tile> candidateTiles = new ArrayList<>();
-        int[][] directions = {
-                { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 },
-                { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 }
-        };
-
         // 优先在己方单位周围寻找
-        for (Unit unit : gameState.playerUnits) {
-            if (unit.getOwner() != 2)
-                continue;
-            int cx = unit.getTilex();
-            int cy = unit.getTiley();
-            for (int[] dir : directions) {
-                int nx = cx + dir[0];
-                int ny = cy + dir[1];
-                if (nx >= 0 && nx < 9 && ny >= 0 && ny < 5) {
-                    Tile tile = gameState.board[nx][ny];
-                    if (tile.getUnit() == null) {
-                        candidateTiles.add(tile);
-                    }
-                }
-            }
-        }
+        long cells = gameState.bitboard.summonTargets(2);
 
         // 如果周围无空位，则全地图搜索
-        if (candidateTiles.isEmpty()) {
-            for (Tile[] row : gameState.board) {
-                for (Tile tile : row) {
-                    if (tile.getUnit() == null) {
-                        candidateTiles.add(tile);
-                    }
-                }
-            }
+        if (cells == 0) {
+            cells = Bitboard.ALL & ~gameState.bitboard.occupied();
+        }
+        if (cells == 0) {
+            return null;
+        }
+
+        // 随机选择其中一格
+        for (int skip = gameState.random.nextInt(Long.bitCount(cells)); skip > 0; skip--) {
+            cells = Bitboard.next(cells);
         }
-        return candidateTiles.isEmpty() ? null : candidateTiles.get(new Random().nextInt(candidateTiles.size()));
+        return Bitboard.tile(gameState, Bitboard.first(cells));
     }
     
     public static List<Tile> getAdjacentTiles(GameState gameState, Unit unit, boolean requireEmpty) {
@@ -1,14 +1,27 @@
 package managers;
 
+import commands.BasicCommands;
+import commands.CommandSink;
+
 public class GeneralManager {
 
     /**
      * Introduces a delay to allow UI commands to execute in the correct order.
      * Prevents UI desynchronization.
+     * While a game event is being processed this does not block the thread: it
+     * moves the game's command timeline forward, so the commands issued afterwards
+     * are sent to the front-end that much later (headless games skip it entirely).
+     * Without a CommandSink (e.g. in tests) it falls back to sleeping.
      *
      * @param ms The sleep duration in milliseconds
      */
     public static void sleep(int time) {
+        CommandSink sink = CommandSink.current();
+        if (sink != null) {
+            BasicCommands.flushTiles(); // tile changes so far are due before the delay
+            sink.delay(time);
+            return;
+        }
         try {
             Thread.sleep(time);
         } catch (InterruptedException e) {
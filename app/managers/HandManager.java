@@ -124,13 +124,10 @@ public class HandManager {
             BasicCommands.setPlayer2Mana(out, gameState.player2);
             GeneralManager.sleep(40);
 
+            // Player 2's hand is not shown, so there are no cards to redraw
             if (index < gameState.player2Hand.size()) {
                 gameState.player2Hand.remove(index);
-                BasicCommands.deleteCard(out, handPos);
             }
-            GeneralManager.sleep(40);
-
-            shiftCardsUI(out, gameState.player2Hand, index, 2);
         }
         return true;
     }
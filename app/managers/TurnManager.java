@@ -61,10 +61,7 @@ public class TurnManager {
 
         // 触发AI回合
         if (gameState.currentPlayer == 2) {
-            try {
-                Thread.sleep(300);
-            } catch (Exception e) {
-            }
+            GeneralManager.sleep(300);
             AIManager.executeAITurn(out, gameState);
         }
 
@@ -1,20 +1,14 @@
 package managers;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 import org.apache.commons.lang3.SystemUtils;
 
 import akka.actor.ActorRef;
-import card.abilities.Ability;
-import card.abilities.Artifact;
-import card.abilities.OnHit;
-import card.abilities.Deathwatch;
-import card.abilities.Rush;
 import commands.BasicCommands;
 import structures.GameState;
 import structures.basic.Card;
+import structures.basic.Keywords;
 import structures.basic.Tile;
 import structures.basic.Unit;
 import structures.basic.UnitAnimationType;
@@ -60,12 +54,12 @@ public class UnitManager {
         p1Avatar.setPositionByTile(p1Tile);
         p2Avatar.setPositionByTile(p2Tile);
 
-        // Store avatars in the game state
-        gameState.setAvatars(p1Avatar, p2Avatar);
-
         p1Avatar.setOwner(1);
         p2Avatar.setOwner(2);
 
+        // Store avatars in the game state
+        gameState.setAvatars(p1Avatar, p2Avatar);
+
         // Set attack and health attributes
         p1Avatar.setAttack(out, 2);
         p1Avatar.setHealth(out, 20);
@@ -74,9 +68,9 @@ public class UnitManager {
 
         // Render avatars on the board
         BasicCommands.drawUnit(out, p1Avatar, p1Tile);
-        Thread.sleep(50);
+        GeneralManager.sleep(50);
         BasicCommands.drawUnit(out, p2Avatar, p2Tile);
-        Thread.sleep(50);
+        GeneralManager.sleep(50);
 
         // Update UI to reflect unit stats
         BasicCommands.setUnitAttack(out, p1Avatar, 2);
@@ -105,10 +99,21 @@ public class UnitManager {
      */
     public static Unit summonUnitDirectly(ActorRef out, GameState gameState, String config, int attack, int health,
             Tile targetTile) {
+        return summonUnitDirectly(out, gameState, config, attack, health, 0, targetTile);
+    }
+
+    /**
+     * Summons a unit with keyword abilities onto a specific tile on the board.
+     *
+     * @param keywords The unit's keyword abilities (see Keywords)
+     */
+    public static Unit summonUnitDirectly(ActorRef out, GameState gameState, String config, int attack, int health,
+            int keywords, Tile targetTile) {
         // Load the unit based on the card's configuration
         Unit newUnit = BasicObjectBuilders.loadUnit(config, -1, Unit.class);
         newUnit.setOwner(gameState.currentPlayer);
         newUnit.setId(gameState.getCurrentUnitId());
+        newUnit.setKeywordFlags(keywords);
 
         // Ensure the unit has at least 1 health (prevents immediate death)
         if (health <= 0) {
@@ -135,18 +140,18 @@ public class UnitManager {
         BasicCommands.setUnitHealth(out, newUnit, health);
 
         // Check if the unit has Rush ability and apply it
-        if (Rush.hasRushAbility(newUnit)) {
+        if (newUnit.hasKeyword(Keywords.RUSH)) {
             newUnit.resetTurnStatus();
         }
 
         // Add the unit to the unit list
-        gameState.playerUnits.add(newUnit);
+        gameState.addUnit(newUnit);
 
         return newUnit;
     }
 
     public static Unit summonUnit(ActorRef out, GameState gameState, Card card, Tile targetTile) {
-        return summonUnitDirectly(out, gameState, card.getUnitConfig(), card.getAttack(), card.getHealth(), targetTile);
+        return summonUnitDirectly(out, gameState, card.getUnitConfig(), card.getAttack(), card.getHealth(), card.getKeywords(), targetTile);
     }
 
     /**
@@ -240,22 +245,17 @@ public class UnitManager {
         UnitManager.playAnimation(out, attacker, UnitAnimationType.idle, 0);
         UnitManager.playAnimation(out, target, UnitAnimationType.idle, 0);
 
-        // Trigger Artifact effects for all units
+        // Trigger the Artifact effects of an avatar
         boolean hasArtifact = false;
         if (target.getIsAvartar(1) || target.getIsAvartar(2)) {
-            hasArtifact = triggerArtifactEffects(out, gameState, target);
+            hasArtifact = gameState.abilities.unitHurt(out, gameState, target);
         }
         if (hasArtifact) {
             return;
         }
 
-        // Calculate attack demage
-        target.setHealth(out, target.getHealth() - attacker.getAttack());
-
-        // Ensure the health >= 0
-        if (target.getHealth() <= 0) {
-            target.setHealth(out, 0);
-        }
+        // Calculate attack demage, ensuring the health >= 0
+        target.setHealth(out, Math.max(0, target.getHealth() - attacker.getAttack()));
 
         // If the unit is avartar, update the player health
         if (target.getIsAvartar(1)) {
@@ -267,16 +267,12 @@ public class UnitManager {
             BasicCommands.setPlayer2Health(out, gameState.player2);
         }
 
-        BasicCommands.setUnitHealth(out, target, target.getHealth());
-        BasicCommands.setUnitHealth(out, attacker, attacker.getHealth());
-
-        boolean hasOnHit = triggerOnHitEffects(out, gameState, attacker);
+        boolean hasOnHit = gameState.abilities.unitHit(out, gameState, attacker);
         if (hasOnHit) {
             System.out.println("on hit");
-            Random random = new Random();
             List<Tile> emptyAdjacentTiles = BoardManager.getAdjacentTiles(gameState, attacker, true);
             if (!emptyAdjacentTiles.isEmpty()) {
-                Tile summonTile = emptyAdjacentTiles.get(random.nextInt(emptyAdjacentTiles.size()));
+                Tile summonTile = emptyAdjacentTiles.get(gameState.random.nextInt(emptyAdjacentTiles.size()));
                 UnitManager.summonUnitDirectly(out, gameState, StaticConfFiles.wraithling, 1, 1, summonTile);
             }
         }
@@ -294,7 +290,7 @@ public class UnitManager {
         }
 
         // Trigger Deathwatch effects for all units
-        triggerDeathwatchEffects(out, gameState, unit);
+        gameState.abilities.unitDied(out, gameState, unit);
 
         // Remove the unit from its tile
         unit.getTile().setUnit(null);
@@ -303,57 +299,12 @@ public class UnitManager {
         UnitManager.playAnimation(out, unit, UnitAnimationType.death, 2000);
 
         // Remove from the game state
-        gameState.playerUnits.remove(unit);
+        gameState.removeUnit(unit);
 
         // Delete the unit from the UI
         BasicCommands.deleteUnit(out, unit);
     }
 
-    /**
-     * Triggers Deathwatch effects for all units when a unit dies
-     * 
-     * @param out       The ActorRef for UI updates
-     * @param gameState The current game state
-     * @param deadUnit  The unit that died
-     */
-    private static void triggerDeathwatchEffects(ActorRef out, GameState gameState, Unit deadUnit) {
-        // Loop through all units and trigger Deathwatch effects
-        List<Unit> copy = new ArrayList<>(gameState.playerUnits);
-        for (Unit unit : copy) {
-            for (Ability ability : unit.getAbilities()) {
-                if (ability instanceof Deathwatch) {
-                    ((Deathwatch) ability).onUnitDeath(out, gameState, unit, deadUnit);
-                }
-            }
-        }
-    }
-
-    private static boolean triggerArtifactEffects(ActorRef out, GameState gameState, Unit unit) {
-        for (Ability ability : unit.getAbilities()) {
-            if (ability instanceof Artifact) {
-                System.out.println(1);
-                boolean applied = ((Artifact) ability).onHurt(out, gameState);
-                if (applied) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
-    private static boolean triggerOnHitEffects(ActorRef out, GameState gameState, Unit unit) {
-        for (Ability ability : unit.getAbilities()) {
-            if (ability instanceof OnHit) {
-                System.out.println(1);
-                boolean applied = ((OnHit) ability).onHit(out, gameState);
-                if (applied) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
     public static void playAnimation(ActorRef out, Unit unit, UnitAnimationType type, int time) {
         BasicCommands.playUnitAnimation(out, unit, type);
         GeneralManager.sleep(time);
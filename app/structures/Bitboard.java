@@ -0,0 +1,243 @@
+package structures;
+
+import structures.basic.Keywords;
+import structures.basic.Tile;
+
+/**
+ * The 9×5 board as bit masks: each of the 45 cells is one bit of a long, cell
+ * tilex * 5 + tiley. It sits alongside `GameState.board`, and tiles keep it up to date
+ * as units are placed on and taken off them (see Tile.setUnit), so it always knows
+ * which cells each player occupies.
+ *
+ * The cells a unit can move to, attack or summon next to are then a couple of bitwise
+ * operations on precomputed masks, with no direction tables or lists. That includes the
+ * keyword abilities: the bitboard also knows which units have Provoke, and moveTargets
+ * takes the unit's keywords (see structures.basic.Keywords) for Flying. A set of cells
+ * is walked with first() and next():
+ *
+ *     for (long cells = bitboard.moveTargets(cell, owner, keywords); cells != 0; cells = Bitboard.next(cells)) {
+ *         Tile tile = Bitboard.tile(gameState, Bitboard.first(cells));
+ *     }
+ */
+public class Bitboard {
+
+    public static final int WIDTH = 9;
+    public static final int HEIGHT = 5;
+    public static final int CELLS = WIDTH * HEIGHT;
+    public static final long ALL = (1L << CELLS) - 1;
+
+    // cells not in the top (tiley 0) or bottom (tiley 4) row, so shifting by one does not wrap
+    private static final long NOT_TOP;
+    private static final long NOT_BOTTOM;
+
+    // the 8 cells around each cell: where a unit attacks, and where units are summoned
+    private static final long[] NEIGHBOURS = new long[CELLS];
+    // the cells a unit can move to from each cell: its neighbours, and two steps in a straight line
+    private static final long[] MOVES = new long[CELLS];
+
+    static {
+        long notTop = 0;
+        long notBottom = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            if (tiley(cell) != 0) notTop |= 1L << cell;
+            if (tiley(cell) != HEIGHT - 1) notBottom |= 1L << cell;
+        }
+        NOT_TOP = notTop;
+        NOT_BOTTOM = notBottom;
+
+        int[][] steps = { { 2, 0 }, { -2, 0 }, { 0, 2 }, { 0, -2 } };
+        for (int cell = 0; cell < CELLS; cell++) {
+            NEIGHBOURS[cell] = spread(1L << cell);
+            long twoSteps = 0;
+            for (int[] step : steps) {
+                int x = tilex(cell) + step[0];
+                int y = tiley(cell) + step[1];
+                if (x >= 0 && x < WIDTH && y >= 0 && y < HEIGHT) twoSteps |= 1L << cellOf(x, y);
+            }
+            MOVES[cell] = NEIGHBOURS[cell] | twoSteps;
+        }
+    }
+
+    private final long[] occupancy = new long[3]; // cells occupied by each owner (0 while a unit has none)
+    private long provoking = 0; // cells with a unit that has Provoke
+
+    /**
+     * @param tilex
+     * @param tiley
+     * @return the cell of a tile position
+     */
+    public static int cellOf(int tilex, int tiley) {
+        return tilex * HEIGHT + tiley;
+    }
+
+    public static int cellOf(Tile tile) {
+        return cellOf(tile.getTilex(), tile.getTiley());
+    }
+
+    public static int tilex(int cell) {
+        return cell / HEIGHT;
+    }
+
+    public static int tiley(int cell) {
+        return cell % HEIGHT;
+    }
+
+    /**
+     * @param gameState
+     * @param cell
+     * @return the tile of the given cell
+     */
+    public static Tile tile(GameState gameState, int cell) {
+        return gameState.board[tilex(cell)][tiley(cell)];
+    }
+
+    /**
+     * @param cells
+     * @return the lowest cell in a set, which must not be empty
+     */
+    public static int first(long cells) {
+        return Long.numberOfTrailingZeros(cells);
+    }
+
+    /**
+     * @param cells
+     * @return the set without its lowest cell
+     */
+    public static long next(long cells) {
+        return cells & (cells - 1);
+    }
+
+    /**
+     * @param cells
+     * @return the cells around any of the given cells
+     */
+    public static long spread(long cells) {
+        long up = (cells & NOT_TOP) >>> 1;
+        long down = (cells & NOT_BOTTOM) << 1;
+        long column = cells | up | down;
+        return (up | down | (column << HEIGHT) | (column >>> HEIGHT)) & ALL;
+    }
+
+    /**
+     * @param cell
+     * @return the 8 cells around a cell (fewer at the edges)
+     */
+    public static long neighbours(int cell) {
+        return NEIGHBOURS[cell];
+    }
+
+    /**
+     * @param cell
+     * @return the cells a unit on the given cell could move to on an empty board
+     */
+    public static long moves(int cell) {
+        return MOVES[cell];
+    }
+
+    /**
+     * Records a unit on a cell, replacing whatever was there.
+     * @param cell
+     * @param owner 1 or 2, or 0 if the unit has no owner yet
+     */
+    public void place(int cell, int owner) {
+        place(cell, owner, false);
+    }
+
+    /**
+     * Records a unit on a cell, replacing whatever was there.
+     * @param cell
+     * @param owner 1 or 2, or 0 if the unit has no owner yet
+     * @param provoke whether the unit has Provoke
+     */
+    public void place(int cell, int owner, boolean provoke) {
+        remove(cell);
+        occupancy[owner] |= 1L << cell;
+        if (provoke) provoking |= 1L << cell;
+    }
+
+    /**
+     * Records that a cell is empty.
+     * @param cell
+     */
+    public void remove(int cell) {
+        long bit = ~(1L << cell);
+        occupancy[0] &= bit;
+        occupancy[1] &= bit;
+        occupancy[2] &= bit;
+        provoking &= bit;
+    }
+
+    /**
+     * @return the cells with a unit on them
+     */
+    public long occupied() {
+        return occupancy[0] | occupancy[1] | occupancy[2];
+    }
+
+    /**
+     * @param owner
+     * @return the cells with a unit of the given player on them
+     */
+    public long units(int owner) {
+        return occupancy[owner];
+    }
+
+    /**
+     * @param owner
+     * @return the cells with a unit that does not belong to the given player
+     */
+    public long enemies(int owner) {
+        return occupied() & ~occupancy[owner];
+    }
+
+    /**
+     * @param owner
+     * @return the cells with an enemy unit that has Provoke
+     */
+    public long provokers(int owner) {
+        return provoking & ~occupancy[owner];
+    }
+
+    /**
+     * @param cell
+     * @param owner
+     * @return true if a unit of the given player on the given cell is next to an enemy
+     * with Provoke, so it cannot move and may only attack units with Provoke
+     */
+    public boolean provoked(int cell, int owner) {
+        return (NEIGHBOURS[cell] & provokers(owner)) != 0;
+    }
+
+    /**
+     * @param cell
+     * @param owner the player the unit belongs to
+     * @param keywords the unit's keywords
+     * @return the empty cells a unit on the given cell can move to: none while it is
+     * provoked, any with Flying, otherwise those within its reach
+     */
+    public long moveTargets(int cell, int owner, int keywords) {
+        if (provoked(cell, owner)) return 0;
+        long reach = (keywords & Keywords.FLYING) != 0 ? ALL : MOVES[cell];
+        return reach & ~occupied();
+    }
+
+    /**
+     * @param cell
+     * @param owner the attacking player
+     * @return the cells around the given cell with a unit the player can attack: the
+     * enemies with Provoke if there are any, otherwise all of them
+     */
+    public long attackTargets(int cell, int owner) {
+        long targets = NEIGHBOURS[cell] & enemies(owner);
+        long provokers = targets & provoking;
+        return provokers != 0 ? provokers : targets;
+    }
+
+    /**
+     * @param owner
+     * @return the empty cells next to the given player's units, where they can summon
+     */
+    public long summonTargets(int owner) {
+        return spread(occupancy[owner]) & ~occupied();
+    }
+}
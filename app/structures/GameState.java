@@ -1,4 +1,6 @@
 package structures;
+import card.abilities.AbilityRegistry;
+import journal.Journal;
 import structures.basic.Card;
 import structures.basic.Player;
 import structures.basic.Tile;
@@ -6,7 +8,10 @@ import structures.basic.Unit;
 import utils.OrderedCardLoader;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
 
 /**
  * Stores the game state, including all game-related data structures.
@@ -20,6 +25,12 @@ public class GameState {
     // The game board (9x5 tiles)
     public Tile[][] board = new Tile[9][5];
 
+    // Which cells of the board each player occupies, kept up to date by the tiles
+    public final Bitboard bitboard = new Bitboard();
+
+    // The abilities of the units in the game, by what triggers them
+    public final AbilityRegistry abilities = new AbilityRegistry();
+
     // Card decks and hands for both players (stored as Lists)
     public List<Card> player1Deck = new ArrayList<>();
     public List<Card> player2Deck = new ArrayList<>();
@@ -36,9 +47,14 @@ public class GameState {
     public Unit player1Avatar;
     public Unit player2Avatar;
 
-    // List of active units for each player
+    // List of active units for each player. Add and remove units with addUnit/removeUnit,
+    // which keep the indexes below up to date.
     public List<Unit> playerUnits;
 
+    // The same units by id, and by owner (index 1 and 2)
+    private final Map<Integer, Unit> unitsById = new HashMap<>();
+    private final List<List<Unit>> unitsByOwner = new ArrayList<>();
+
     // Tiles and cards related to user interactions (highlighted/movable/selected)
     public List<Tile> movableTiles;
     public List<Tile> attackableTiles;
@@ -50,6 +66,14 @@ public class GameState {
     public boolean unitActing;
     public boolean AIActing;
 
+    // Source of every random choice made in this game (AI, random summon tiles...), used
+    // by this game's thread only. Seeding it (setSeed) makes a game repeatable, e.g. in
+    // engine.MatchSimulator and when a game is replayed from its journal.
+    public SplittableRandom random = new SplittableRandom();
+
+    // Where the game records its events and AI decisions, so it can be replayed
+    public Journal journal = Journal.NONE;
+
 
     /**
      * Initializes the game state, including player objects and empty lists for cards and units.
@@ -59,6 +83,9 @@ public class GameState {
         player2 = new Player(20, 0);
 
         playerUnits = new ArrayList<>();
+        for (int owner = 0; owner <= 2; owner++) {
+            unitsByOwner.add(new ArrayList<>());
+        }
 
         movableTiles = new ArrayList<>();
         attackableTiles = new ArrayList<>();
@@ -67,6 +94,14 @@ public class GameState {
         unitActing = false;
     }
 
+    /**
+     * Restarts the game's random choices from the given seed.
+     * @param seed
+     */
+    public void setSeed(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
     /**
      * Loads the decks for both players.
      * Each player is assigned a deck of 20 cards.
@@ -84,8 +119,36 @@ public class GameState {
     public void setAvatars(Unit p1, Unit p2) {
         this.player1Avatar = p1;
         this.player2Avatar = p2;
-        playerUnits.add(player1Avatar);
-        playerUnits.add(player2Avatar);
+        addUnit(player1Avatar);
+        addUnit(player2Avatar);
+    }
+
+    /**
+     * Adds a unit to the game. Its id and owner must be set already.
+     * Adding a unit that is already in the game does nothing.
+     * @param unit The unit to add
+     */
+    public void addUnit(Unit unit) {
+        if (unitsById.get(unit.getId()) == unit) {
+            return;
+        }
+        playerUnits.add(unit);
+        unitsById.put(unit.getId(), unit);
+        unitsByOwner.get(unit.getOwner()).add(unit);
+        unit.setAbilityRegistry(abilities);
+    }
+
+    /**
+     * Removes a unit from the game.
+     * @param unit The unit to remove
+     */
+    public void removeUnit(Unit unit) {
+        if (!playerUnits.remove(unit)) {
+            return;
+        }
+        unitsById.remove(unit.getId(), unit);
+        unitsByOwner.get(unit.getOwner()).remove(unit);
+        unit.setAbilityRegistry(null);
     }
 
     /**
@@ -94,11 +157,17 @@ public class GameState {
      * @return The unit with the given ID, or `null` if not found
      */
     public Unit getUnitById(int id) {
-        for (Unit u : playerUnits) {
-            if (u.getId() == id)
-                return u;
-        }
-        return null;
+        return unitsById.get(id);
+    }
+
+    /**
+     * The units of one player, in the order they were added. The list is the index
+     * itself, so copy it before adding or removing units while going through it.
+     * @param owner 1 for player 1, 2 for player 2
+     * @return The player's units
+     */
+    public List<Unit> getUnits(int owner) {
+        return unitsByOwner.get(owner);
     }
     
     public int getCurrentUnitId() {
@@ -1,5 +1,10 @@
 package structures.basic;
 
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import actors.GameActor;
 import akka.actor.ActorRef;
 import commands.BasicCommands;
@@ -28,6 +33,12 @@ public class Card {
 
 	boolean isCreature;
 	String unitConfig;
+	// class of the card's effect (see card.CardFactory); read from the configuration, not sent to the front-end
+	@JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+	String effect;
+	// keyword abilities of the unit the card summons (see Keywords), also not sent to the front-end
+	@JsonIgnore
+	int keywords;
 
 	// **新增字段: 攻击力和生命值**
 	int attack;
@@ -109,6 +120,32 @@ public class Card {
 		this.unitConfig = unitConfig;
 	}
 
+	public String getEffect() {
+		return effect;
+	}
+
+	public void setEffect(String effect) {
+		this.effect = effect;
+	}
+
+	@JsonIgnore
+	public int getKeywords() {
+		return keywords;
+	}
+
+	@JsonIgnore
+	public void setKeywords(int keywords) {
+		this.keywords = keywords;
+	}
+
+	/**
+	 * @param names the keywords listed in the card's configuration, e.g. ["Provoke"]
+	 */
+	@JsonProperty("keywords")
+	public void setKeywordNames(List<String> names) {
+		this.keywords = Keywords.of(names);
+	}
+
 	// **新增 getter 和 setter**
 	/**
 	 * 获取卡牌攻击力，从 bigCard 中获取
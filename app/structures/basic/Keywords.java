@@ -0,0 +1,38 @@
+package structures.basic;
+
+import java.util.Collection;
+
+/**
+ * The keyword abilities a unit can have, as bits of an int (see Unit.getKeywordFlags).
+ * They come from the "keywords" of a creature card's configuration, e.g.
+ * "keywords": ["Provoke"], and are checked by the rules every time a unit's moves
+ * and attacks are worked out, so a check is a single bitwise and.
+ */
+public final class Keywords {
+
+	/** Enemy units next to this one cannot move, and can only attack units with Provoke */
+	public static final int PROVOKE = 1;
+	/** Can move to any empty tile */
+	public static final int FLYING = 1 << 1;
+	/** Can move and attack on the turn it is summoned */
+	public static final int RUSH = 1 << 2;
+
+	private static final String[] NAMES = { "Provoke", "Flying", "Rush" };
+
+	private Keywords() {}
+
+	/**
+	 * @param names keyword names, as in the card configurations; unknown ones are ignored
+	 * @return the keywords as bits
+	 */
+	public static int of(Collection<String> names) {
+		int keywords = 0;
+		if (names == null) return keywords;
+		for (String name : names) {
+			for (int i = 0; i < NAMES.length; i++) {
+				if (NAMES[i].equalsIgnoreCase(name.trim())) keywords |= 1 << i;
+			}
+		}
+		return keywords;
+	}
+}
@@ -5,7 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import akka.actor.ActorRef;
 import commands.BasicCommands;
-import managers.GeneralManager;
+import structures.Bitboard;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -40,6 +40,9 @@ public class Tile {
 	@JsonIgnore
 	private Unit unit;
 
+	@JsonIgnore
+	private Bitboard bitboard; // of the game the tile is on, told when units come and go
+
 	public Tile() {
 	}
 
@@ -144,10 +147,15 @@ public class Tile {
 
 	}
 
+	/**
+	 * Highlights the tile (0 none, 1 white, 2 red). The front-end is only updated if
+	 * it shows the tile in another mode, see BasicCommands.highlightTile.
+	 * @param out
+	 * @param mode
+	 */
 	public void setHighlightStatus(ActorRef out, int mode) {
-		GeneralManager.sleep(10);
-		BasicCommands.drawTile(out, this, mode);
 		this.highlightStatus = mode;
+		BasicCommands.highlightTile(out, this, mode);
 	}
 
 	public int getHighlightStatus() {
@@ -162,6 +170,19 @@ public class Tile {
 	// Add setUnit() method.
 	public void setUnit(Unit unit) {
 		this.unit = unit;
+		if (bitboard != null) {
+			if (unit == null) bitboard.remove(Bitboard.cellOf(this));
+			else bitboard.place(Bitboard.cellOf(this), unit.getOwner(), unit.hasKeyword(Keywords.PROVOKE));
+		}
+	}
+
+	/**
+	 * Puts the tile on a game's board, which then keeps track of the units on it.
+	 * @param bitboard
+	 */
+	public void setBitboard(Bitboard bitboard) {
+		this.bitboard = bitboard;
+		setUnit(unit);
 	}
 
 }
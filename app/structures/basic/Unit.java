@@ -9,7 +9,9 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import card.abilities.Ability;
+import card.abilities.AbilityRegistry;
 import commands.BasicCommands;
+import structures.Bitboard;
 import structures.GameState;
 
 /**
@@ -52,6 +54,10 @@ public class Unit {
 	// 添加能力列表支持
 	@JsonIgnore
 	private List<Ability> abilities = new ArrayList<>();
+	@JsonIgnore
+	private int keywords; // keyword abilities, see Keywords
+	@JsonIgnore
+	private AbilityRegistry abilityRegistry; // of the game the unit is in, told when abilities come and go
 
 	public Unit() {
 		this.moves = 0;
@@ -189,6 +195,9 @@ public class Unit {
 
 	public void setOwner(int owner) {
 		this.owner = owner;
+		if (tile != null && tile.getUnit() == this) {
+			tile.setUnit(this); // so the board knows who the cell belongs to now
+		}
 	}
 
 	/**
@@ -228,31 +237,8 @@ public class Unit {
 	public boolean canAttack(GameState gameState) {
 
 		// Check if there is an adjacent enemy
-		// Define attackable tiles (adjacent & diagonal)
-		int[][] directions = new int[][] {
-				{ 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 }, // Adjacent tiles (right, left, down, up)
-				{ 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 } // Diagonal tiles (top-right, bottom-right, top-left,
-															// bottom-left)
-		};
-
-		int cx = getPosition().getTilex();
-		int cy = getPosition().getTiley();
-
-		// Check all adjacent and diagonal tiles
-		boolean hasAdjacentEnemy = false;
-		for (int[] dir : directions) {
-			int nx = cx + dir[0];
-			int ny = cy + dir[1];
-
-			if (nx >= 0 && nx < 9 && ny >= 0 && ny < 5) { // Ensure within board limits
-				Tile tile = gameState.board[nx][ny];
-
-				// If the tile has an enemy, set hasAdjacentEnemy to true
-				if (tile.getUnit() != null && tile.getUnit().getOwner() != gameState.currentPlayer) {
-					hasAdjacentEnemy = true;
-				}
-			}
-		}
+		int cell = Bitboard.cellOf(getPosition().getTilex(), getPosition().getTiley());
+		boolean hasAdjacentEnemy = gameState.bitboard.attackTargets(cell, gameState.currentPlayer) != 0;
 		return hasAdjacentEnemy && (!sleeping && maxAttacks - attacks > 0);
 	}
 
@@ -343,6 +329,7 @@ public class Unit {
 	public void addAbility(Ability ability) {
 		if (ability != null) {
 			abilities.add(ability);
+			if (abilityRegistry != null) abilityRegistry.register(this, ability);
 		}
 	}
 
@@ -371,7 +358,49 @@ public class Unit {
 	}
 
 	public void removeAbility(Ability ability) {
-		abilities.remove(ability);
+		if (abilities.remove(ability) && abilityRegistry != null) {
+			abilityRegistry.unregister(this, ability);
+		}
+	}
+
+	/**
+	 * @return the unit's keyword abilities, as Keywords bits
+	 */
+	@JsonIgnore
+	public int getKeywordFlags() {
+		return keywords;
+	}
+
+	/**
+	 * @param keywords the unit's keyword abilities, as Keywords bits
+	 */
+	@JsonIgnore
+	public void setKeywordFlags(int keywords) {
+		this.keywords = keywords;
+		if (tile != null && tile.getUnit() == this) {
+			tile.setUnit(this); // so the board knows whether the unit provokes
+		}
+	}
+
+	/**
+	 * @param keyword one of the Keywords
+	 * @return true if the unit has it
+	 */
+	public boolean hasKeyword(int keyword) {
+		return (keywords & keyword) != 0;
+	}
+
+	/**
+	 * Moves the unit's abilities into the registry of the game it has joined, or out of
+	 * the one it was in when it leaves (null).
+	 * @param abilityRegistry
+	 */
+	public void setAbilityRegistry(AbilityRegistry abilityRegistry) {
+		if (this.abilityRegistry != null) this.abilityRegistry.unregister(this);
+		this.abilityRegistry = abilityRegistry;
+		if (abilityRegistry != null) {
+			for (Ability ability : abilities) abilityRegistry.register(this, ability);
+		}
 	}
 
 	/**
@@ -2,18 +2,26 @@ package utils;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import structures.basic.Card;
 import structures.basic.EffectAnimation;
+import structures.basic.Position;
 import structures.basic.Tile;
 import structures.basic.Unit;
 
 /**
  * This class contains methods for producing basic objects from configuration files
  * 
+ * Each configuration file is only read once per process. The object loaded from it is
+ * kept as a template, and every call hands out a copy of that template. The parts that
+ * never change during a game (animation sets, image corrections, card art, tile textures,
+ * effects) are shared between the copies, so they must be treated as read-only.
+ * 
  * @author Dr. Richard McCreadie
  *
  */
@@ -22,6 +30,12 @@ public class BasicObjectBuilders {
 	@JsonIgnore
 	protected static ObjectMapper mapper = new ObjectMapper(); // Jackson Java Object Serializer, is used to read java objects from a file
 
+	// templates, keyed by configuration file
+	private static final Map<String, Card> cardTemplates = new ConcurrentHashMap<String, Card>();
+	private static final Map<String, Unit> unitTemplates = new ConcurrentHashMap<String, Unit>();
+	private static final Map<String, EffectAnimation> effects = new ConcurrentHashMap<String, EffectAnimation>();
+	private static final Map<String, Tile> tileTemplates = new ConcurrentHashMap<String, Tile>();
+
 	/**
 	 * This class produces a Card object (or anything that extends Card) given a configuration
 	 * file. Configuration files can be found in the conf/gameconfs directory. The card should
@@ -36,8 +50,33 @@ public class BasicObjectBuilders {
 	 * @return
 	 */
 	public static Card loadCard(String configurationFile, int id, Class<? extends Card> classtype) {
+		Card template = cardTemplates.computeIfAbsent(configurationFile, BasicObjectBuilders::readCard);
+		if (template == null) return null;
+
+		try {
+			Card card = classtype.getDeclaredConstructor().newInstance();
+			card.setCardname(template.getCardname());
+			card.setManacost(template.getManacost());
+			card.setMiniCard(template.getMiniCard());
+			card.setBigCard(template.getBigCard());
+			card.setIsCreature(template.isCreature());
+			card.setUnitConfig(template.getUnitConfig());
+			card.setEffect(template.getEffect());
+			card.setKeywords(template.getKeywords());
+			card.setAttack(template.getAttack());
+			card.setHealth(template.getHealth());
+			card.setId(id);
+			return card;
+		} catch (Exception e) {
+			e.printStackTrace();
+
+		}
+		return null;
+	}
+
+	private static Card readCard(String configurationFile) {
 		try {
-			Card card = mapper.readValue(new File(configurationFile), classtype);
+			Card card = mapper.readValue(new File(configurationFile), Card.class);
 
 			// If the card is a creature, add its idle animation as the card animation
 			if (card.isCreature()) {
@@ -46,7 +85,6 @@ public class BasicObjectBuilders {
 				card.getMiniCard().setAnimationFrames(idleAnimation.toArray(new String[idleAnimation.size()]));
 			}
 
-			card.setId(id);
 			return card;
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -62,6 +100,10 @@ public class BasicObjectBuilders {
 	 * @return
 	 */
 	public static EffectAnimation loadEffect(String configurationFile) {
+		return effects.computeIfAbsent(configurationFile, BasicObjectBuilders::readEffect);
+	}
+
+	private static EffectAnimation readEffect(String configurationFile) {
 		try {
 			EffectAnimation effect = mapper.readValue(new File(configurationFile), EffectAnimation.class);
 			return effect;
@@ -81,115 +123,34 @@ public class BasicObjectBuilders {
 	 * @return
 	 */
 	public static Unit loadUnit(String configFile, int id,  Class<? extends Unit> classType) {
+		Unit template = unitTemplates.computeIfAbsent(configFile, BasicObjectBuilders::readUnit);
+		if (template == null) return null;
 
 		try {
-			Unit unit = mapper.readValue(new File(configFile), classType);
-
-			// identify start and end frames automatically based on file names
-			// IDLE
-			{
-				int startframe = 0; int endframe = 0; int index = 0; boolean inAnimation = false;
-				for (String framename: unit.getAnimations().getAllFrames()) {
-					if (framename.contains("_idle_")) {
-						if (startframe==0) { startframe=index; inAnimation=true;}
-					} else {
-						if (inAnimation) { endframe=index-1; break;}
-					}
-					index++;
-				}
-				if (endframe==0) endframe=index;
-				int[] frameIndexes = {startframe, endframe};
-				if (inAnimation) unit.getAnimations().getIdle().setFrameStartEndIndices(frameIndexes);
-			}
-
-			// DEATH
-			{
-				int startframe = 0; int endframe = 0; int index = 0; boolean inAnimation = false;
-				for (String framename: unit.getAnimations().getAllFrames()) {
-					if (framename.contains("_death_")) {
-						if (startframe==0) { startframe=index; inAnimation=true;}
-					} else {
-						if (inAnimation) { endframe=index-1; break;}
-					}
-					index++;
-				}
-				if (endframe==0) endframe=index;
-				int[] frameIndexes = {startframe, endframe};
-				if (inAnimation) unit.getAnimations().getDeath().setFrameStartEndIndices(frameIndexes);
-			}
-
-			// ATTACK
-			{
-				int startframe = 0; int endframe = 0; int index = 0; boolean inAnimation = false;
-				for (String framename: unit.getAnimations().getAllFrames()) {
-					if (framename.contains("_attack_")) {
-						if (startframe==0) { startframe=index; inAnimation=true;}
-					} else {
-						if (inAnimation) { endframe=index-1; break;}
-					}
-					index++;
-				}
-				if (endframe==0) endframe=index;
-				int[] frameIndexes = {startframe, endframe};
-				if (inAnimation) unit.getAnimations().getAttack().setFrameStartEndIndices(frameIndexes);
-			}
-
-			// MOVE
-			{
-				int startframe = 0; int endframe = 0; int index = 0; boolean inAnimation = false;
-				for (String framename: unit.getAnimations().getAllFrames()) {
-					if (framename.contains("_run_")) {
-						if (startframe==0) { startframe=index; inAnimation=true;}
-					} else {
-						if (inAnimation) { endframe=index-1; break;}
-					}
-					index++;
-				}
-				if (endframe==0) endframe=index;
-				int[] frameIndexes = {startframe, endframe};
-				if (inAnimation) unit.getAnimations().getMove().setFrameStartEndIndices(frameIndexes);
-			}
-
-			// CHANNEL
-			{
-				int startframe = 0; int endframe = 0; int index = 0; boolean inAnimation = false;
-				for (String framename: unit.getAnimations().getAllFrames()) {
-					if (framename.contains("_castloop_")) {
-						if (startframe==0) { startframe=index; inAnimation=true;}
-					} else {
-						if (inAnimation) { endframe=index-1; break;}
-					}
-					index++;
-				}
-				if (endframe==0) endframe=index;
-				int[] frameIndexes = {startframe, endframe};
-				if (inAnimation) unit.getAnimations().getChannel().setFrameStartEndIndices(frameIndexes);
-			}
+			Unit unit = classType.getDeclaredConstructor().newInstance();
+			unit.setAnimation(template.getAnimation());
+			Position position = template.getPosition();
+			if (position != null) unit.setPosition(new Position(position.getXpos(), position.getYpos(), position.getTilex(), position.getTiley()));
+			unit.setAnimations(template.getAnimations());
+			unit.setCorrection(template.getCorrection());
+			unit.setId(id);
+			return unit;
+		} catch (Exception e) {
+			e.printStackTrace();
 
-			// HIT
-			{
-				int startframe = 0; int endframe = 0; int index = 0; boolean inAnimation = false;
-				for (String framename: unit.getAnimations().getAllFrames()) {
-					if (framename.contains("_hit_")) {
-						if (startframe==0) { startframe=index; inAnimation=true;}
-					} else {
-						if (inAnimation) { endframe=index-1; break;}
-					}
-					index++;
-				}
-				if (endframe==0) endframe=index;
-				int[] frameIndexes = {startframe, endframe};
-				if (inAnimation) unit.getAnimations().getChannel().setFrameStartEndIndices(frameIndexes);
-			}
+		}
+		return null;
+	}
 
-			// add full address to animation frames
-			for (int i =0; i<unit.getAnimations().getAllFrames().size(); i++) {
-				unit.getAnimations().getAllFrames().set(i, unit.getAnimations().getFrameDIR()+unit.getAnimations().getAllFrames().get(i));
-			}
+	private static Unit readUnit(String configFile) {
 
+		try {
+			Unit unit = mapper.readValue(new File(configFile), Unit.class);
 
+			// identify start and end frames automatically based on file names, and add
+			// the full address to the animation frames
+			UnitFrameIndexer.index(unit.getAnimations());
 
-			unit.setId(id);
 			return unit;
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -210,7 +171,8 @@ public class BasicObjectBuilders {
 		int gridTopLeftx = 410;
 		int gridTopLefty = 280;
 
-		Tile tile = Tile.constructTile(StaticConfFiles.tileConf);
+		Tile template = tileTemplates.computeIfAbsent(StaticConfFiles.tileConf, Tile::constructTile);
+		Tile tile = new Tile(template.getTileTextures(), 0, 0, template.getWidth(), template.getHeight(), 0, 0);
 		tile.setXpos((tile.getWidth()*x)+(gridmargin*x)+gridTopLeftx);
 		tile.setYpos((tile.getHeight()*y)+(gridmargin*y)+gridTopLefty);
 		tile.setTilex(x);
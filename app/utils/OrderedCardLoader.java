@@ -15,6 +15,8 @@ import structures.basic.Card;
 public class OrderedCardLoader {
 
 	public static String cardsDIR = "conf/gameconfs/cards/";
+
+	private static String[] cardFiles; // directory listing, read once
 	
 	/**
 	 * Returns all of the cards in the human player's deck in order
@@ -26,7 +28,7 @@ public class OrderedCardLoader {
 		
 		int cardID = 1;
 		for (int i =0; i<copies; i++) {
-			for (String filename : new File(cardsDIR).list()) {
+			for (String filename : cardFiles()) {
 				if (filename.startsWith("1_")) {
 					// this is a deck 1 card
 					cardsInDeck.add(BasicObjectBuilders.loadCard(cardsDIR+filename, cardID, Card.class));
@@ -49,7 +51,7 @@ public class OrderedCardLoader {
 		
 		int cardID = 1;
 		for (int i =0; i<copies; i++) {
-			for (String filename : new File(cardsDIR).list()) {
+			for (String filename : cardFiles()) {
 				if (filename.startsWith("2_")) {
 					// this is a deck 2 card
 					cardsInDeck.add(BasicObjectBuilders.loadCard(cardsDIR+filename, cardID, Card.class));
@@ -60,4 +62,9 @@ public class OrderedCardLoader {
 		return cardsInDeck;
 	}
 	
+	private static synchronized String[] cardFiles() {
+		if (cardFiles == null) cardFiles = new File(cardsDIR).list();
+		return cardFiles;
+	}
+
 }
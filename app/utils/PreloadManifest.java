@@ -0,0 +1,69 @@
+package utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The list of images the front-end pre-loads (see ImageListForPreLoad). It is the same
+ * for every game, so it is built once per process, and the front-end fetches it over
+ * HTTP rather than it being sent down every websocket. The version is a hash of the
+ * list, which lets browsers cache it for good and still pick up a changed list.
+ *
+ */
+public class PreloadManifest {
+
+	private static ObjectMapper mapper = new ObjectMapper(); // Jackson Java Object Serializer, is used to turn the list into JSON
+
+	private final byte[] json;
+	private final String version;
+
+	private PreloadManifest(byte[] json, String version) {
+		this.json = json;
+		this.version = version;
+	}
+
+	// built the first time it is asked for, the JVM makes sure that happens only once
+	private static class Holder {
+		static final PreloadManifest manifest = build();
+	}
+
+	/**
+	 * @return the manifest, building it if this is the first call
+	 */
+	public static PreloadManifest get() {
+		return Holder.manifest;
+	}
+
+	/**
+	 * @return the image list as a JSON array
+	 */
+	public byte[] getJson() {
+		return json;
+	}
+
+	/**
+	 * @return a hash of the image list, which changes whenever the list does
+	 */
+	public String getVersion() {
+		return version;
+	}
+
+	private static PreloadManifest build() {
+		try {
+			// sorted, so the same images always give the same version
+			Set<String> images = new TreeSet<String>(ImageListForPreLoad.getImageListForPreLoad());
+			byte[] json = mapper.writeValueAsBytes(images);
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+			StringBuilder version = new StringBuilder();
+			for (int i = 0; i < 8; i++) version.append(String.format("%02x", digest[i]));
+			return new PreloadManifest(json, version.toString());
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return new PreloadManifest("[]".getBytes(StandardCharsets.UTF_8), "empty");
+	}
+}
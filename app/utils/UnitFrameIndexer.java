@@ -0,0 +1,143 @@
+package utils;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import structures.basic.UnitAnimation;
+import structures.basic.UnitAnimationSet;
+
+/**
+ * Works out where each animation of a unit starts and ends in its frame list, based on
+ * the frame file names (e.g. f1_general_idle_000.png is part of the idle animation).
+ * All six animations are found in one pass over the frames, reading the animation name
+ * out of each file name once rather than searching every name for every animation.
+ *
+ * The ranges are the same as the ones the original per-animation scans in
+ * BasicObjectBuilders produced, quirks included, as the front-end is tuned to them.
+ * The one difference is that the hit frames now set the hit animation; the old scan
+ * wrote them over the channel animation by mistake.
+ */
+public class UnitFrameIndexer {
+
+	// animation names as they appear in the frame file names, indexed by the constants below
+	static final String[] TAGS = {"idle", "death", "attack", "run", "castloop", "hit"};
+
+	public static final int IDLE = 0;
+	public static final int DEATH = 1;
+	public static final int ATTACK = 2;
+	public static final int MOVE = 3;
+	public static final int CHANNEL = 4;
+	public static final int HIT = 5;
+
+	/**
+	 * Sets the frame indices of every animation in the set that has frames, and replaces
+	 * the frame names with their full addresses (frameDIR + name).
+	 * @param animations
+	 */
+	public static void index(UnitAnimationSet animations) {
+		List<String> frames = animations.getAllFrames();
+		int[][] ranges = ranges(frames);
+		setRange(animations.getIdle(), ranges[IDLE]);
+		setRange(animations.getDeath(), ranges[DEATH]);
+		setRange(animations.getAttack(), ranges[ATTACK]);
+		setRange(animations.getMove(), ranges[MOVE]);
+		setRange(animations.getChannel(), ranges[CHANNEL]);
+		setRange(animations.getHit(), ranges[HIT]);
+		animations.setAllFrames(new FramePaths(animations.getFrameDIR(), frames));
+	}
+
+	/**
+	 * @param frames frame file names
+	 * @return the {start, end} frame indices of each animation (see the constants), or
+	 * null for the animations that have no frames
+	 */
+	public static int[][] ranges(List<String> frames) {
+		int[] start = new int[TAGS.length];
+		int[] end = new int[TAGS.length];
+		boolean[] inAnimation = new boolean[TAGS.length];
+		boolean[] finished = new boolean[TAGS.length];
+
+		int index = 0;
+		for (String frame : frames) {
+			int tag = tagOf(frame);
+			for (int t = 0; t < TAGS.length; t++) {
+				if (finished[t]) continue;
+				if (t == tag) {
+					if (start[t] == 0) { start[t] = index; inAnimation[t] = true; }
+				} else if (inAnimation[t]) {
+					// only the first run of frames counts
+					end[t] = index - 1;
+					finished[t] = true;
+					if (end[t] == 0) end[t] = index;
+				}
+			}
+			index++;
+		}
+
+		int[][] ranges = new int[TAGS.length][];
+		for (int t = 0; t < TAGS.length; t++) {
+			if (!inAnimation[t]) continue;
+			ranges[t] = new int[] {start[t], finished[t] ? end[t] : index};
+		}
+		return ranges;
+	}
+
+	/**
+	 * @param frame
+	 * @return the animation (see the constants) a frame belongs to, or -1 if none
+	 */
+	static int tagOf(String frame) {
+		// names end in _<animation>_<number>.<extension>
+		int last = frame.lastIndexOf('_');
+		int first = last > 0 ? frame.lastIndexOf('_', last - 1) : -1;
+		if (first < 0) {
+			// not named that way, fall back to searching the whole name
+			for (int t = 0; t < TAGS.length; t++) {
+				if (frame.contains("_" + TAGS[t] + "_")) return t;
+			}
+			return -1;
+		}
+		int length = last - first - 1;
+		for (int t = 0; t < TAGS.length; t++) {
+			if (TAGS[t].length() == length && frame.regionMatches(first + 1, TAGS[t], 0, length)) return t;
+		}
+		return -1;
+	}
+
+	private static void setRange(UnitAnimation animation, int[] range) {
+		if (animation != null && range != null) animation.setFrameStartEndIndices(range);
+	}
+
+	/**
+	 * The full addresses of a unit's frames. They all live in the same directory, so
+	 * only the directory and the file names are stored, and an address is put together
+	 * the first time its frame is read and kept from then on; most frames of most units
+	 * are never read. Read-only, as the list is shared by every copy of a unit.
+	 */
+	static class FramePaths extends AbstractList<String> implements RandomAccess {
+
+		private final String prefix;
+		private final String[] names;
+		private final String[] paths; // the addresses put together so far
+
+		FramePaths(String prefix, List<String> names) {
+			this.prefix = prefix == null ? "" : prefix;
+			this.names = names.toArray(new String[names.size()]);
+			this.paths = new String[this.names.length];
+		}
+
+		@Override
+		public String get(int index) {
+			// two threads may both put the same address together; either copy will do
+			String path = paths[index];
+			if (path == null) paths[index] = path = prefix.concat(names[index]);
+			return path;
+		}
+
+		@Override
+		public int size() {
+			return names.length;
+		}
+	}
+}
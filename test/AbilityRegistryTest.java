@@ -0,0 +1,125 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import akka.actor.ActorRef;
+import card.abilities.AbilityRegistry.Trigger;
+import card.abilities.Artifact;
+import card.abilities.Deathwatch;
+import card.abilities.OnHit;
+import engine.HeadlessEngine;
+import managers.UnitManager;
+import structures.GameState;
+import structures.basic.Unit;
+import utils.StaticConfFiles;
+
+/**
+ * Checks that abilities are registered as units join and leave a game, and that
+ * triggers reach the abilities registered when they fire.
+ */
+public class AbilityRegistryTest {
+
+	@Test
+	public void deathwatchSeesEveryDeath() {
+		HeadlessEngine engine = new HeadlessEngine();
+		GameState gameState = engine.getGameState();
+		engine.start();
+		List<Unit> deaths = new ArrayList<Unit>();
+
+		engine.run(() -> {
+			Unit watcher = UnitManager.summonUnitDirectly(null, gameState, StaticConfFiles.wraithling, 1, 1, gameState.board[4][0]);
+			// each death summons another watcher, which must not see the death that summoned it
+			watcher.addAbility(new Deathwatch() {
+				@Override
+				public boolean onUnitDeath(ActorRef out, GameState gameState, Unit unit, Unit deadUnit) {
+					deaths.add(deadUnit);
+					Unit next = UnitManager.summonUnitDirectly(out, gameState, StaticConfFiles.wraithling, 1, 1, gameState.board[4][4]);
+					next.addAbility(new Deathwatch() {
+						@Override
+						public boolean onUnitDeath(ActorRef out, GameState gameState, Unit unit, Unit deadUnit) {
+							deaths.add(deadUnit);
+							return true;
+						}
+					});
+					return true;
+				}
+			});
+			assertEquals(1, gameState.abilities.count(Trigger.DEATHWATCH));
+
+			Unit victim = UnitManager.summonUnitDirectly(null, gameState, StaticConfFiles.wraithling, 1, 1, gameState.board[5][2]);
+			UnitManager.removeUnit(null, gameState, victim);
+			assertEquals(1, deaths.size());
+			assertEquals(2, gameState.abilities.count(Trigger.DEATHWATCH));
+
+			// the watcher's own death is seen by both watchers, and then it leaves the registry
+			UnitManager.removeUnit(null, gameState, watcher);
+			assertEquals(3, deaths.size());
+			assertFalse(gameState.abilities.has(watcher, Trigger.DEATHWATCH));
+		});
+	}
+
+	@Test
+	public void abilitiesFollowTheirUnit() {
+		HeadlessEngine engine = new HeadlessEngine();
+		GameState gameState = engine.getGameState();
+		engine.start();
+		Unit avatar = gameState.player1Avatar;
+
+		Horn horn = new Horn();
+		avatar.addAbility(horn);
+		assertTrue(gameState.abilities.has(avatar, Trigger.ARTIFACT));
+		assertTrue(gameState.abilities.has(avatar, Trigger.ON_HIT));
+		assertFalse(gameState.abilities.has(gameState.player2Avatar, Trigger.ARTIFACT));
+
+		assertTrue(gameState.abilities.unitHurt(null, gameState, avatar));
+		assertFalse(gameState.abilities.unitHurt(null, gameState, gameState.player2Avatar));
+		assertEquals(1, horn.hurt);
+
+		avatar.removeAbility(horn);
+		assertEquals(0, gameState.abilities.count(Trigger.ARTIFACT));
+		assertEquals(0, gameState.abilities.count(Trigger.ON_HIT));
+
+		// a unit out of the game keeps its abilities, and brings them back when it returns
+		avatar.addAbility(horn);
+		gameState.removeUnit(avatar);
+		assertEquals(0, gameState.abilities.count(Trigger.ARTIFACT));
+		gameState.addUnit(avatar);
+		assertTrue(gameState.abilities.has(avatar, Trigger.ARTIFACT));
+	}
+
+	private static class Horn implements Artifact, OnHit {
+
+		int hurt = 0;
+
+		@Override
+		public String getName() {
+			return "Horn";
+		}
+
+		@Override
+		public boolean canActivate(GameState gameState, Unit unit) {
+			return true;
+		}
+
+		@Override
+		public boolean executeAbility(ActorRef out, GameState gameState, Unit unit, structures.basic.Tile targetTile) {
+			return true;
+		}
+
+		@Override
+		public boolean onHurt(ActorRef out, GameState gameState) {
+			hurt++;
+			return true;
+		}
+
+		@Override
+		public boolean onHit(ActorRef out, GameState gameState) {
+			return true;
+		}
+	}
+}
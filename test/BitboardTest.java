@@ -0,0 +1,80 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import engine.HeadlessEngine;
+import managers.AIManager;
+import structures.Bitboard;
+import structures.GameState;
+import structures.basic.Tile;
+import structures.basic.Unit;
+
+/**
+ * Checks the Bitboard masks against the direction tables they replace, and that the
+ * bitboard of a game follows the units on its tiles.
+ */
+public class BitboardTest {
+
+	private static final int[][] ADJACENT = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 }, { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 } };
+	private static final int[][] TWO_STEPS = { { 2, 0 }, { -2, 0 }, { 0, 2 }, { 0, -2 } };
+
+	@Test
+	public void masksMatchDirectionTables() {
+		for (int x = 0; x < 9; x++) {
+			for (int y = 0; y < 5; y++) {
+				long adjacent = cells(x, y, ADJACENT);
+				int cell = Bitboard.cellOf(x, y);
+				assertEquals(adjacent, Bitboard.neighbours(cell));
+				assertEquals(adjacent | cells(x, y, TWO_STEPS), Bitboard.moves(cell));
+				assertEquals(adjacent, Bitboard.spread(1L << cell));
+			}
+		}
+	}
+
+	@Test
+	public void followsTheUnitsOnTheBoard() {
+		HeadlessEngine engine = new HeadlessEngine();
+		GameState gameState = engine.getGameState();
+		gameState.setSeed(3);
+		engine.start();
+		check(gameState);
+
+		// with the planner, player 2 also summons units and plays spells
+		int budget = AIManager.getPlannerBudget();
+		AIManager.setPlannerBudget(5);
+		try {
+			for (int turn = 0; turn < 10 && !gameState.player1Avatar.isDead() && !gameState.player2Avatar.isDead(); turn++) {
+				engine.run(() -> AIManager.playTurn(null, gameState, 1));
+				check(gameState);
+				engine.endTurn();
+				check(gameState);
+			}
+		} finally {
+			AIManager.setPlannerBudget(budget);
+		}
+	}
+
+	private static long cells(int x, int y, int[][] directions) {
+		long cells = 0;
+		for (int[] direction : directions) {
+			int nx = x + direction[0];
+			int ny = y + direction[1];
+			if (nx >= 0 && nx < 9 && ny >= 0 && ny < 5) cells |= 1L << Bitboard.cellOf(nx, ny);
+		}
+		return cells;
+	}
+
+	private static void check(GameState gameState) {
+		long[] units = new long[3];
+		for (int x = 0; x < 9; x++) {
+			for (int y = 0; y < 5; y++) {
+				Tile tile = gameState.board[x][y];
+				Unit unit = tile.getUnit();
+				if (unit != null) units[unit.getOwner()] |= 1L << Bitboard.cellOf(x, y);
+			}
+		}
+		assertEquals(units[1], gameState.bitboard.units(1));
+		assertEquals(units[2], gameState.bitboard.units(2));
+		assertEquals(units[0] | units[1] | units[2], gameState.bitboard.occupied());
+	}
+}
@@ -0,0 +1,111 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import commands.BasicCommands;
+import commands.CommandSink;
+import engine.HeadlessEngine;
+import structures.GameState;
+
+/**
+ * Plays a few clicks through the HeadlessEngine and checks that the tile highlights the
+ * front-end is sent match the game, without sending tiles whose mode did not change.
+ */
+public class BoardRenderTest {
+
+	@Test
+	public void sendsOnlyChangedTilesInOneCommand() {
+		BoardSink sink = new BoardSink(BasicCommands.PROTOCOL_TILE_BATCH);
+		play(sink);
+		assertEquals(0, sink.drawTileCount);
+		assertTrue(sink.drawTilesCount > 0);
+	}
+
+	@Test
+	public void legacyFrontEndsStillGetDrawTile() {
+		BoardSink sink = new BoardSink(BasicCommands.PROTOCOL_LEGACY);
+		play(sink);
+		assertEquals(0, sink.drawTilesCount);
+		assertTrue(sink.drawTileCount > 0);
+	}
+
+	private static void play(BoardSink sink) {
+		HeadlessEngine engine = new HeadlessEngine(sink);
+		GameState gameState = engine.getGameState();
+
+		engine.start();
+		sink.check(gameState);
+		assertEquals(45, sink.modes.size());
+
+		engine.endTurn(); // the avatar can act from turn 2
+		sink.check(gameState);
+		engine.clickTile(1, 2); // select the avatar, highlighting where it can go
+		sink.check(gameState);
+		engine.clickTile(2, 2); // and move it
+		sink.check(gameState);
+		engine.clickCard(1); // highlight where the card can be played
+		sink.check(gameState);
+		engine.clickTile(8, 0); // not one of them, so back to the units that can act
+		sink.check(gameState);
+		engine.endTurn();
+		sink.check(gameState);
+	}
+
+	// Keeps track of the highlight modes the front-end would show
+	private static class BoardSink extends CommandSink {
+
+		private final int protocolVersion;
+		final Map<String, Integer> modes = new HashMap<String, Integer>();
+		int drawTileCount = 0;
+		int drawTilesCount = 0;
+
+		BoardSink(int protocolVersion) {
+			this.protocolVersion = protocolVersion;
+		}
+
+		@Override
+		public int getProtocolVersion() {
+			return protocolVersion;
+		}
+
+		@Override
+		public void send(JsonNode message) {
+			String type = message.get("messagetype").asText();
+			if (type.equals("drawTile")) {
+				drawTileCount++;
+				draw(message.get("tile").get("tilex").asInt(), message.get("tile").get("tiley").asInt(), message.get("mode").asInt());
+			} else if (type.equals("drawTiles")) {
+				drawTilesCount++;
+				for (JsonNode change : message.get("tiles")) {
+					String key = change.get("tilex").asInt() + "," + change.get("tiley").asInt();
+					// the full tile comes with the first change of a tile only
+					assertEquals(!modes.containsKey(key), change.has("tile"));
+					draw(change.get("tilex").asInt(), change.get("tiley").asInt(), change.get("mode").asInt());
+				}
+			}
+		}
+
+		@Override
+		public void delay(int millis) {}
+
+		private void draw(int tilex, int tiley, int mode) {
+			Integer previous = modes.put(tilex + "," + tiley, mode);
+			assertNotEquals("tile " + tilex + "," + tiley + " sent again in the same mode", Integer.valueOf(mode), previous);
+		}
+
+		void check(GameState gameState) {
+			for (int x = 0; x < 9; x++) {
+				for (int y = 0; y < 5; y++) {
+					assertEquals(Integer.valueOf(gameState.board[x][y].getHighlightStatus()), modes.get(x + "," + y));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,154 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import actors.GameActor;
+import actors.GameSession;
+import actors.GameSharding;
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.CoordinatedShutdown;
+import akka.actor.Props;
+import akka.cluster.Cluster;
+import akka.cluster.Member;
+import akka.cluster.MemberStatus;
+import commands.CommandChannel;
+import journal.JournalReplayer;
+import journal.JournalWriter;
+import play.libs.Json;
+
+/**
+ * Runs a cluster of three servers (conf/cluster.conf) in one JVM: one that only takes
+ * websockets, and two that run games. A game is played from the first, its server
+ * leaves, and the game carries on on the other one. Every message is serialized, as if
+ * the servers were separate JVMs.
+ */
+public class ClusterShardingTest {
+
+	@Test
+	public void gameMovesWhenItsServerLeaves() throws Exception {
+		Path journals = Files.createTempDirectory("journals");
+		List<ActorSystem> systems = new ArrayList<ActorSystem>();
+		try {
+			ActorSystem first = node(systems, journals, "game");
+			Cluster.get(first).join(Cluster.get(first).selfAddress());
+			ActorSystem edge = node(systems, journals);
+			Cluster.get(edge).join(Cluster.get(first).selfAddress());
+			waitForMembers(edge, 2);
+			start(first, journals);
+			ActorRef edgeGames = start(edge, journals);
+
+			// a game, played through the server that does not run games
+			BlockingQueue<JsonNode> page = new LinkedBlockingQueue<JsonNode>();
+			ActorRef socket = edge.actorOf(Props.create(Socket.class, page));
+			ActorRef session = edge.actorOf(Props.create(GameSession.class, socket, edgeGames, null));
+			String gameId = take(page, "actorReady").path("gameId").asText();
+			session.tell(Json.newObject().put("messagetype", "initalize"), ActorRef.noSender());
+			take(page, "setPlayer1Mana");
+
+			// a second game server joins, and the first one leaves: its shards move over
+			ActorSystem second = node(systems, journals, "game");
+			Cluster.get(second).join(Cluster.get(first).selfAddress());
+			waitForMembers(edge, 3);
+			start(second, journals);
+			long resumed = GameActor.metrics().path("resumed").asLong();
+			CoordinatedShutdown.get(first).runAll(CoordinatedShutdown.clusterLeavingReason())
+					.toCompletableFuture().get(60, TimeUnit.SECONDS);
+
+			// the page carries on, with the game brought back from its journal
+			session.tell(Json.newObject().put("messagetype", "endturnclicked"), ActorRef.noSender());
+			JsonNode command = take(page, "setPlayer1Mana", "actorReady", "fullState");
+			assertEquals("setPlayer1Mana", command.path("messagetype").asText());
+			assertEquals(resumed + 1, GameActor.metrics().path("resumed").asLong());
+			JournalReplayer replayer = JournalReplayer.open(JournalWriter.fileOf(journals, UUID.fromString(gameId)));
+			assertEquals(2, replayer.getEventCount());
+			assertEquals(2, replayer.replay().getGameState().currentTurn);
+		} finally {
+			for (ActorSystem system : systems) system.terminate();
+		}
+	}
+
+	// A server of the cluster, on a port of its own
+	private static ActorSystem node(List<ActorSystem> systems, Path journals, String... roles) {
+		Config config = ConfigFactory.parseString("game.cluster.port = 0\n"
+				+ "game.cluster.role = game\n"
+				+ "akka.cluster.seed-nodes = []\n"
+				+ "akka.actor.serialize-messages = on\n"
+				+ "akka.loggers = [\"akka.event.Logging$DefaultLogger\"]\n"
+				+ "akka.logging-filter = \"akka.event.DefaultLoggingFilter\"\n"
+				+ "akka.loglevel = WARNING")
+				.withFallback(ConfigFactory.parseMap(Collections.singletonMap("akka.cluster.roles", Arrays.asList(roles))))
+				.withFallback(ConfigFactory.parseFile(new File("conf/cluster.conf")))
+				.withFallback(ConfigFactory.defaultReference())
+				.resolve();
+		ActorSystem system = ActorSystem.create("cluster", config);
+		systems.add(system);
+		return system;
+	}
+
+	private static ActorRef start(ActorSystem system, Path journals) {
+		Props gameProps = Props.create(GameActor.class, CommandChannel.Batching.ON, journals.toString(),
+				Duration.ofMinutes(1), Duration.ofMinutes(1));
+		return GameSharding.start(system, gameProps, system.settings().config());
+	}
+
+	private static void waitForMembers(ActorSystem system, int count) throws InterruptedException {
+		for (int i = 0; i < 300 && up(system) < count; i++) Thread.sleep(100);
+		assertEquals(count, up(system));
+	}
+
+	private static int up(ActorSystem system) {
+		int up = 0;
+		for (Member member : Cluster.get(system).state().getMembers()) {
+			if (member.status() == MemberStatus.up()) up++;
+		}
+		return up;
+	}
+
+	// The next command of one of the given types, looking inside batches
+	private static JsonNode take(BlockingQueue<JsonNode> received, String... types) throws InterruptedException {
+		List<String> wanted = Arrays.asList(types);
+		while (true) {
+			JsonNode message = received.poll(30, TimeUnit.SECONDS);
+			assertNotNull("no " + wanted + " command", message);
+			if (wanted.contains(message.path("messagetype").asText())) return message;
+			for (JsonNode command : message.path("commands")) {
+				if (wanted.contains(command.path("messagetype").asText())) return command;
+			}
+		}
+	}
+
+	// Stands in for the websocket, keeping what it is sent
+	public static class Socket extends AbstractActor {
+
+		private final BlockingQueue<JsonNode> received;
+
+		public Socket(BlockingQueue<JsonNode> received) {
+			this.received = received;
+		}
+
+		@Override
+		public Receive createReceive() {
+			return receiveBuilder().match(JsonNode.class, received::add).build();
+		}
+	}
+}
@@ -0,0 +1,59 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import commands.BasicCommands;
+import commands.CheckMessageIsNotNullOnTell;
+import commands.CommandPayloads;
+import structures.basic.Card;
+import structures.basic.EffectAnimation;
+import structures.basic.Player;
+import structures.basic.Tile;
+import structures.basic.Unit;
+import utils.BasicObjectBuilders;
+import utils.StaticConfFiles;
+
+/**
+ * Checks that the payloads built by CommandPayloads are the same JSON that the
+ * old serialize-then-parse round trip produced, so the front-end sees no difference.
+ */
+public class CommandPayloadsTest {
+
+	private ObjectMapper mapper = new ObjectMapper();
+
+	private JsonNode roundTrip(Object value) throws Exception {
+		return mapper.readTree(mapper.writeValueAsString(value));
+	}
+
+	@Test
+	public void payloadsMatchJacksonOutput() throws Exception {
+
+		BasicCommands.altTell = new CheckMessageIsNotNullOnTell(); // no front-end in this test
+
+		Tile tile = BasicObjectBuilders.loadTile(3, 2);
+		assertEquals(roundTrip(tile), CommandPayloads.tile(tile));
+
+		Unit unit = BasicObjectBuilders.loadUnit(StaticConfFiles.wraithling, 7, Unit.class);
+		unit.setPositionByTile(tile);
+		unit.setOwner(1);
+		unit.setHealth(null, 3);
+		unit.setAttack(null, 1);
+		assertEquals(roundTrip(unit), CommandPayloads.unit(unit));
+
+		// the cached parts of the unit must not leak stale values into later messages
+		unit.setHealth(null, 0);
+		assertEquals(roundTrip(unit), CommandPayloads.unit(unit));
+
+		Card card = BasicObjectBuilders.loadCard(StaticConfFiles.p1_badomen, 1, Card.class);
+		assertEquals(roundTrip(card), CommandPayloads.card(card));
+
+		EffectAnimation effect = BasicObjectBuilders.loadEffect(StaticConfFiles.f1_buff);
+		assertEquals(roundTrip(effect), CommandPayloads.effect(effect));
+
+		Player player = new Player(17, 4);
+		assertEquals(roundTrip(player), CommandPayloads.player(player));
+	}
+}
@@ -0,0 +1,64 @@
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import ai.GameSnapshot;
+import engine.HeadlessEngine;
+import structures.GameState;
+
+/**
+ * Plays random lines on GameSnapshots: made moves must undo back to the position they
+ * started from, and end up where applied moves do.
+ */
+public class GameSnapshotTest {
+
+	@Test
+	public void undoRestoresThePosition() {
+		GameSnapshot start = GameSnapshot.of(startedGame().getGameState());
+		Random random = new Random(11);
+		int[] actions = new int[GameSnapshot.MAX_ACTIONS];
+
+		for (int line = 0; line < 200; line++) {
+			GameSnapshot made = new GameSnapshot();
+			made.copyFrom(start);
+			GameSnapshot applied = new GameSnapshot();
+			applied.copyFrom(start);
+
+			int length = 1 + random.nextInt(60);
+			for (int i = 0; i < length && made.getWinner() == 0; i++) {
+				int count = made.legalActions(actions);
+				int action = actions[random.nextInt(count)];
+				made.make(action);
+				applied.apply(action);
+				assertTrue(made.sameAs(applied));
+			}
+
+			while (made.getMadeCount() > 0) made.undo();
+			assertTrue(made.sameAs(start));
+		}
+	}
+
+	@Test
+	public void matchesTheGameItWasTakenFrom() {
+		HeadlessEngine engine = startedGame();
+		GameState gameState = engine.getGameState();
+		GameSnapshot snapshot = GameSnapshot.of(gameState);
+		assertTrue(snapshot.matches(gameState));
+
+		engine.run(() -> gameState.player2Avatar.setHealth(null, 15));
+		assertFalse(snapshot.matches(gameState));
+
+		snapshot.load(gameState);
+		assertTrue(snapshot.matches(gameState));
+	}
+
+	private static HeadlessEngine startedGame() {
+		HeadlessEngine engine = new HeadlessEngine();
+		engine.start();
+		engine.endTurn(); // so both players have units that can act and cards to play
+		return engine;
+	}
+}
@@ -0,0 +1,75 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import commands.CommandSink;
+import engine.HeadlessEngine;
+import structures.GameState;
+
+/**
+ * Plays games through the HeadlessEngine, without a front-end or altTell.
+ */
+public class HeadlessEngineTest {
+
+	@Test
+	public void playsATurnWithoutAFrontEnd() {
+		HeadlessEngine engine = new HeadlessEngine();
+		engine.start();
+
+		GameState gameState = engine.getGameState();
+		assertTrue(gameState.gameInitalised);
+		assertNotNull(gameState.player1Avatar);
+		assertEquals(3, gameState.player1Hand.size());
+
+		// ending the turn lets the AI play its turn, after which it is player 1's go again
+		engine.endTurn();
+		assertEquals(1, gameState.currentPlayer);
+		assertEquals(2, gameState.currentTurn);
+		assertNull(CommandSink.current());
+	}
+
+	@Test
+	public void sendsCommandsToItsOwnSink() throws Exception {
+		List<Thread> threads = new ArrayList<Thread>();
+		List<AtomicInteger> counts = new ArrayList<AtomicInteger>();
+		for (int i = 0; i < 4; i++) {
+			AtomicInteger count = new AtomicInteger();
+			counts.add(count);
+			threads.add(new Thread(() -> new HeadlessEngine(new CountingSink(count)).start()));
+		}
+		for (Thread thread : threads) thread.start();
+		for (Thread thread : threads) thread.join();
+
+		// every game draws the same board, avatars and hand
+		for (AtomicInteger count : counts) {
+			assertTrue(count.get() > 0);
+			assertEquals(counts.get(0).get(), count.get());
+		}
+	}
+
+	private static class CountingSink extends CommandSink {
+
+		private final AtomicInteger count;
+
+		CountingSink(AtomicInteger count) {
+			this.count = count;
+		}
+
+		@Override
+		public void send(JsonNode message) {
+			count.incrementAndGet();
+		}
+
+		@Override
+		public void delay(int millis) {}
+	}
+}
@@ -0,0 +1,120 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ai.GameSnapshot;
+import commands.CommandSink;
+import engine.HeadlessEngine;
+import journal.JournalReplayer;
+import journal.JournalRetention;
+import journal.JournalWriter;
+import managers.AIManager;
+import structures.GameState;
+
+/**
+ * Records games played by random clicks against the planner, and checks that replaying
+ * their journals rebuilds the same game.
+ */
+public class JournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void replayRebuildsTheGame() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		UUID gameId = UUID.randomUUID();
+		HeadlessEngine engine = recordedGame(directory, gameId, 21, 12);
+
+		JournalReplayer replayer = JournalReplayer.open(JournalWriter.fileOf(directory, gameId));
+		assertEquals(gameId, replayer.getGameId());
+		assertEquals(21, replayer.getSeed());
+		assertSame(engine.getGameState(), replayer.replay().getGameState());
+	}
+
+	@Test
+	public void readsAJournalCutShort() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		UUID gameId = UUID.randomUUID();
+		recordedGame(directory, gameId, 8, 4);
+
+		Path file = JournalWriter.fileOf(directory, gameId);
+		JournalReplayer full = JournalReplayer.open(file);
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+		JournalReplayer replayer = JournalReplayer.open(file);
+		int events = replayer.getEventCount();
+		assertTrue(events > 0 && events <= full.getEventCount());
+		// the last event may have lost the AI's decisions, but the game up to it is intact
+		assertSame(full.replay(events - 1, CommandSink.NONE).getGameState(), replayer.replay(events - 1, CommandSink.NONE).getGameState());
+	}
+
+	@Test
+	public void finishedAndOldJournalsAreCleanedUp() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		UUID finished = UUID.randomUUID();
+		UUID abandoned = UUID.randomUUID();
+		UUID recent = UUID.randomUUID();
+		for (UUID gameId : Arrays.asList(finished, abandoned, recent)) recordedGame(directory, gameId, 3, 1);
+
+		// a finished game's journal can still be replayed, but no longer resumed
+		JournalRetention.finish(JournalWriter.fileOf(directory, finished));
+		Path archived = JournalWriter.fileOf(directory.resolve(JournalRetention.FINISHED), finished);
+		assertFalse(Files.exists(JournalWriter.fileOf(directory, finished)));
+		assertEquals(finished, JournalReplayer.open(archived).getGameId());
+
+		// journals older than the time they are kept are deleted, finished or not
+		FileTime old = FileTime.fromMillis(System.currentTimeMillis() - Duration.ofDays(2).toMillis());
+		Files.setLastModifiedTime(archived, old);
+		Files.setLastModifiedTime(JournalWriter.fileOf(directory, abandoned), old);
+		assertEquals(2, JournalRetention.prune(directory, Duration.ofDays(1)));
+		assertFalse(Files.exists(archived));
+		assertFalse(Files.exists(JournalWriter.fileOf(directory, abandoned)));
+		assertTrue(Files.exists(JournalWriter.fileOf(directory, recent)));
+		assertEquals(0, JournalRetention.prune(directory, Duration.ofDays(1)));
+	}
+
+	// Plays a game with random clicks for player 1 and the planner for player 2
+	private static HeadlessEngine recordedGame(Path directory, UUID gameId, long seed, int turns) throws Exception {
+		int budget = AIManager.getPlannerBudget();
+		AIManager.setPlannerBudget(5);
+		HeadlessEngine engine = new HeadlessEngine();
+		GameState gameState = engine.getGameState();
+		gameState.setSeed(seed);
+		gameState.journal = JournalWriter.create(directory, gameId, seed);
+		try {
+			Random clicks = new Random(seed);
+			engine.start();
+			for (int turn = 0; turn < turns && !gameState.player1Avatar.isDead() && !gameState.player2Avatar.isDead(); turn++) {
+				for (int click = 0; click < 6; click++) {
+					if (clicks.nextInt(3) == 0) engine.clickCard(1 + clicks.nextInt(6));
+					else engine.clickTile(clicks.nextInt(9), clicks.nextInt(5));
+				}
+				engine.endTurn();
+			}
+		} finally {
+			gameState.journal.close();
+			AIManager.setPlannerBudget(budget);
+		}
+		return engine;
+	}
+
+	private static void assertSame(GameState expected, GameState actual) {
+		assertEquals(expected.currentTurn, actual.currentTurn);
+		assertEquals(expected.currentPlayer, actual.currentPlayer);
+		assertTrue(GameSnapshot.of(expected).sameAs(GameSnapshot.of(actual)));
+	}
+}
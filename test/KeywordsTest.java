@@ -0,0 +1,121 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import ai.GameSnapshot;
+import card.abilities.Provoke;
+import engine.HeadlessEngine;
+import managers.UnitManager;
+import play.libs.Json;
+import structures.Bitboard;
+import structures.GameState;
+import structures.basic.Card;
+import structures.basic.Keywords;
+import structures.basic.Unit;
+import utils.OrderedCardLoader;
+import utils.StaticConfFiles;
+
+/**
+ * Checks that the keyword abilities of units come from their cards' configurations,
+ * and that the rules and the AI's model of them follow them.
+ */
+public class KeywordsTest {
+
+	@Test
+	public void cardsCarryTheirKeywords() {
+		List<Card> cards = new ArrayList<Card>(OrderedCardLoader.getPlayer1Cards(1));
+		cards.addAll(OrderedCardLoader.getPlayer2Cards(1));
+
+		for (Card card : cards) {
+			int expected = 0;
+			switch (card.getCardname()) {
+			case "Rock Pulveriser":
+			case "Swamp Entangler":
+			case "Silverguard Knight":
+			case "Ironcliff Guardian":
+				expected = Keywords.PROVOKE;
+				break;
+			case "Young Flamewing":
+				expected = Keywords.FLYING;
+				break;
+			case "Saberspine Tiger":
+				expected = Keywords.RUSH;
+				break;
+			default:
+				break;
+			}
+			assertEquals(card.getCardname(), expected, card.getKeywords());
+			// the front-end has no use for them
+			assertFalse(Json.toJson(card).has("keywords"));
+		}
+	}
+
+	@Test
+	public void provokeHoldsAdjacentEnemies() {
+		HeadlessEngine engine = new HeadlessEngine();
+		GameState gameState = engine.getGameState();
+		engine.start();
+		Unit avatar = gameState.player1Avatar; // at (1,2)
+
+		engine.run(() -> {
+			gameState.currentPlayer = 2;
+			UnitManager.summonUnitDirectly(null, gameState, StaticConfFiles.wraithling, 1, 1, 0, gameState.board[1][3]);
+			UnitManager.summonUnitDirectly(null, gameState, StaticConfFiles.wraithling, 1, 1, Keywords.PROVOKE, gameState.board[2][2]);
+			gameState.currentPlayer = 1;
+			avatar.resetTurnStatus(); // as at the start of a turn
+		});
+
+		int cell = Bitboard.cellOf(1, 2);
+		assertTrue(Provoke.isUnitProvoked(gameState, avatar));
+		assertEquals(0, gameState.bitboard.moveTargets(cell, 1, avatar.getKeywordFlags()));
+		assertEquals(1L << Bitboard.cellOf(2, 2), gameState.bitboard.attackTargets(cell, 1));
+
+		// the AI's model of the game holds the avatar the same way
+		GameSnapshot snapshot = GameSnapshot.of(gameState);
+		int[] actions = new int[GameSnapshot.MAX_ACTIONS];
+		int count = snapshot.legalActions(actions);
+		int attacks = 0;
+		for (int i = 0; i < count; i++) {
+			int a = GameSnapshot.argA(actions[i]);
+			if (GameSnapshot.kindOf(actions[i]) == GameSnapshot.MOVE) {
+				assertTrue(snapshot.getUnitId(a) != avatar.getId());
+			} else if (GameSnapshot.kindOf(actions[i]) == GameSnapshot.ATTACK && snapshot.getUnitId(a) == avatar.getId()) {
+				attacks++;
+			}
+		}
+		assertEquals(1, attacks);
+	}
+
+	@Test
+	public void flyingReachesAnyEmptyTile() {
+		Bitboard bitboard = new Bitboard();
+		int cell = Bitboard.cellOf(0, 0);
+		bitboard.place(cell, 1);
+		bitboard.place(Bitboard.cellOf(8, 4), 2);
+
+		long far = 1L << Bitboard.cellOf(8, 0);
+		assertEquals(0, bitboard.moveTargets(cell, 1, 0) & far);
+		assertEquals(far, bitboard.moveTargets(cell, 1, Keywords.FLYING) & far);
+		assertEquals(Bitboard.ALL & ~bitboard.occupied(), bitboard.moveTargets(cell, 1, Keywords.FLYING));
+	}
+
+	@Test
+	public void rushActsOnTheTurnItIsSummoned() {
+		HeadlessEngine engine = new HeadlessEngine();
+		GameState gameState = engine.getGameState();
+		engine.start();
+
+		List<Unit> summoned = new ArrayList<Unit>();
+		engine.run(() -> {
+			summoned.add(UnitManager.summonUnitDirectly(null, gameState, StaticConfFiles.wraithling, 1, 1, Keywords.RUSH, gameState.board[2][1]));
+			summoned.add(UnitManager.summonUnitDirectly(null, gameState, StaticConfFiles.wraithling, 1, 1, 0, gameState.board[2][3]));
+		});
+		assertTrue(summoned.get(0).canMove());
+		assertFalse(summoned.get(1).canMove());
+	}
+}
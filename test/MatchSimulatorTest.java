@@ -0,0 +1,57 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import engine.MatchSimulator;
+
+/**
+ * Runs a few AI against AI games through the MatchSimulator.
+ */
+public class MatchSimulatorTest {
+
+	@Test
+	public void playsEveryGameToTheEnd() {
+		MatchSimulator.Report report = new MatchSimulator(16, 7, 4).run();
+
+		assertEquals(16, report.getGames());
+		assertEquals(16, report.getWins(0) + report.getWins(1) + report.getWins(2));
+		for (MatchSimulator.MatchResult result : report.getResults()) {
+			assertTrue(result.getTurns() >= 1);
+			assertTrue(result.getTurns() <= MatchSimulator.MAX_TURNS + 1);
+			assertTrue(result.getTurnNanos().length > 0);
+		}
+	}
+
+	@Test
+	public void sameSeedPlaysTheSameGame() {
+		int[] first = outcomes(new MatchSimulator(8, 42, 4).run());
+		int[] second = outcomes(new MatchSimulator(8, 42, 2).run());
+		assertArrayEquals(first, second);
+	}
+
+	@Test
+	public void bothSidesSummonFromTheirDecks() {
+		MatchSimulator.Report report = new MatchSimulator(8, 3, 4).run();
+		int[] summoned = new int[3];
+		for (MatchSimulator.MatchResult result : report.getResults()) {
+			summoned[1] += result.getSummoned(1);
+			summoned[2] += result.getSummoned(2);
+		}
+		assertTrue(summoned[1] > 0);
+		assertTrue(summoned[2] > 0);
+		assertTrue(report.getAverageSummoned(1) > 0);
+		assertTrue(report.getAverageSummoned(2) > 0);
+	}
+
+	private static int[] outcomes(MatchSimulator.Report report) {
+		int[] outcomes = new int[report.getGames() * 2];
+		int i = 0;
+		for (MatchSimulator.MatchResult result : report.getResults()) {
+			outcomes[i++] = result.getWinner();
+			outcomes[i++] = result.getTurns();
+		}
+		return outcomes;
+	}
+}
@@ -0,0 +1,84 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ai.GameSnapshot;
+import ai.MctsPlanner;
+import engine.HeadlessEngine;
+import managers.AIManager;
+import structures.GameState;
+
+/**
+ * Plans turns with the MctsPlanner, on snapshots of games set up by the HeadlessEngine.
+ */
+public class MctsPlannerTest {
+
+	@Test
+	public void plansALegalTurn() {
+		HeadlessEngine engine = new HeadlessEngine();
+		engine.start();
+		GameSnapshot snapshot = GameSnapshot.of(engine.getGameState());
+
+		int[] plan = MctsPlanner.forThread().planTurn(snapshot, 50, 1);
+
+		// every move is one the snapshot allows when it is played, and the plan ends the turn
+		GameSnapshot replay = new GameSnapshot();
+		replay.copyFrom(snapshot);
+		int[] actions = new int[GameSnapshot.MAX_ACTIONS];
+		for (int action : plan) {
+			assertTrue(contains(actions, replay.legalActions(actions), action));
+			if (GameSnapshot.kindOf(action) != GameSnapshot.END_TURN) replay.apply(action);
+		}
+		assertEquals(GameSnapshot.END_TURN, GameSnapshot.kindOf(plan[plan.length - 1]));
+		assertEquals(1, replay.getCurrentPlayer());
+		assertTrue(MctsPlanner.forThread().getPlayouts() > 0);
+	}
+
+	@Test
+	public void findsALethalAttack() {
+		HeadlessEngine engine = new HeadlessEngine();
+		engine.start();
+		GameState gameState = engine.getGameState();
+
+		// player 1's avatar, down to 2 health, stands next to player 2's
+		engine.run(() -> {
+			gameState.player2Avatar.setPositionByTile(gameState.board[2][2]);
+			gameState.player1Avatar.setHealth(null, 2);
+			gameState.player1.setHealth(2);
+		});
+		gameState.currentPlayer = 2;
+		gameState.player2Avatar.resetTurnStatus();
+
+		GameSnapshot snapshot = GameSnapshot.of(gameState);
+		int[] plan = MctsPlanner.forThread().planTurn(snapshot, 50, 1);
+
+		for (int action : plan) {
+			if (GameSnapshot.kindOf(action) != GameSnapshot.END_TURN) snapshot.apply(action);
+		}
+		assertEquals(2, snapshot.getWinner());
+	}
+
+	@Test
+	public void playsPlannedTurnsInARealGame() {
+		HeadlessEngine engine = new HeadlessEngine();
+		engine.start();
+		GameState gameState = engine.getGameState();
+
+		int budget = AIManager.getPlannerBudget();
+		AIManager.setPlannerBudget(10);
+		try {
+			for (int turn = 0; turn < 5 && !gameState.player1Avatar.isDead(); turn++) engine.endTurn();
+		} finally {
+			AIManager.setPlannerBudget(budget);
+		}
+		assertEquals(1, gameState.currentPlayer);
+	}
+
+	private static boolean contains(int[] actions, int count, int action) {
+		for (int i = 0; i < count; i++) {
+			if (actions[i] == action) return true;
+		}
+		return false;
+	}
+}
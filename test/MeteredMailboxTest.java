@@ -0,0 +1,78 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import actors.MeteredMailbox;
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.pattern.Patterns;
+
+/**
+ * Holds up an actor on the game dispatcher and checks that its MeteredMailbox counts the
+ * messages that pile up, and that the game leaves the registry when the actor stops.
+ */
+public class MeteredMailboxTest {
+
+	private static final Config CONFIG = ConfigFactory.parseString(
+			"game-dispatcher { type = Dispatcher, executor = thread-pool-executor, thread-pool-executor.fixed-pool-size = 1, throughput = 1 }\n"
+			+ "game-mailbox.mailbox-type = \"actors.MeteredMailbox\"")
+			.withFallback(ConfigFactory.load());
+
+	@Test
+	public void countsWaitingMessages() throws Exception {
+		ActorSystem system = ActorSystem.create("metered", CONFIG);
+		try {
+			CountDownLatch started = new CountDownLatch(1);
+			CountDownLatch release = new CountDownLatch(1);
+			ActorRef game = system.actorOf(Props.create(SlowGame.class, started, release)
+					.withDispatcher("game-dispatcher").withMailbox("game-mailbox"));
+
+			for (int i = 0; i < 5; i++) game.tell("event", ActorRef.noSender());
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+
+			MeteredMailbox.Queue queue = MeteredMailbox.of(game);
+			assertEquals(4, queue.numberOfMessages()); // the first one is being processed
+			assertEquals(5, queue.getReceived());
+			assertTrue(queue.getPeakDepth() >= 4);
+
+			release.countDown();
+			assertTrue(Patterns.gracefulStop(game, Duration.ofSeconds(5)).toCompletableFuture().get());
+			assertEquals(0, queue.numberOfMessages());
+			assertNull(MeteredMailbox.of(game));
+		} finally {
+			system.terminate();
+			system.getWhenTerminated().toCompletableFuture().get(5, TimeUnit.SECONDS);
+		}
+	}
+
+	// Waits until released on its first message
+	public static class SlowGame extends AbstractActor {
+
+		private final CountDownLatch started;
+		private final CountDownLatch release;
+
+		public SlowGame(CountDownLatch started, CountDownLatch release) {
+			this.started = started;
+			this.release = release;
+		}
+
+		@Override
+		public Receive createReceive() {
+			return receiveBuilder().matchAny(message -> {
+				started.countDown();
+				release.await(5, TimeUnit.SECONDS);
+			}).build();
+		}
+	}
+}
@@ -0,0 +1,155 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import akka.actor.ActorSystem;
+import akka.stream.BufferOverflowException;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import commands.OutboundQueue;
+import play.libs.Json;
+
+/**
+ * Queues commands for a browser that is not taking them, and checks what it gets
+ * once it does.
+ */
+public class OutboundQueueTest {
+
+	@Test
+	public void supersededCommandsAreTakenOut() {
+		OutboundQueue queue = new OutboundQueue("test", 100, 50);
+		queue.offer(command("setPlayer1Health", "health", 20));
+		queue.offer(batch(patch(7, "health", 3), command("drawUnit", "id", 8)));
+		queue.offer(patch(7, "attack", 2));
+		queue.offer(command("setPlayer1Health", "health", 18));
+		assertEquals(3, queue.getDepth());
+		assertEquals(2, queue.getConflated());
+
+		// the batch lost its patch, which the later one took over
+		assertEquals("drawUnit", queue.poll().path("messagetype").asText());
+		JsonNode patch = queue.poll();
+		assertEquals(3, patch.path("health").asInt());
+		assertEquals(2, patch.path("attack").asInt());
+		assertEquals(18, queue.poll().path("health").asInt());
+		assertNull(queue.poll());
+		assertEquals(0, queue.getDepth());
+
+		// what has been sent is not conflated with
+		queue.offer(command("setPlayer1Health", "health", 17));
+		assertEquals(17, queue.poll().path("health").asInt());
+	}
+
+	@Test
+	public void tilesKeepTheirFullTile() {
+		OutboundQueue queue = new OutboundQueue("test", 100, 50);
+		ObjectNode first = Json.newObject();
+		first.put("messagetype", "drawTiles");
+		first.putArray("tiles").add(tile(2, 3, 1).set("tile", Json.newObject().put("xpos", 640))).add(tile(4, 4, 1));
+		ObjectNode second = Json.newObject();
+		second.put("messagetype", "drawTiles");
+		second.putArray("tiles").add(tile(2, 3, 0));
+		queue.offer(first);
+		queue.offer(second);
+
+		JsonNode remaining = queue.poll();
+		assertEquals(1, remaining.path("tiles").size());
+		assertEquals(4, remaining.path("tiles").get(0).path("tilex").asInt());
+		JsonNode redrawn = queue.poll().path("tiles").get(0);
+		assertEquals(0, redrawn.path("mode").asInt());
+		assertEquals(640, redrawn.path("tile").path("xpos").asInt());
+	}
+
+	@Test
+	public void decorationsAreDroppedUnderPressure() {
+		OutboundQueue queue = new OutboundQueue("test", 6, 2);
+		queue.offer(command("addPlayer1Notification", "text", "kept"));
+		queue.offer(command("drawUnit", "id", 1));
+		queue.offer(command("addPlayer1Notification", "text", "dropped"));
+		assertEquals(2, queue.getDepth());
+		assertEquals(1, queue.getDropped());
+
+		// at the limit the oldest decoration makes way, then the queue gives up
+		for (int id = 2; id <= 6; id++) queue.offer(command("drawUnit", "id", id));
+		assertEquals(6, queue.getDepth());
+		assertEquals(2, queue.getDropped());
+		try {
+			queue.offer(command("drawUnit", "id", 7));
+			fail();
+		} catch (BufferOverflowException e) {
+			// the socket is closed
+		}
+	}
+
+	@Test
+	public void streamsEverythingQueued() throws Exception {
+		ActorSystem system = ActorSystem.create("outbound");
+		try {
+			List<JsonNode> commands = new ArrayList<JsonNode>();
+			for (int i = 0; i < 200; i++) commands.add(command("setPlayer2Mana", "mana", i));
+			for (int i = 0; i < 200; i++) commands.add(command("drawUnit", "id", i));
+
+			List<JsonNode> received = Source.from(commands)
+					.via(OutboundQueue.flow("stream", 1000, 500))
+					.runWith(Sink.seq(), system)
+					.toCompletableFuture().get(10, TimeUnit.SECONDS);
+			// whatever was conflated, the last mana and every unit arrive, in order
+			int mana = -1;
+			int unit = 0;
+			for (JsonNode command : received) {
+				if (command.path("messagetype").asText().equals("setPlayer2Mana")) {
+					assertTrue(command.path("mana").asInt() > mana);
+					mana = command.path("mana").asInt();
+				} else {
+					assertEquals(unit++, command.path("id").asInt());
+				}
+			}
+			assertEquals(199, mana);
+			assertEquals(200, unit);
+		} finally {
+			system.terminate();
+		}
+	}
+
+	private static ObjectNode command(String type, String field, int value) {
+		ObjectNode command = Json.newObject();
+		command.put("messagetype", type);
+		command.put(field, value);
+		return command;
+	}
+
+	private static ObjectNode command(String type, String field, String value) {
+		ObjectNode command = Json.newObject();
+		command.put("messagetype", type);
+		command.put(field, value);
+		return command;
+	}
+
+	private static ObjectNode patch(int unit, String field, int value) {
+		return command("unitPatch", "id", unit).put(field, value);
+	}
+
+	private static ObjectNode tile(int tilex, int tiley, int mode) {
+		ObjectNode tile = Json.newObject();
+		tile.put("tilex", tilex);
+		tile.put("tiley", tiley);
+		tile.put("mode", mode);
+		return tile;
+	}
+
+	private static ObjectNode batch(JsonNode... commands) {
+		ObjectNode batch = Json.newObject();
+		batch.put("messagetype", "batch");
+		for (JsonNode command : commands) batch.withArray("commands").add(command);
+		return batch;
+	}
+}
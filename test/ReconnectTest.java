@@ -0,0 +1,215 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import actors.GameActor;
+import actors.GameRegistry;
+import actors.GameSession;
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import commands.BasicCommands;
+import commands.CommandChannel;
+import commands.CommandSink;
+import engine.HeadlessEngine;
+import journal.JournalReplayer;
+import journal.JournalWriter;
+import play.libs.Json;
+import structures.GameState;
+
+/**
+ * Drops the connection to a game and reconnects to it, and has games put away and
+ * brought back from their journal.
+ */
+public class ReconnectTest {
+
+	@Test
+	public void fullStateHoldsTheWholeGame() {
+		List<JsonNode> commands = new ArrayList<JsonNode>();
+		HeadlessEngine engine = new HeadlessEngine(new CommandSink() {
+			@Override
+			public void send(JsonNode message) {
+				commands.add(message);
+			}
+
+			@Override
+			public void delay(int millis) {}
+		});
+		engine.start();
+		GameState gameState = engine.getGameState();
+		commands.clear();
+		engine.run(() -> BasicCommands.drawFullState(null, gameState));
+
+		assertEquals(1, commands.size());
+		JsonNode state = commands.get(0);
+		assertEquals("fullState", state.path("messagetype").asText());
+		assertEquals(45, state.path("tiles").size());
+		assertEquals(gameState.playerUnits.size(), state.path("units").size());
+		assertEquals(gameState.player1Hand.size(), state.path("hand").size());
+		assertEquals(1, state.path("hand").get(0).path("position").asInt());
+		assertEquals(gameState.player1.getHealth(), state.path("player1").path("health").asInt());
+		assertEquals(gameState.player1.getMana(), state.path("player1").path("mana").asInt());
+
+		JsonNode avatar = state.path("units").get(0);
+		assertEquals(gameState.player1Avatar.getId(), avatar.path("unit").path("id").asInt());
+		assertEquals(1, avatar.path("tilex").asInt());
+		assertEquals(2, avatar.path("tiley").asInt());
+	}
+
+	@Test
+	public void reconnectingClientGetsItsGameBack() throws Exception {
+		ActorSystem system = ActorSystem.create("reconnect");
+		try {
+			ActorRef registry = registry(system, null, Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+			// the first page starts a game
+			BlockingQueue<JsonNode> first = new LinkedBlockingQueue<JsonNode>();
+			ActorRef session = system.actorOf(Props.create(GameSession.class, socket(system, first), registry, null));
+			JsonNode ready = take(first, "actorReady");
+			String gameId = ready.path("gameId").asText();
+			session.tell(Json.newObject().put("messagetype", "initalize"), ActorRef.noSender());
+			take(first, "setPlayer1Mana");
+
+			// the connection drops, and the page reconnects to the same game
+			system.stop(session);
+			BlockingQueue<JsonNode> second = new LinkedBlockingQueue<JsonNode>();
+			system.actorOf(Props.create(GameSession.class, socket(system, second), registry, gameId));
+			assertEquals(gameId, take(second, "actorReady").path("gameId").asText());
+			JsonNode state = take(second, "fullState");
+			assertEquals(45, state.path("tiles").size());
+			assertEquals(2, state.path("units").size());
+			assertEquals(3, state.path("hand").size());
+
+			// anything but a game id gives a new game
+			BlockingQueue<JsonNode> third = new LinkedBlockingQueue<JsonNode>();
+			system.actorOf(Props.create(GameSession.class, socket(system, third), registry, "not-a-game"));
+			String newGameId = take(third, "actorReady").path("gameId").asText();
+			assertNotEquals(gameId, newGameId);
+			UUID.fromString(newGameId);
+		} finally {
+			system.terminate();
+		}
+	}
+
+	@Test
+	public void idleGameIsPutAwayUnderItsPage() throws Exception {
+		Path journals = Files.createTempDirectory("journals");
+		ActorSystem system = ActorSystem.create("passivate");
+		try {
+			ActorRef registry = registry(system, journals.toString(), Duration.ofMinutes(1), Duration.ofMillis(200));
+			BlockingQueue<JsonNode> page = new LinkedBlockingQueue<JsonNode>();
+			ActorRef session = system.actorOf(Props.create(GameSession.class, socket(system, page), registry, null));
+			String gameId = take(page, "actorReady").path("gameId").asText();
+			session.tell(Json.newObject().put("messagetype", "initalize"), ActorRef.noSender());
+			take(page, "setPlayer1Mana");
+
+			// only heartbeats for a while: the game is put away
+			long passivated = GameActor.metrics().path("passivated").asLong();
+			Thread.sleep(300);
+			session.tell(Json.newObject().put("messagetype", "heartbeat"), ActorRef.noSender());
+			waitFor(() -> GameActor.metrics().path("passivated").asLong() > passivated);
+
+			// the next click brings it back, and the page carries on without being redrawn
+			long resumed = GameActor.metrics().path("resumed").asLong();
+			session.tell(Json.newObject().put("messagetype", "endturnclicked"), ActorRef.noSender());
+			JsonNode command = take(page, "setPlayer1Mana", "actorReady", "fullState");
+			assertEquals("setPlayer1Mana", command.path("messagetype").asText());
+			assertEquals(resumed + 1, GameActor.metrics().path("resumed").asLong());
+
+			// the journal carried on where it stopped, without the heartbeats
+			JournalReplayer replayer = JournalReplayer.open(JournalWriter.fileOf(journals, UUID.fromString(gameId)));
+			assertEquals(2, replayer.getEventCount());
+			assertEquals(2, replayer.replay().getGameState().currentTurn);
+		} finally {
+			system.terminate();
+		}
+	}
+
+	@Test
+	public void abandonedGameComesBackFromItsJournal() throws Exception {
+		Path journals = Files.createTempDirectory("journals");
+		ActorSystem system = ActorSystem.create("abandon");
+		try {
+			ActorRef registry = registry(system, journals.toString(), Duration.ofMillis(100), Duration.ofMinutes(1));
+			BlockingQueue<JsonNode> first = new LinkedBlockingQueue<JsonNode>();
+			ActorRef session = system.actorOf(Props.create(GameSession.class, socket(system, first), registry, null));
+			String gameId = take(first, "actorReady").path("gameId").asText();
+			session.tell(Json.newObject().put("messagetype", "initalize"), ActorRef.noSender());
+			take(first, "setPlayer1Mana");
+
+			long passivated = GameActor.metrics().path("passivated").asLong();
+			system.stop(session);
+			waitFor(() -> GameActor.metrics().path("passivated").asLong() > passivated);
+
+			BlockingQueue<JsonNode> second = new LinkedBlockingQueue<JsonNode>();
+			system.actorOf(Props.create(GameSession.class, socket(system, second), registry, gameId));
+			assertEquals(gameId, take(second, "actorReady").path("gameId").asText());
+			JsonNode state = take(second, "fullState");
+			assertEquals(2, state.path("units").size());
+			assertEquals(3, state.path("hand").size());
+			assertEquals(2, state.path("player1").path("mana").asInt());
+		} finally {
+			system.terminate();
+		}
+	}
+
+	private static ActorRef registry(ActorSystem system, String journals, Duration grace, Duration idle) {
+		Props gameProps = Props.create(GameActor.class, CommandChannel.Batching.ON, journals, grace, idle);
+		return system.actorOf(Props.create(GameRegistry.class, gameProps));
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		for (int i = 0; i < 100 && !condition.getAsBoolean(); i++) Thread.sleep(100);
+		assertTrue(condition.getAsBoolean());
+	}
+
+	private static ActorRef socket(ActorSystem system, BlockingQueue<JsonNode> received) {
+		return system.actorOf(Props.create(Socket.class, received));
+	}
+
+	// The next command of one of the given types, looking inside batches
+	private static JsonNode take(BlockingQueue<JsonNode> received, String... types) throws InterruptedException {
+		List<String> wanted = Arrays.asList(types);
+		while (true) {
+			JsonNode message = received.poll(10, TimeUnit.SECONDS);
+			assertNotNull("no " + wanted + " command", message);
+			if (wanted.contains(message.path("messagetype").asText())) return message;
+			for (JsonNode command : message.path("commands")) {
+				if (wanted.contains(command.path("messagetype").asText())) return command;
+			}
+		}
+	}
+
+	// Stands in for the websocket, keeping what it is sent
+	public static class Socket extends AbstractActor {
+
+		private final BlockingQueue<JsonNode> received;
+
+		public Socket(BlockingQueue<JsonNode> received) {
+			this.received = received;
+		}
+
+		@Override
+		public Receive createReceive() {
+			return receiveBuilder().match(JsonNode.class, received::add).build();
+		}
+	}
+}
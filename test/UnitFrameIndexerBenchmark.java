@@ -0,0 +1,103 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import structures.basic.Unit;
+import structures.basic.UnitAnimation;
+import structures.basic.UnitAnimationSet;
+import utils.UnitFrameIndexer;
+
+/**
+ * Times the single pass frame indexer against the per-animation scans BasicObjectBuilders
+ * used to do, over the frame lists of every unit we ship. Each side works out the six
+ * animation ranges of a unit and reads every frame address twice, as the old code built
+ * them all up front and the new code puts them together on first read.
+ *
+ * Run it with sbt "Test/runMain UnitFrameIndexerBenchmark 20 2000" from the project
+ * directory, the arguments being the number of timed rounds (20) and the times each
+ * round indexes every unit (2000). It prints the median time per unit of each side.
+ */
+public class UnitFrameIndexerBenchmark {
+
+	// untimed rounds, to let the JIT settle first
+	private static final int WARMUP_ROUNDS = 10;
+
+	public static void main(String[] args) throws Exception {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		int repeats = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+		ObjectMapper mapper = new ObjectMapper();
+		List<UnitAnimationSet> units = new ArrayList<UnitAnimationSet>();
+		for (String configFile : UnitFrameIndexerTest.unitConfigs()) {
+			units.add(mapper.readValue(new File(configFile), Unit.class).getAnimations());
+		}
+
+		long[] scans = new long[rounds];
+		long[] indexed = new long[rounds];
+		long check = 0; // keeps the work from being optimised away
+		for (int round = -WARMUP_ROUNDS; round < rounds; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < repeats; i++) {
+				for (UnitAnimationSet unit : units) check += scans(unit);
+			}
+			long middle = System.nanoTime();
+			for (int i = 0; i < repeats; i++) {
+				for (UnitAnimationSet unit : units) check += indexed(unit);
+			}
+			long end = System.nanoTime();
+			if (round >= 0) {
+				scans[round] = middle - start;
+				indexed[round] = end - middle;
+			}
+		}
+
+		long perUnit = (long) repeats * units.size();
+		double before = median(scans) / perUnit;
+		double after = median(indexed) / perUnit;
+		System.out.println(String.format("%d units, %d rounds of %d", units.size(), rounds, repeats));
+		System.out.println(String.format("per-animation scans  %8.0f ns/unit", before));
+		System.out.println(String.format("single pass indexer  %8.0f ns/unit", after));
+		System.out.println(String.format("speedup              %8.2fx   (check %d)", before / after, check));
+	}
+
+	// the old way: one scan per animation, then every address built up front
+	private static long scans(UnitAnimationSet unit) {
+		List<String> frames = unit.getAllFrames();
+		long check = 0;
+		for (String tag : UnitFrameIndexerTest.TAGS) {
+			int[] range = UnitFrameIndexerTest.scan(frames, tag);
+			if (range != null) check += range[1];
+		}
+		List<String> paths = new ArrayList<String>(frames.size());
+		for (String frame : frames) paths.add(unit.getFrameDIR()+frame);
+		return check + read(paths) + read(paths);
+	}
+
+	// the new way, on a copy of the unit's animations as index() replaces the frame list
+	private static long indexed(UnitAnimationSet unit) {
+		UnitAnimationSet animations = new UnitAnimationSet(unit.getAllFrames(), unit.getFrameDIR(), new UnitAnimation(),
+				new UnitAnimation(), new UnitAnimation(), new UnitAnimation(), new UnitAnimation(), new UnitAnimation());
+		UnitFrameIndexer.index(animations);
+		long check = 0;
+		for (UnitAnimation animation : Arrays.asList(animations.getIdle(), animations.getDeath(), animations.getAttack(),
+				animations.getMove(), animations.getChannel(), animations.getHit())) {
+			if (animation.getFrameStartEndIndices() != null) check += animation.getFrameStartEndIndices()[1];
+		}
+		return check + read(animations.getAllFrames()) + read(animations.getAllFrames());
+	}
+
+	private static long read(List<String> paths) {
+		long check = 0;
+		for (int i = 0; i < paths.size(); i++) check += paths.get(i).length();
+		return check;
+	}
+
+	private static double median(long[] times) {
+		long[] sorted = times.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+}
@@ -0,0 +1,96 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import structures.basic.Unit;
+import structures.basic.UnitAnimationSet;
+import utils.BasicObjectBuilders;
+import utils.UnitFrameIndexer;
+
+/**
+ * Checks that the single pass frame indexer finds the same animation ranges as the
+ * per-animation scans that BasicObjectBuilders used to do, for every unit we ship.
+ */
+public class UnitFrameIndexerTest {
+
+	static final String[] TAGS = {"_idle_", "_death_", "_attack_", "_run_", "_castloop_", "_hit_"};
+
+	@Test
+	public void matchesPerAnimationScans() throws Exception {
+		ObjectMapper mapper = new ObjectMapper();
+		for (String configFile : unitConfigs()) {
+			UnitAnimationSet animations = mapper.readValue(new File(configFile), Unit.class).getAnimations();
+			List<String> frames = animations.getAllFrames();
+
+			int[][] ranges = UnitFrameIndexer.ranges(frames);
+			for (int t = 0; t < TAGS.length; t++) {
+				int[] expected = scan(frames, TAGS[t]);
+				if (expected == null) assertNull(configFile+" "+TAGS[t], ranges[t]);
+				else assertArrayEquals(configFile+" "+TAGS[t], expected, ranges[t]);
+			}
+
+			// frame addresses are the same as concatenating the directory and the name
+			Unit unit = BasicObjectBuilders.loadUnit(configFile, -1, Unit.class);
+			List<String> paths = unit.getAnimations().getAllFrames();
+			assertEquals(frames.size(), paths.size());
+			for (int i = 0; i < frames.size(); i++) {
+				assertEquals(animations.getFrameDIR()+frames.get(i), paths.get(i));
+				assertSame(paths.get(i), paths.get(i)); // put together once
+			}
+		}
+	}
+
+	@Test
+	public void handlesEdgesOfTheFrameList() {
+		List<List<String>> cases = Arrays.asList(
+				Arrays.asList("u_idle_000.png"),
+				Arrays.asList("u_idle_000.png", "u_run_000.png"),
+				Arrays.asList("u_idle_000.png", "u_idle_001.png", "u_run_000.png"),
+				Arrays.asList("u_run_000.png", "u_idle_000.png", "u_idle_001.png"),
+				Arrays.asList("u_idle_000.png", "u_run_000.png", "u_idle_001.png", "u_idle_002.png"),
+				Arrays.asList("noprefix", "u_hit_000.png"));
+		for (List<String> frames : cases) {
+			int[][] ranges = UnitFrameIndexer.ranges(frames);
+			for (int t = 0; t < TAGS.length; t++) {
+				int[] expected = scan(frames, TAGS[t]);
+				if (expected == null) assertNull(frames+" "+TAGS[t], ranges[t]);
+				else assertArrayEquals(frames+" "+TAGS[t], expected, ranges[t]);
+			}
+		}
+	}
+
+	// the scan BasicObjectBuilders.loadUnit used to do once per animation
+	static int[] scan(List<String> frames, String tag) {
+		int startframe = 0; int endframe = 0; int index = 0; boolean inAnimation = false;
+		for (String framename: frames) {
+			if (framename.contains(tag)) {
+				if (startframe==0) { startframe=index; inAnimation=true;}
+			} else {
+				if (inAnimation) { endframe=index-1; break;}
+			}
+			index++;
+		}
+		if (endframe==0) endframe=index;
+		return inAnimation ? new int[] {startframe, endframe} : null;
+	}
+
+	static List<String> unitConfigs() {
+		List<String> configs = new ArrayList<String>();
+		for (String dir : new String[] {"conf/gameconfs/units/", "conf/gameconfs/avatars/"}) {
+			for (String filename : new File(dir).list()) {
+				if (filename.endsWith(".json")) configs.add(dir+filename);
+			}
+		}
+		return configs;
+	}
+}
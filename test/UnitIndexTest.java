@@ -0,0 +1,71 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import engine.HeadlessEngine;
+import managers.AIManager;
+import structures.GameState;
+import structures.basic.Unit;
+
+/**
+ * Checks that the unit indexes of GameState (by id and by owner) follow playerUnits
+ * as units are summoned and killed.
+ */
+public class UnitIndexTest {
+
+	@Test
+	public void indexesFollowTheUnits() {
+		HeadlessEngine engine = new HeadlessEngine();
+		GameState gameState = engine.getGameState();
+		gameState.setSeed(5);
+		engine.start();
+		check(gameState);
+
+		// with the planner, player 2 summons units, which then fight and die
+		int budget = AIManager.getPlannerBudget();
+		AIManager.setPlannerBudget(5);
+		try {
+			for (int turn = 0; turn < 10 && !gameState.player1Avatar.isDead() && !gameState.player2Avatar.isDead(); turn++) {
+				engine.run(() -> AIManager.playTurn(null, gameState, 1));
+				check(gameState);
+				engine.endTurn();
+				check(gameState);
+			}
+		} finally {
+			AIManager.setPlannerBudget(budget);
+		}
+	}
+
+	@Test
+	public void addingTwiceAddsOnce() {
+		HeadlessEngine engine = new HeadlessEngine();
+		GameState gameState = engine.getGameState();
+		engine.start();
+
+		int units = gameState.playerUnits.size();
+		gameState.addUnit(gameState.player1Avatar);
+		assertEquals(units, gameState.playerUnits.size());
+		assertEquals(1, gameState.getUnits(1).size());
+
+		gameState.removeUnit(gameState.player2Avatar);
+		assertNull(gameState.getUnitById(gameState.player2Avatar.getId()));
+		assertEquals(0, gameState.getUnits(2).size());
+	}
+
+	private static void check(GameState gameState) {
+		List<Unit> player1 = new ArrayList<Unit>();
+		List<Unit> player2 = new ArrayList<Unit>();
+		for (Unit unit : gameState.playerUnits) {
+			assertSame(unit, gameState.getUnitById(unit.getId()));
+			if (unit.getOwner() == 1) player1.add(unit);
+			if (unit.getOwner() == 2) player2.add(unit);
+		}
+		assertEquals(player1, gameState.getUnits(1));
+		assertEquals(player2, gameState.getUnits(2));
+	}
+}
@@ -0,0 +1,69 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import commands.CommandSink;
+import commands.WireFormat;
+import engine.HeadlessEngine;
+import play.http.websocket.Message;
+import play.libs.Json;
+
+/**
+ * Writes the commands of a game in both websocket formats, and reads them back.
+ */
+public class WireFormatTest {
+
+	@Test
+	public void cborFramesHoldTheSameCommands() throws Exception {
+		List<JsonNode> commands = new ArrayList<JsonNode>();
+		HeadlessEngine engine = new HeadlessEngine(new CommandSink() {
+			@Override
+			public void send(JsonNode message) {
+				commands.add(message);
+			}
+
+			@Override
+			public void delay(int millis) {}
+		});
+		engine.start();
+		engine.endTurn();
+		assertFalse(commands.isEmpty());
+
+		// the two ends of a connection: strings are numbered as they go, so frames are read in order
+		WireFormat.Codec json = WireFormat.JSON.newCodec();
+		WireFormat.Codec server = WireFormat.CBOR.newCodec();
+		WireFormat.Codec client = WireFormat.CBOR.newCodec();
+		long jsonBytes = 0;
+		long cborBytes = 0;
+		for (JsonNode command : commands) {
+			Message text = json.write(command);
+			Message binary = server.write(command);
+			assertTrue(text instanceof Message.Text);
+			assertTrue(binary instanceof Message.Binary);
+			assertEquals(command, json.read(text));
+			assertEquals(command, client.read(binary));
+			jsonBytes += ((Message.Text) text).data().length();
+			cborBytes += ((Message.Binary) binary).data().size();
+		}
+		assertTrue(cborBytes + " bytes of CBOR, " + jsonBytes + " of JSON", cborBytes * 2 < jsonBytes);
+	}
+
+	@Test
+	public void jsonIsTheFallback() throws Exception {
+		assertEquals(WireFormat.JSON, WireFormat.fromQuery(null));
+		assertEquals(WireFormat.JSON, WireFormat.fromQuery("xml"));
+		assertEquals(WireFormat.CBOR, WireFormat.fromQuery("CBOR"));
+
+		// events sent as text are read as JSON whatever the format
+		JsonNode click = Json.parse("{\"messagetype\":\"tileclicked\",\"tilex\":3,\"tiley\":2}");
+		assertEquals(click, WireFormat.JSON.newCodec().read(new Message.Text(click.toString())));
+		assertEquals(click, WireFormat.CBOR.newCodec().read(new Message.Text(click.toString())));
+	}
+}